@@ -0,0 +1,89 @@
+package oedips.challenge.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionLifeCycle;
+
+/**
+ * Bidding on one auction, from 1 to as many threads as cores, and reading its
+ * status.
+ *
+ * Every bid is above the previous one, so most are accepted and the auction is
+ * recreated at each iteration to bound its log.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AuctionBenchmark {
+
+    private Auction auction;
+    private final AtomicLong price = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.auction = new Auction("a1", "d1", Long.MAX_VALUE, 1);
+        this.price.set(1);
+    }
+
+    /**
+     * Username of the bidding thread.
+     */
+    @State(Scope.Thread)
+    public static class Bidder {
+
+        private String username;
+
+        @Setup
+        public void setUp() {
+            this.username = "u" + ThreadLocalRandom.current().nextInt(64);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addBid1(Bidder bidder) {
+        return this.auction.addBid(bidder.username, this.price.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addBid4(Bidder bidder) {
+        return this.auction.addBid(bidder.username, this.price.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean addBidMax(Bidder bidder) {
+        return this.auction.addBid(bidder.username, this.price.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addBidOutbid(Bidder bidder) {
+        return this.auction.addBid(bidder.username, 0);
+    }
+
+    @Benchmark
+    public AuctionLifeCycle computeStatus() {
+        return this.auction.computeStatus();
+    }
+}
@@ -0,0 +1,68 @@
+package oedips.challenge.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+
+/**
+ * Listing the auctions of a house, with and without a status filter. One
+ * auction out of ten is running, the others are terminated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class AuctionHouseBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int auctions;
+
+    private AuctionHouse house;
+
+    @Setup
+    public void setUp() {
+        this.house = new AuctionHouse("h1");
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < this.auctions; i++) {
+            long endTime = i % 10 == 0 ? Long.MAX_VALUE : now - 1;
+            this.house.addAuction(new Auction("a" + i, "d" + i, 0, endTime, i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.house.close();
+    }
+
+    @Benchmark
+    public Collection<Auction> listAll() {
+        return this.house.listAuctions(null);
+    }
+
+    @Benchmark
+    public Collection<Auction> listRunning() {
+        return this.house.listAuctions("RUNNING");
+    }
+
+    @Benchmark
+    public Collection<Auction> listTerminated() {
+        return this.house.listAuctions("TERMINATED");
+    }
+}
@@ -0,0 +1,166 @@
+package oedips.challenge.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.persistence.FileJournal;
+
+/**
+ * The journal : the time to recover a house whose auction has N bids, half in
+ * the snapshot and half replayed from the log, and the throughput of durable
+ * bids, each appended then awaited, from 1, 4 and 16 threads sharing their
+ * fsyncs.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class JournalBenchmark {
+
+    private static final FileJournal.Settings SETTINGS = new FileJournal.Settings(64 << 20, 0);
+
+    /**
+     * A journal directory holding a snapshot and a log of N bids.
+     */
+    @State(Scope.Benchmark)
+    public static class Recovery {
+
+        @Param({ "100000", "1000000" })
+        public int bids;
+
+        private File directory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            this.directory = Files.createTempDirectory("journal-recovery").toFile();
+            ConcurrentMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+            FileJournal journal = FileJournal.open(this.directory, houses, SETTINGS);
+            AuctionHouse house = new AuctionHouse("h1");
+            houses.put("h1", house);
+            journal.houseCreated("h1");
+            Auction auction = new Auction("a1", "d1", 0, Long.MAX_VALUE, 1);
+            house.addAuction(auction);
+            long lsn = journal.auctionCreated("h1", auction);
+            for (int i = 0; i < this.bids; i++) {
+                if (i == this.bids / 2) {
+                    journal.snapshot();
+                }
+                auction.addBid("u" + i % 100, i + 2);
+                lsn = journal.bidAccepted("h1", "a1", "u" + i % 100, i + 2);
+            }
+            journal.awaitDurable(lsn);
+            journal.close();
+            house.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(this.directory);
+        }
+    }
+
+    /**
+     * An open journal, with a fresh log at each trial.
+     */
+    @State(Scope.Benchmark)
+    public static class Durable {
+
+        private File directory;
+        private FileJournal journal;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            this.directory = Files.createTempDirectory("journal-durable").toFile();
+            this.journal = FileJournal.open(this.directory, new ConcurrentHashMap<>(), SETTINGS);
+            this.journal.houseCreated("h1");
+            Auction auction = new Auction("a1", "d1", 0, Long.MAX_VALUE, 1);
+            this.journal.awaitDurable(this.journal.auctionCreated("h1", auction));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            this.journal.close();
+            delete(this.directory);
+        }
+    }
+
+    /**
+     * The bids of one thread.
+     */
+    @State(Scope.Thread)
+    public static class Bidder {
+
+        private final String username = "u" + Thread.currentThread().getId();
+        private long value;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public int recover(Recovery recovery) {
+        ConcurrentMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        FileJournal.open(recovery.directory, houses, SETTINGS).close();
+        int bids = houses.get("h1").getAuction("a1").computeSummary().getBids();
+        houses.values().forEach(AuctionHouse::close);
+        return bids;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(1)
+    public void durableBid1(Durable durable, Bidder bidder) {
+        durableBid(durable, bidder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public void durableBid4(Durable durable, Bidder bidder) {
+        durableBid(durable, bidder);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(16)
+    public void durableBid16(Durable durable, Bidder bidder) {
+        durableBid(durable, bidder);
+    }
+
+    private static void durableBid(Durable durable, Bidder bidder) {
+        durable.journal.awaitDurable(durable.journal.bidAccepted("h1", "a1", bidder.username, ++bidder.value));
+    }
+
+    private static void delete(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package oedips.challenge.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.Bid;
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Serializing the bids of an auction and the auctions of a house.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    private AuctionHouse house;
+    private Collection<Bid> bids;
+    private Collection<Auction> auctions;
+
+    @Setup
+    public void setUp() {
+        this.house = new AuctionHouse("h1");
+        for (int i = 0; i < 100; i++) {
+            this.house.addAuction(new Auction("a" + i, "description of a" + i, Long.MAX_VALUE, 1));
+        }
+        Auction auction = this.house.getAuction("a0");
+        for (int i = 0; i < 1000; i++) {
+            auction.addBid("u" + (i % 10), i + 2);
+        }
+        this.bids = auction.listBids();
+        this.auctions = this.house.listAuctions(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.house.close();
+    }
+
+    @Benchmark
+    public String bids() {
+        return JsonUtils.asJsonString(this.bids);
+    }
+
+    @Benchmark
+    public String auctions() {
+        return JsonUtils.asJsonString(this.auctions);
+    }
+
+    @Benchmark
+    public String bid() {
+        return JsonUtils.asJsonString(new Bid("u1", 10));
+    }
+}
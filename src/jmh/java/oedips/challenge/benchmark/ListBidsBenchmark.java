@@ -0,0 +1,72 @@
+package oedips.challenge.benchmark;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.Bid;
+
+/**
+ * Listing the bids of one user in an auction where 100 users bid in turn,
+ * with bid objects or compact bids.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListBidsBenchmark {
+
+    private static final int USERS = 100;
+
+    @Param({ "10", "1000" })
+    public int bidsPerUser;
+
+    @Param({ "false", "true" })
+    public boolean compact;
+
+    private Auction auction;
+
+    @Setup
+    public void setUp() {
+        this.auction = new Auction("a1", "d1", 0, Long.MAX_VALUE, 1, this.compact);
+        long value = 1;
+        for (int i = 0; i < this.bidsPerUser; i++) {
+            for (int user = 0; user < USERS; user++) {
+                this.auction.addBid("u" + user, ++value);
+            }
+        }
+    }
+
+    @Benchmark
+    public Collection<Bid> listBidsOfUser() {
+        return this.auction.listBids("u42");
+    }
+
+    @Benchmark
+    public int iterateAllBids() {
+        int count = 0;
+        for (Bid bid : this.auction.listBids()) {
+            count += (int) bid.getValue();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Collection<Bid> listBidsOfUnknownUser() {
+        return this.auction.listBids("nobody");
+    }
+}
@@ -0,0 +1,102 @@
+package oedips.challenge.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oedips.challenge.ws.HouseResource;
+
+/**
+ * postBid and listBids through Jersey, in process : requests go through
+ * routing, parameter injection and serialization, without the network. Bids
+ * are posted on a new auction at each iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class RestBenchmark {
+
+    private static final URI BASE = URI.create("http://localhost/");
+
+    private ApplicationHandler handler;
+    private final AtomicLong price = new AtomicLong();
+    private int iteration;
+    private String biddenPath;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.handler = new ApplicationHandler(new ResourceConfig(HouseResource.class));
+        expectOk(call("POST", "house/h1"));
+        expectOk(call("POST", "house/h1/auction/listed?endTime=" + Long.MAX_VALUE + "&startPrice=1"));
+        for (int i = 0; i < 100; i++) {
+            expectOk(call("POST", "house/h1/auction/listed/bid/u" + (i % 10) + "?bid=" + (i + 2)));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createAuction() throws Exception {
+        this.biddenPath = "house/h1/auction/bidden" + this.iteration++;
+        this.price.set(1);
+        expectOk(call("POST", this.biddenPath + "?endTime=" + Long.MAX_VALUE + "&startPrice=1"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        call("DELETE", "house/h1");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int postBid() throws Exception {
+        return call("POST", this.biddenPath + "/bid/u1?bid=" + this.price.incrementAndGet());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int listBids() throws Exception {
+        return call("GET", "house/h1/auction/listed/bid");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int listBidsOfUser() throws Exception {
+        return call("GET", "house/h1/auction/listed/bid?username=u3");
+    }
+
+    private static void expectOk(int status) {
+        if (status != 200) {
+            throw new IllegalStateException("Unexpected status " + status);
+        }
+    }
+
+    private int call(String method, String path) throws InterruptedException, ExecutionException {
+        ContainerRequest request = new ContainerRequest(BASE, BASE.resolve(path), method, null,
+                new MapPropertiesDelegate(), null);
+        ContainerResponse response = this.handler.apply(request, new ByteArrayOutputStream()).get();
+        return response.getStatus();
+    }
+}
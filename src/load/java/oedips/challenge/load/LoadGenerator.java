@@ -0,0 +1,448 @@
+package oedips.challenge.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import oedips.challenge.ApplicationConfig;
+import oedips.challenge.load.Scenario.Operation;
+
+/**
+ * Load generator driving the REST API of the auction houses.
+ *
+ * It creates houses and auctions, then sends the requests of a
+ * {@link Scenario} for a given duration, and reports the throughput, the
+ * rejected requests (422 and 409 : outbid, not running...), the errors and the
+ * latency percentiles of each operation.
+ *
+ * At a fixed rate, the run is open loop : requests are sent on schedule
+ * whatever the pending ones, and the latency of a request is counted from its
+ * scheduled time. A slow server thus shows in the percentiles, instead of
+ * slowing down the generator (coordinated omission). With a rate of 0, each
+ * connection sends its next request once the previous one answered.
+ *
+ * Once the run is over, the requests still queued or in flight are awaited
+ * for at most {@value #DRAIN_SECONDS} s, then counted as errors, with their
+ * latency up to then. The throughput is counted over the time from the start
+ * of the measures to the last answer, or to that deadline.
+ *
+ * Without a target, the generator starts the application in an embedded
+ * Grizzly server.
+ */
+public class LoadGenerator {
+
+    private static final long DRAIN_SECONDS = 60;
+
+    private final Settings settings;
+    private final String target;
+    private final ZipfSampler auctionRanks;
+    private final int[] hotAuctions;
+    private final long[] endTimes;
+    private final AtomicLongArray prices;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private long startMillis;
+    private volatile long measureStartNanos;
+    private long measuredNanos;
+    private final Set<Request> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a generator.
+     *
+     * @param settings
+     * @param target
+     *            base URI of the API, e.g. http://localhost:9000/app/api/
+     */
+    public LoadGenerator(final Settings settings, final String target) {
+        this.settings = settings;
+        this.target = target.endsWith("/") ? target : target + "/";
+        int auctions = settings.houses * settings.auctions;
+        this.auctionRanks = new ZipfSampler(auctions, settings.zipfExponent);
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < auctions; i++) {
+            shuffled.add(i);
+        }
+        Collections.shuffle(shuffled, new Random(42));
+        this.hotAuctions = shuffled.stream().mapToInt(Integer::intValue).toArray();
+        this.endTimes = new long[auctions];
+        this.prices = new AtomicLongArray(auctions);
+        for (Operation operation : Operation.values()) {
+            this.stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * Runs the generator configured by the system properties, see
+     * {@link Settings#fromSystemProperties()}.
+     *
+     * @param args
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Settings settings = Settings.fromSystemProperties();
+        System.setProperty("http.maxConnections", String.valueOf(settings.connections));
+        HttpServer server = null;
+        String target = settings.target;
+        if (target == null || target.isEmpty()) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                target = "http://localhost:" + socket.getLocalPort() + "/api/";
+            }
+            server = GrizzlyHttpServerFactory.createHttpServer(URI.create(target),
+                    ResourceConfig.forApplication(new ApplicationConfig()));
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(settings, target);
+            generator.setUp();
+            generator.run();
+            generator.report(System.out);
+        } finally {
+            if (server != null) {
+                server.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Creates the houses and their auctions. In the SNIPING scenario, the
+     * auctions end one after the other during the measured part of the run,
+     * which thus starts at a planned time, leaving 10 ms per auction to create
+     * them.
+     *
+     * @throws IOException
+     */
+    public void setUp() throws IOException {
+        for (int h = 0; h < this.settings.houses; h++) {
+            expect(call("DELETE", "house/" + house(h)), 200, 404);
+            expect(call("POST", "house/" + house(h)), 200);
+        }
+        this.startMillis = System.currentTimeMillis() + 10L * this.endTimes.length;
+        long runStart = this.startMillis + TimeUnit.SECONDS.toMillis(this.settings.warmupSeconds);
+        long runMillis = TimeUnit.SECONDS.toMillis(this.settings.durationSeconds);
+        for (int i = 0; i < this.endTimes.length; i++) {
+            if (this.settings.scenario.isEndingDuringRun()) {
+                this.endTimes[i] = runStart + runMillis * (i + 1) / this.endTimes.length;
+            } else {
+                this.endTimes[i] = runStart + 10 * runMillis + TimeUnit.HOURS.toMillis(1);
+            }
+            this.prices.set(i, 1);
+            expect(call("POST", auctionPath(i) + "?dsc=load&startPrice=1&endTime=" + this.endTimes[i]), 200);
+        }
+    }
+
+    /**
+     * Sends the requests of the scenario for the warmup, then the measured
+     * duration.
+     *
+     * @throws InterruptedException
+     */
+    public void run() throws InterruptedException {
+        long wait = this.startMillis - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        long start = System.nanoTime();
+        this.measureStartNanos = start + TimeUnit.SECONDS.toNanos(this.settings.warmupSeconds);
+        long end = this.measureStartNanos + TimeUnit.SECONDS.toNanos(this.settings.durationSeconds);
+        ExecutorService connections = Executors.newFixedThreadPool(this.settings.connections, runnable -> {
+            Thread thread = new Thread(runnable, "load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.settings.rate > 0) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / this.settings.rate;
+            for (long next = start; next < end; next += interval) {
+                long delay = next - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                connections.execute(new Request(next));
+            }
+        } else {
+            for (int c = 0; c < this.settings.connections; c++) {
+                connections.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        new Request(System.nanoTime()).run();
+                    }
+                });
+            }
+        }
+        connections.shutdown();
+        if (!connections.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            List<Runnable> unsent = connections.shutdownNow();
+            for (Runnable request : unsent) {
+                ((Request) request).abandon();
+            }
+            this.inFlight.forEach(Request::abandon);
+        }
+        this.measuredNanos = System.nanoTime() - this.measureStartNanos;
+    }
+
+    /**
+     * Prints the results of the run.
+     *
+     * @param out
+     */
+    public void report(PrintStream out) {
+        double seconds = this.measuredNanos / 1e9;
+        out.printf("scenario %s, %s, %.1f s measured after %d s of warmup, %d houses of %d auctions%n",
+                this.settings.scenario.name().toLowerCase(),
+                this.settings.rate > 0 ? "open loop at " + this.settings.rate + " req/s"
+                        : "closed loop on " + this.settings.connections + " connections",
+                seconds, this.settings.warmupSeconds, this.settings.houses, this.settings.auctions);
+        out.printf("%-14s %9s %9s %9s %8s %9s %9s %9s %9s %9s%n", "operation", "count", "req/s", "rejected",
+                "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, Stats> entry : this.stats.entrySet()) {
+            Stats stats = entry.getValue();
+            LatencyHistogram latencies = stats.latencies;
+            long count = latencies.count();
+            if (count == 0) {
+                continue;
+            }
+            out.printf("%-14s %9d %9.1f %9d %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey().name().toLowerCase(), count, count / seconds,
+                    stats.rejected.sum(), stats.errors.sum(), millis(latencies.percentile(0.5)),
+                    millis(latencies.percentile(0.9)), millis(latencies.percentile(0.99)),
+                    millis(latencies.percentile(0.999)), millis(latencies.max()));
+        }
+    }
+
+    private void send(Request request) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = request.operation;
+        int auction = pickAuction(random);
+        if (auction < 0) {
+            operation = Operation.WINNER;
+            request.operation = operation;
+            auction = this.hotAuctions[this.auctionRanks.sample(random)];
+        }
+        int status;
+        long bid = 0;
+        try {
+            switch (operation) {
+            case BID:
+                bid = this.prices.get(auction) + 1 + random.nextInt(10);
+                status = call("POST", auctionPath(auction) + "/bid/u" + random.nextInt(1000) + "?bid=" + bid);
+                break;
+            case LIST_AUCTIONS:
+                status = call("GET", "house/" + house(auction / this.settings.auctions)
+                        + "/auction?status=RUNNING&limit=100");
+                break;
+            case LIST_BIDS:
+                status = call("GET", auctionPath(auction) + "/bid?top=10");
+                break;
+            default:
+                status = call("GET", auctionPath(auction) + "/winner");
+                break;
+            }
+        } catch (IOException e) {
+            status = -1;
+        }
+        if (operation == Operation.BID && (status == 200 || status == 422)) {
+            final long value = bid;
+            this.prices.accumulateAndGet(auction, value, Math::max);
+        }
+        request.record(status);
+    }
+
+    /**
+     * Picks an auction : by Zipf rank among all the auctions, or among the
+     * running ones by end time in the SNIPING scenario, -1 if they all ended.
+     */
+    private int pickAuction(ThreadLocalRandom random) {
+        int rank = this.auctionRanks.sample(random);
+        if (!this.settings.scenario.isEndingDuringRun()) {
+            return this.hotAuctions[rank];
+        }
+        int next = Arrays.binarySearch(this.endTimes, System.currentTimeMillis() + 1);
+        next = next < 0 ? -next - 1 : next;
+        int auction = next + rank;
+        return auction < this.endTimes.length ? auction : -1;
+    }
+
+    private String auctionPath(int auction) {
+        return "house/" + house(auction / this.settings.auctions) + "/auction/a" + auction % this.settings.auctions;
+    }
+
+    private static String house(int house) {
+        return "load" + house;
+    }
+
+    private int call(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.target + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(30_000);
+        int status = connection.getResponseCode();
+        InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // drained, so the connection is kept alive
+                }
+            }
+        }
+        return status;
+    }
+
+    private static void expect(int status, int... expected) {
+        for (int e : expected) {
+            if (status == e) {
+                return;
+            }
+        }
+        throw new IllegalStateException("setup request failed with HTTP " + status);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * A request, scheduled at a given time. It is recorded once : by its
+     * sender once answered, or as an error when abandoned at the end of the
+     * run.
+     */
+    private final class Request implements Runnable {
+
+        private final long scheduledNanos;
+        private volatile Operation operation;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Request(final long scheduledNanos) {
+            this.scheduledNanos = scheduledNanos;
+            this.operation = settings.scenario.pick(ThreadLocalRandom.current().nextInt(100));
+        }
+
+        @Override
+        public void run() {
+            inFlight.add(this);
+            try {
+                send(this);
+            } finally {
+                inFlight.remove(this);
+            }
+        }
+
+        private void abandon() {
+            record(-1);
+        }
+
+        private void record(int status) {
+            if (this.scheduledNanos < measureStartNanos || !this.recorded.compareAndSet(false, true)) {
+                return;
+            }
+            Stats stats = LoadGenerator.this.stats.get(this.operation);
+            stats.latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - this.scheduledNanos));
+            if (status == 422 || status == 409) {
+                stats.rejected.increment();
+            } else if (status != 200) {
+                stats.errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Counters of an operation.
+     */
+    private static final class Stats {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Settings of a run.
+     */
+    public static class Settings {
+
+        private final Scenario scenario;
+        private final String target;
+        private final int rate;
+        private final int connections;
+        private final long durationSeconds;
+        private final long warmupSeconds;
+        private final int houses;
+        private final int auctions;
+        private final double zipfExponent;
+
+        /**
+         * Creates settings.
+         *
+         * @param scenario
+         * @param target
+         *            base URI of the API, null to start an embedded server
+         * @param rate
+         *            requests per second, 0 for a closed loop
+         * @param connections
+         *            maximum number of requests in flight
+         * @param durationSeconds
+         *            measured duration
+         * @param warmupSeconds
+         *            duration before the measures
+         * @param houses
+         * @param auctions
+         *            auctions per house
+         * @param zipfExponent
+         *            skew of the choice of auctions, 0 for uniform
+         */
+        public Settings(final Scenario scenario, final String target, final int rate, final int connections,
+                final long durationSeconds, final long warmupSeconds, final int houses, final int auctions,
+                final double zipfExponent) {
+            this.scenario = scenario;
+            this.target = target;
+            this.rate = rate;
+            this.connections = connections;
+            this.durationSeconds = durationSeconds;
+            this.warmupSeconds = warmupSeconds;
+            this.houses = houses;
+            this.auctions = auctions;
+            this.zipfExponent = zipfExponent;
+        }
+
+        /**
+         * Reads the settings from the system properties load.scenario (mixed,
+         * sniping or polling; defaults to mixed), load.target, load.rate
+         * (defaults to 1000), load.connections (defaults to 64),
+         * load.duration and load.warmup (seconds, default to 30 and 5),
+         * load.houses and load.auctions (default to 10 and 100) and load.zipf
+         * (defaults to 1).
+         *
+         * @return
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(Scenario.valueOf(System.getProperty("load.scenario", "mixed").toUpperCase()),
+                    System.getProperty("load.target"), Integer.getInteger("load.rate", 1000),
+                    Integer.getInteger("load.connections", 64), Long.getLong("load.duration", 30),
+                    Long.getLong("load.warmup", 5), Integer.getInteger("load.houses", 10),
+                    Integer.getInteger("load.auctions", 100),
+                    Double.parseDouble(System.getProperty("load.zipf", "1")));
+        }
+    }
+}
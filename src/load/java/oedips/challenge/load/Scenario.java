@@ -0,0 +1,66 @@
+package oedips.challenge.load;
+
+/**
+ * Mix of requests of a load test. Auctions are chosen with a Zipf
+ * distribution, so a few hot auctions get most of the requests.
+ */
+public enum Scenario {
+
+    /** mostly bids, with some pollers, on auctions ending after the run */
+    MIXED(70, 10, 20, 0, false),
+    /** bidding wars : auctions end one after the other during the run, and
+     * bidders target the ones ending soonest */
+    SNIPING(85, 5, 5, 5, true),
+    /** heavy pollers listing the auctions and bids of the houses */
+    POLLING(10, 60, 30, 0, false);
+
+    private final int[] weights;
+    private final boolean endingDuringRun;
+
+    Scenario(final int bids, final int auctionListings, final int bidListings, final int winners,
+            final boolean endingDuringRun) {
+        this.weights = new int[] { bids, auctionListings, bidListings, winners };
+        this.endingDuringRun = endingDuringRun;
+    }
+
+    /**
+     * Picks an operation.
+     *
+     * @param draw
+     *            uniform in [0, 100)
+     * @return
+     */
+    public Operation pick(int draw) {
+        int cumulated = 0;
+        for (int i = 0; i < this.weights.length; i++) {
+            cumulated += this.weights[i];
+            if (draw < cumulated) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.BID;
+    }
+
+    /**
+     * Returns true if the auctions end during the run, one after the other.
+     *
+     * @return
+     */
+    public boolean isEndingDuringRun() {
+        return this.endingDuringRun;
+    }
+
+    /**
+     * Requests of a scenario.
+     */
+    public enum Operation {
+        /** POST /house/{h}/auction/{a}/bid/{u} */
+        BID,
+        /** GET /house/{h}/auction */
+        LIST_AUCTIONS,
+        /** GET /house/{h}/auction/{a}/bid?top=10 */
+        LIST_BIDS,
+        /** GET /house/{h}/auction/{a}/winner */
+        WINNER
+    }
+}
@@ -0,0 +1,379 @@
+package oedips.challenge.load;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.AuctionListener;
+import oedips.challenge.model.LifecycleScheduler;
+import oedips.challenge.utils.Clock;
+import oedips.challenge.utils.TimingWheel;
+import oedips.challenge.utils.VirtualClock;
+
+/**
+ * Replays auction traffic in virtual time, to measure how the model copes with
+ * the spikes of bids and terminations at the end of auctions.
+ *
+ * The auctions run on a {@link VirtualClock} : before each event of the trace
+ * the clock jumps to the time of the event, and the deadlines due by then
+ * fire, on the replaying thread. A day of traffic thus runs as fast as the
+ * model processes it, and two replays of the same trace end with the same
+ * winners.
+ *
+ * A trace is a text file of events sorted by time, one per line :
+ * <ul>
+ * <li>time auction house auction startTime endTime startPrice</li>
+ * <li>time bid house auction username value</li>
+ * </ul>
+ * Without a trace, the simulation generates a day of traffic, where most
+ * auctions end on the hour and half the bids come in their last minute.
+ */
+public class Simulation {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long TICK_MILLIS = 10;
+
+    private final List<Event> events;
+    private final Map<String, AuctionHouse> houses = new TreeMap<>();
+    private final TreeMap<Long, long[]> seconds = new TreeMap<>();
+    private long bidsAccepted;
+    private long bidsRejected;
+    private long terminated;
+    private long winnersHash = 17;
+    private long wallNanos;
+    private long lastEnd;
+
+    /**
+     * Creates a simulation of a trace.
+     *
+     * @param events
+     *            sorted by time
+     */
+    public Simulation(final List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Replays the trace of the system property sim.trace, or a generated day
+     * of traffic, see {@link #generate(int, int, int, long)}, written to the
+     * file of the system property sim.record if set.
+     *
+     * @param args
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        String trace = System.getProperty("sim.trace");
+        List<Event> events;
+        if (trace != null && !trace.isEmpty()) {
+            events = read(trace);
+        } else {
+            events = generate(Integer.getInteger("sim.houses", 10), Integer.getInteger("sim.auctions", 1000),
+                    Integer.getInteger("sim.bids", 20), Long.getLong("sim.seed", 42));
+            String record = System.getProperty("sim.record");
+            if (record != null && !record.isEmpty()) {
+                write(events, record);
+            }
+        }
+        Simulation simulation = new Simulation(events);
+        simulation.run();
+        simulation.report(System.out);
+    }
+
+    /**
+     * Generates a day of traffic.
+     *
+     * @param houses
+     * @param auctionsPerHouse
+     * @param meanBids
+     *            mean number of bids per auction
+     * @param seed
+     * @return the events, sorted by time
+     */
+    public static List<Event> generate(int houses, int auctionsPerHouse, int meanBids, long seed) {
+        Random random = new Random(seed);
+        long start = 1_600_000_000_000L;
+        List<Event> events = new ArrayList<>();
+        for (int h = 0; h < houses; h++) {
+            for (int a = 0; a < auctionsPerHouse; a++) {
+                String house = "h" + h;
+                String auction = "a" + a;
+                long created = start + (long) (random.nextDouble() * 6 * HOUR);
+                long endTime = created + HOUR + (long) (random.nextDouble() * (start + DAY - created - HOUR));
+                if (random.nextInt(10) < 6) {
+                    endTime = Math.min(start + DAY, (endTime + HOUR - 1) / HOUR * HOUR);
+                }
+                events.add(new AuctionCreated(created, house, auction, created, endTime, 1));
+                int bids = random.nextInt(2 * meanBids + 1);
+                long[] times = new long[bids];
+                for (int b = 0; b < bids; b++) {
+                    times[b] = random.nextBoolean() ? endTime - 1 - random.nextInt(60_000)
+                            : created + 1 + (long) (random.nextDouble() * (endTime - created - 1));
+                }
+                Arrays.sort(times);
+                long value = 1;
+                for (long time : times) {
+                    value += 1 + random.nextInt(10);
+                    events.add(new BidPlaced(time, house, auction, "u" + random.nextInt(10_000), value));
+                }
+            }
+        }
+        events.sort(Comparator.comparingLong((Event e) -> e.time).thenComparingInt(Event::order));
+        return events;
+    }
+
+    /**
+     * Reads a trace.
+     *
+     * @param path
+     * @return
+     * @throws IOException
+     */
+    public static List<Event> read(String path) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    events.add(Event.parse(line));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Writes a trace.
+     *
+     * @param events
+     * @param path
+     * @throws IOException
+     */
+    public static void write(List<Event> events, String path) throws IOException {
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8))) {
+            for (Event event : events) {
+                writer.write(event.toString());
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Replays the events, then runs the clock until every auction ended.
+     */
+    public void run() {
+        if (this.events.isEmpty()) {
+            return;
+        }
+        long origin = this.events.get(0).time;
+        TimingWheel wheel = new TimingWheel(TICK_MILLIS, origin);
+        VirtualClock clock = new VirtualClock(origin, wheel);
+        LifecycleScheduler scheduler = new LifecycleScheduler(wheel);
+        Clock previous = Clock.use(clock);
+        try {
+            this.lastEnd = origin;
+            for (Event event : this.events) {
+                long started = System.nanoTime();
+                clock.advanceTo(event.time);
+                event.replay(this, scheduler);
+                charge(event.time, System.nanoTime() - started);
+            }
+            for (long time = clock.millis(); time <= this.lastEnd + HOUR; time += TimeUnit.SECONDS.toMillis(1)) {
+                long started = System.nanoTime();
+                clock.advanceTo(time);
+                charge(time, System.nanoTime() - started);
+            }
+        } finally {
+            Clock.use(previous);
+            for (AuctionHouse house : this.houses.values()) {
+                house.close();
+            }
+        }
+    }
+
+    /**
+     * Prints the results of the replay, with the busiest seconds of virtual
+     * time.
+     *
+     * @param out
+     */
+    public void report(PrintStream out) {
+        long span = this.seconds.isEmpty() ? 0 : this.seconds.lastKey() - this.seconds.firstKey() + 1;
+        out.printf("%d events over %s of virtual time replayed in %d ms, %.0fx faster than real time%n",
+                this.events.size(), duration(span), TimeUnit.NANOSECONDS.toMillis(this.wallNanos),
+                span * 1e9 / Math.max(1, this.wallNanos));
+        out.printf("%d bids accepted, %d rejected, %d auctions terminated, winners hash %x%n", this.bidsAccepted,
+                this.bidsRejected, this.terminated, this.winnersHash);
+        out.printf("%-20s %9s %11s %12s%n", "busiest seconds", "bids", "terminated", "replay ms");
+        this.seconds.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Long, long[]> e) -> -(e.getValue()[0] + e.getValue()[1]))
+                        .thenComparingLong(Map.Entry::getKey))
+                .limit(10).forEach(e -> out.printf("%-20s %9d %11d %12.3f%n",
+                        "+" + duration(e.getKey() - this.seconds.firstKey()), e.getValue()[0], e.getValue()[1],
+                        e.getValue()[2] / 1e6));
+    }
+
+    private AuctionHouse house(String name, LifecycleScheduler scheduler) {
+        return this.houses.computeIfAbsent(name, key -> {
+            AuctionHouse house = new AuctionHouse(key, scheduler);
+            house.addListener(new AuctionListener() {
+
+                @Override
+                public void onStatusChange(Auction auction, AuctionLifeCycle previous, AuctionLifeCycle status) {
+                    if (status == AuctionLifeCycle.TERMINATED) {
+                        Simulation.this.terminated++;
+                        second(Clock.now())[1]++;
+                        String buyer = auction.computeBuyer();
+                        Simulation.this.winnersHash = 31 * Simulation.this.winnersHash
+                                + (key + "/" + auction.getName() + "=" + buyer).hashCode();
+                    }
+                }
+            });
+            return house;
+        });
+    }
+
+    private void charge(long time, long nanos) {
+        this.wallNanos += nanos;
+        second(time)[2] += nanos;
+    }
+
+    private long[] second(long time) {
+        return this.seconds.computeIfAbsent(time / 1000, key -> new long[3]);
+    }
+
+    private static String duration(long seconds) {
+        return String.format("%dh%02dm%02ds", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * Event of a trace.
+     */
+    public abstract static class Event {
+
+        final long time;
+        final String house;
+        final String auction;
+
+        private Event(final long time, final String house, final String auction) {
+            this.time = time;
+            this.house = house;
+            this.auction = auction;
+        }
+
+        static Event parse(String line) {
+            String[] fields = line.split("\\s+");
+            long time = Long.parseLong(fields[0]);
+            if ("auction".equals(fields[1])) {
+                return new AuctionCreated(time, fields[2], fields[3], Long.parseLong(fields[4]),
+                        Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+            }
+            if ("bid".equals(fields[1])) {
+                return new BidPlaced(time, fields[2], fields[3], fields[4], Long.parseLong(fields[5]));
+            }
+            throw new IllegalArgumentException("unknown event : " + line);
+        }
+
+        /**
+         * Rank of the event among the events of the same time : auctions are
+         * created before their first bids.
+         */
+        abstract int order();
+
+        /**
+         * Applies the event, at its time on the virtual clock.
+         */
+        abstract void replay(Simulation simulation, LifecycleScheduler scheduler);
+    }
+
+    /**
+     * Creation of an auction.
+     */
+    public static final class AuctionCreated extends Event {
+
+        private final long startTime;
+        private final long endTime;
+        private final long startPrice;
+
+        private AuctionCreated(final long time, final String house, final String auction, final long startTime,
+                final long endTime, final long startPrice) {
+            super(time, house, auction);
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.startPrice = startPrice;
+        }
+
+        @Override
+        int order() {
+            return 0;
+        }
+
+        @Override
+        void replay(Simulation simulation, LifecycleScheduler scheduler) {
+            simulation.house(this.house, scheduler).addAuction(
+                    new Auction(this.auction, null, this.startTime, this.endTime, this.startPrice));
+            simulation.lastEnd = Math.max(simulation.lastEnd, this.endTime);
+        }
+
+        @Override
+        public String toString() {
+            return this.time + " auction " + this.house + " " + this.auction + " "
+                    + this.startTime + " " + this.endTime + " " + this.startPrice;
+        }
+    }
+
+    /**
+     * Bid of a user on an auction.
+     */
+    public static final class BidPlaced extends Event {
+
+        private final String username;
+        private final long value;
+
+        private BidPlaced(final long time, final String house, final String auction, final String username,
+                final long value) {
+            super(time, house, auction);
+            this.username = username;
+            this.value = value;
+        }
+
+        @Override
+        int order() {
+            return 1;
+        }
+
+        @Override
+        void replay(Simulation simulation, LifecycleScheduler scheduler) {
+            AuctionHouse house = simulation.houses.get(this.house);
+            if (house != null && house.addBid(this.auction, this.username, this.value)) {
+                simulation.bidsAccepted++;
+                simulation.second(this.time)[0]++;
+            } else {
+                simulation.bidsRejected++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.time + " bid " + this.house + " " + this.auction + " "
+                    + this.username + " " + this.value;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package oedips.challenge.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Samples ranks from 0 to n - 1 with a Zipf distribution : rank k is drawn
+ * with a probability proportional to 1 / (k + 1)^exponent.
+ */
+public class ZipfSampler {
+
+    private final double[] cumulated;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param n
+     *            number of ranks
+     * @param exponent
+     *            0 for a uniform distribution
+     */
+    public ZipfSampler(final int n, final double exponent) {
+        this.cumulated = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            this.cumulated[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            this.cumulated[k] /= sum;
+        }
+    }
+
+    /**
+     * Draws a rank.
+     *
+     * @param random
+     * @return
+     */
+    public int sample(Random random) {
+        int index = Arrays.binarySearch(this.cumulated, random.nextDouble());
+        index = index < 0 ? -index - 1 : index;
+        return Math.min(index, this.cumulated.length - 1);
+    }
+}
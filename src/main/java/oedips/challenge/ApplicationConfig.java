@@ -6,12 +6,22 @@ import java.util.Map;
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
+import oedips.challenge.wire.WireServer;
+
 /**
  * App configuration.
  */
 @ApplicationPath("/api")
 public class ApplicationConfig extends Application {
 
+    /**
+     * Creates the application, and starts the server of the binary protocol if
+     * configured, see {@link WireServer#startLocal()}.
+     */
+    public ApplicationConfig() {
+        WireServer.startLocal();
+    }
+
     @Override
     public Map<String, Object> getProperties() {
         Map<String, Object> properties = new HashMap<String, Object>();
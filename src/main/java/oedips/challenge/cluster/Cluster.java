@@ -0,0 +1,200 @@
+package oedips.challenge.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Membership of a node in a cluster : the houses are partitioned across the
+ * nodes by consistent hashing of their names.
+ *
+ * A node is identified by the base URI of its REST api, e.g.
+ * http://host1:9000/app/api/.
+ *
+ * When the nodes change, the former ring is kept until every house has moved
+ * to its new owner, see {@link #previousOwner(String)} and {@link #settle()}.
+ */
+public class Cluster {
+
+    /**
+     * System property holding the base URI of this node. Cluster mode is
+     * disabled when not set.
+     */
+    public static final String SELF_PROPERTY = "oedips.cluster.self";
+
+    /**
+     * System property holding the base URIs of the nodes, comma separated.
+     */
+    public static final String NODES_PROPERTY = "oedips.cluster.nodes";
+
+    /**
+     * System property choosing how requests for a house owned by another node
+     * are routed : forward (default) or redirect.
+     */
+    public static final String ROUTING_PROPERTY = "oedips.cluster.routing";
+
+    private final String self;
+    private final boolean redirect;
+    private volatile HashRing ring;
+    private volatile HashRing previous;
+
+    /**
+     * Creates the membership of a node.
+     *
+     * @param self
+     *            base URI of this node
+     * @param nodes
+     *            base URIs of the other nodes, this one may be included
+     * @param redirect
+     *            true to redirect requests to the owning node rather than
+     *            forwarding them
+     */
+    public Cluster(final String self, final List<String> nodes, final boolean redirect) {
+        this.self = normalize(self);
+        this.redirect = redirect;
+        this.ring = new HashRing(withSelf(nodes));
+    }
+
+    /**
+     * Returns the membership configured by the system properties, null if
+     * cluster mode is disabled.
+     *
+     * @return
+     */
+    public static Cluster fromSystemProperties() {
+        String self = System.getProperty(SELF_PROPERTY);
+        if (self == null || self.isEmpty()) {
+            return null;
+        }
+        String nodes = System.getProperty(NODES_PROPERTY, "");
+        List<String> list = nodes.isEmpty() ? Collections.emptyList() : Arrays.asList(nodes.split(","));
+        return new Cluster(self, list, "redirect".equals(System.getProperty(ROUTING_PROPERTY)));
+    }
+
+    /**
+     * Returns the base URI of this node.
+     *
+     * @return
+     */
+    public String getSelf() {
+        return this.self;
+    }
+
+    /**
+     * Returns the nodes of the cluster, sorted.
+     *
+     * @return
+     */
+    public List<String> getNodes() {
+        return this.ring.getNodes();
+    }
+
+    /**
+     * Returns true if requests are redirected rather than forwarded.
+     *
+     * @return
+     */
+    public boolean isRedirect() {
+        return this.redirect;
+    }
+
+    /**
+     * Returns the node owning a house.
+     *
+     * @param houseName
+     * @return
+     */
+    public String owner(String houseName) {
+        return this.ring.owner(houseName);
+    }
+
+    /**
+     * Returns true if this node owns the house.
+     *
+     * @param houseName
+     * @return
+     */
+    public boolean isLocal(String houseName) {
+        return this.self.equals(owner(houseName));
+    }
+
+    /**
+     * Changes the nodes of the cluster. This node leaves the cluster if it is
+     * not one of them : it then owns no house. The former nodes are kept until
+     * {@link #settle()}.
+     *
+     * @param nodes
+     */
+    public void setNodes(List<String> nodes) {
+        setNodes(nodes, getNodes());
+    }
+
+    /**
+     * Changes the nodes of the cluster, knowing the nodes before the change :
+     * a node joining the cluster does not know them.
+     *
+     * @param nodes
+     * @param former
+     */
+    public synchronized void setNodes(List<String> nodes, List<String> former) {
+        if (this.previous == null) {
+            this.previous = new HashRing(normalize(former));
+        }
+        this.ring = new HashRing(normalize(nodes));
+    }
+
+    /**
+     * Returns the node which owned a house before the nodes changed, while
+     * the houses are moved : null if no move is under way, or if the house
+     * keeps its owner or was owned by this node.
+     *
+     * @param houseName
+     * @return
+     */
+    public String previousOwner(String houseName) {
+        HashRing former = this.previous;
+        if (former == null) {
+            return null;
+        }
+        String owner = former.owner(houseName);
+        return owner == null || owner.equals(this.self) || owner.equals(owner(houseName)) ? null : owner;
+    }
+
+    /**
+     * Forgets the former nodes, once every house has moved to its new owner.
+     */
+    public synchronized void settle() {
+        this.previous = null;
+    }
+
+    /**
+     * Returns a base URI ending with a slash.
+     *
+     * @param uri
+     * @return
+     */
+    public static String normalize(String uri) {
+        String trimmed = uri.trim();
+        return trimmed.endsWith("/") ? trimmed : trimmed + "/";
+    }
+
+    private static List<String> normalize(List<String> nodes) {
+        List<String> all = new ArrayList<>();
+        for (String node : nodes) {
+            String normalized = normalize(node);
+            if (!normalized.equals("/") && !all.contains(normalized)) {
+                all.add(normalized);
+            }
+        }
+        return all;
+    }
+
+    private List<String> withSelf(List<String> nodes) {
+        List<String> all = normalize(nodes);
+        if (!all.contains(this.self)) {
+            all.add(this.self);
+        }
+        return all;
+    }
+}
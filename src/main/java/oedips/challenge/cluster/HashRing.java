@@ -0,0 +1,81 @@
+package oedips.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring of nodes.
+ *
+ * Each node is placed at several points of a 64-bit ring ("virtual nodes"),
+ * and a key belongs to the first node clockwise from its hash. When a node
+ * joins or leaves, only the keys of the arcs it gains or loses change owner.
+ */
+public class HashRing {
+
+    /**
+     * Points of each node on the ring.
+     */
+    public static final int VIRTUAL_NODES = 128;
+
+    private final List<String> nodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * Creates the ring of the given nodes.
+     *
+     * @param nodes
+     */
+    public HashRing(final List<String> nodes) {
+        List<String> sorted = new ArrayList<>(nodes);
+        Collections.sort(sorted);
+        this.nodes = Collections.unmodifiableList(sorted);
+        for (String node : sorted) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                this.ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node owning a key, null if the ring is empty.
+     *
+     * @param key
+     * @return
+     */
+    public String owner(String key) {
+        if (this.ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = this.ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : this.ring.firstEntry().getValue();
+    }
+
+    /**
+     * Returns the nodes of the ring, sorted.
+     *
+     * @return
+     */
+    public List<String> getNodes() {
+        return this.nodes;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (digest[i] & 0xff);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
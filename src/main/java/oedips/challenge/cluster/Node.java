@@ -0,0 +1,167 @@
+package oedips.challenge.cluster;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.persistence.BidJournaler;
+import oedips.challenge.persistence.Journal;
+
+/**
+ * State of a node : its houses, their journal and its cluster membership.
+ *
+ * A web application uses the node set in its {@link #PROPERTY} configuration
+ * property, or the node configured by the system properties. Several nodes can
+ * thus run in one JVM, e.g. to test a cluster on localhost.
+ */
+public class Node {
+
+    /**
+     * Configuration property of a JAX-RS application holding its node.
+     */
+    public static final String PROPERTY = "oedips.node";
+
+    private static volatile Node local;
+
+    private final ConcurrentHashMap<String, AuctionHouse> houses;
+    private final Journal journal;
+    private final Cluster cluster;
+    private final ConcurrentHashMap<AuctionHouse, BidJournaler> journalers = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a node, journaling the bids of the houses it already has.
+     *
+     * @param houses
+     * @param journal
+     * @param cluster
+     *            null if not in a cluster
+     */
+    public Node(final ConcurrentHashMap<String, AuctionHouse> houses, final Journal journal, final Cluster cluster) {
+        this.houses = houses;
+        this.journal = journal;
+        this.cluster = cluster;
+        for (AuctionHouse house : houses.values()) {
+            startJournaling(house);
+        }
+    }
+
+    /**
+     * Creates an in-memory node.
+     *
+     * @param cluster
+     *            null if not in a cluster
+     */
+    public Node(final Cluster cluster) {
+        this(newHouses(), Journal.NONE, cluster);
+    }
+
+    /**
+     * Returns the node configured by the system properties, recovering its
+     * houses from its journal on first call.
+     *
+     * @return
+     */
+    public static Node local() {
+        Node node = local;
+        if (node == null) {
+            synchronized (Node.class) {
+                node = local;
+                if (node == null) {
+                    ConcurrentHashMap<String, AuctionHouse> houses = newHouses();
+                    node = new Node(houses, Journal.open(houses), Cluster.fromSystemProperties());
+                    local = node;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Creates an empty map of houses, sized by the oedips.houses.capacity
+     * system property, 16 by default, and {@link AuctionHouse#CONCURRENCY}.
+     *
+     * @return
+     */
+    public static ConcurrentHashMap<String, AuctionHouse> newHouses() {
+        return new ConcurrentHashMap<>(Integer.getInteger("oedips.houses.capacity", 16), 0.75f,
+                AuctionHouse.CONCURRENCY);
+    }
+
+    /**
+     * Returns the node of an application.
+     *
+     * @param property
+     *            value of the {@link #PROPERTY} property, possibly null
+     * @return
+     */
+    public static Node of(Object property) {
+        return property instanceof Node ? (Node) property : local();
+    }
+
+    /**
+     * Gets the houses of the node, by name.
+     *
+     * @return
+     */
+    public ConcurrentHashMap<String, AuctionHouse> getHouses() {
+        return this.houses;
+    }
+
+    /**
+     * Gets the journal of the houses.
+     *
+     * @return
+     */
+    public Journal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * Journals the bids accepted by a house from now on. A house read back
+     * from storage is journaled once restored, so its restored bids are not
+     * journaled twice.
+     *
+     * @param house
+     */
+    public void startJournaling(AuctionHouse house) {
+        if (this.journal == Journal.NONE) {
+            return;
+        }
+        BidJournaler journaler = new BidJournaler(this.journal, house.getName());
+        if (this.journalers.putIfAbsent(house, journaler) == null) {
+            house.addListener(journaler);
+        }
+    }
+
+    /**
+     * Stops journaling the bids of a removed house.
+     *
+     * @param house
+     */
+    public void stopJournaling(AuctionHouse house) {
+        BidJournaler journaler = this.journalers.remove(house);
+        if (journaler != null) {
+            house.removeListener(journaler);
+        }
+    }
+
+    /**
+     * Waits until the bids accepted by a house so far are durable.
+     *
+     * @param house
+     */
+    public void awaitJournaled(AuctionHouse house) {
+        BidJournaler journaler = this.journalers.get(house);
+        if (journaler != null) {
+            journaler.awaitDurable();
+        }
+    }
+
+    /**
+     * Gets the cluster membership, null if not in a cluster.
+     *
+     * @return
+     */
+    public Cluster getCluster() {
+        return this.cluster;
+    }
+}
@@ -0,0 +1,41 @@
+package oedips.challenge.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter. Incrementing it does not allocate once warmed up.
+ */
+public class Counter implements Metrics.Meter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        this.count.increment();
+    }
+
+    /**
+     * Adds a number.
+     *
+     * @param amount
+     */
+    public void add(long amount) {
+        this.count.add(amount);
+    }
+
+    /**
+     * Returns the current count.
+     *
+     * @return
+     */
+    public long get() {
+        return this.count.sum();
+    }
+
+    @Override
+    public void write(StringBuilder out, String name, String labels) {
+        out.append(name).append(labels).append(' ').append(get()).append('\n');
+    }
+}
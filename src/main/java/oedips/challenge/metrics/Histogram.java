@@ -0,0 +1,91 @@
+package oedips.challenge.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of positive values with power of two buckets.
+ *
+ * Recording a value only finds its bucket from its highest bit and increments
+ * two adders : it does not allocate once warmed up, and its cost does not
+ * depend on the number of buckets. Bucket i holds the values up to 2^i
+ * included, as the le bounds of Prometheus.
+ */
+public class Histogram implements Metrics.Meter {
+
+    private final int lowestBucket;
+    private final int highestBucket;
+    private final double scale;
+    private final LongAdder[] buckets;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Creates a histogram. Values up to 2^lowestBucket are counted in the
+     * first bucket, values above 2^highestBucket only in +Inf.
+     *
+     * @param lowestBucket
+     * @param highestBucket
+     * @param scale
+     *            divisor of the values when exported, e.g. 1e9 to record
+     *            nanoseconds and export seconds
+     */
+    public Histogram(final int lowestBucket, final int highestBucket, final double scale) {
+        this.lowestBucket = lowestBucket;
+        this.highestBucket = highestBucket;
+        this.scale = scale;
+        this.buckets = new LongAdder[highestBucket - lowestBucket + 2];
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value
+     */
+    public void record(long value) {
+        long positive = Math.max(0, value);
+        int bucket = positive == 0 ? 0 : 64 - Long.numberOfLeadingZeros(positive - 1);
+        int index = Math.min(Math.max(bucket, this.lowestBucket), this.highestBucket + 1) - this.lowestBucket;
+        this.buckets[index].increment();
+        this.sum.add(positive);
+    }
+
+    /**
+     * Records the time elapsed since a {@link System#nanoTime()}.
+     *
+     * @param startNanos
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return
+     */
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public void write(StringBuilder out, String name, String labels) {
+        String prefix = labels.isEmpty() ? "{" : labels.substring(0, labels.length() - 1) + ",";
+        long cumulated = 0;
+        for (int i = 0; i < this.buckets.length - 1; i++) {
+            cumulated += this.buckets[i].sum();
+            double bound = Math.scalb(1.0, this.lowestBucket + i) / this.scale;
+            out.append(name).append("_bucket").append(prefix).append("le=\"").append(bound).append("\"} ")
+                    .append(cumulated).append('\n');
+        }
+        cumulated += this.buckets[this.buckets.length - 1].sum();
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cumulated).append('\n');
+        out.append(name).append("_sum").append(labels).append(' ').append(this.sum.sum() / this.scale).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(cumulated).append('\n');
+    }
+}
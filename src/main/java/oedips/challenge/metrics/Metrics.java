@@ -0,0 +1,171 @@
+package oedips.challenge.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of the metrics of the service, exported in the Prometheus text
+ * format.
+ *
+ * Meters are registered once, by name and labels, and kept in static fields
+ * by the code recording them : recording never looks them up.
+ */
+public class Metrics {
+
+    private static final Map<String, Family> FAMILIES = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Registers a counter.
+     *
+     * @param name
+     * @param help
+     * @param labels
+     *            label names and values, alternated
+     * @return
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return register(name, help, "counter", new Counter(), labels);
+    }
+
+    /**
+     * Registers a histogram of durations, recorded in nanoseconds and exported
+     * in seconds, from 1 microsecond to about a minute.
+     *
+     * @param name
+     * @param help
+     * @param labels
+     *            label names and values, alternated
+     * @return
+     */
+    public static Histogram timer(String name, String help, String... labels) {
+        return register(name, help, "histogram", new Histogram(10, 36, 1e9), labels);
+    }
+
+    /**
+     * Registers a histogram of sizes, from 1 to about 16 millions.
+     *
+     * @param name
+     * @param help
+     * @param labels
+     *            label names and values, alternated
+     * @return
+     */
+    public static Histogram sizes(String name, String help, String... labels) {
+        return register(name, help, "histogram", new Histogram(0, 24, 1), labels);
+    }
+
+    /**
+     * Registers a gauge, read when the metrics are exported.
+     *
+     * @param name
+     * @param help
+     * @param value
+     * @param labels
+     *            label names and values, alternated
+     */
+    public static void gauge(String name, String help, LongSupplier value, String... labels) {
+        register(name, help, "gauge",
+                (out, n, l) -> out.append(n).append(l).append(' ').append(value.getAsLong()).append('\n'), labels);
+    }
+
+    /**
+     * Exports every metric in the Prometheus text format.
+     *
+     * @return
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family family : FAMILIES.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Labelled labelled : family.meters) {
+                labelled.meter.write(out, family.name, labelled.labels);
+            }
+        }
+        return out.toString();
+    }
+
+    private static <M extends Meter> M register(String name, String help, String type, M meter, String... labels) {
+        Family family = FAMILIES.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type);
+        }
+        family.meters.add(new Labelled(formatLabels(labels), meter));
+        return meter;
+    }
+
+    private static String formatLabels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"");
+            for (char c : labels[i + 1].toCharArray()) {
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    /**
+     * Value exported under a metric name.
+     */
+    public interface Meter {
+
+        /**
+         * Writes the samples of the meter.
+         *
+         * @param out
+         * @param name
+         *            name of the metric
+         * @param labels
+         *            formatted labels, empty if none
+         */
+        void write(StringBuilder out, String name, String labels);
+    }
+
+    private static final class Family {
+
+        private final String name;
+        private final String help;
+        private final String type;
+        private final List<Labelled> meters = new CopyOnWriteArrayList<>();
+
+        private Family(final String name, final String help, final String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final class Labelled {
+
+        private final String labels;
+        private final Meter meter;
+
+        private Labelled(final String labels, final Meter meter) {
+            this.labels = labels;
+            this.meter = meter;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package oedips.challenge.model;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Read-only copy of a settled auction, kept once it left the live indexes of
+ * its house.
+ *
+ * The bids are packed in a byte array : bid values only increase, so each bid
+ * is the varint of the difference with the previous value, then the varint of
+ * the user id, i.e. a few bytes instead of about 40 per bid. The winner is the
+ * user of the last bid. The summary of the auction is kept aside, so the
+ * winner and the summary of an archived auction are read without decoding its
+ * bids, and its bids are listed straight from the packed array : the position
+ * and value of every {@value #CHECKPOINT}th bid are kept, so a page of all the
+ * bids decodes at most {@value #CHECKPOINT} bids before its first one.
+ *
+ * The version of the auction is kept with the copy, and grows when the copy is
+ * deleted, so the versions of an auction keep growing once archived.
+ */
+final class ArchivedAuction {
+
+    private static final int CHECKPOINT = 128;
+
+    private final String name;
+    private final String description;
+    private final long startTime;
+    private final long endTime;
+    private final long startPrice;
+    private final int bidCount;
+    private final byte[] bids;
+    private final int[] checkpointPositions;
+    private final long[] checkpointValues;
+    private final long price;
+    private final String leader;
+    private final int bidders;
+    private final long lastBidTime;
+    private volatile boolean deleted;
+    private volatile long version;
+
+    /**
+     * Archives a settled auction.
+     *
+     * @param auction
+     *            a TERMINATED or DELETED auction, which accepts no more bids
+     */
+    ArchivedAuction(final Auction auction) {
+        this.name = auction.getName();
+        this.description = auction.getDescription();
+        this.startTime = auction.getStartTime();
+        this.endTime = auction.getEndTime();
+        this.startPrice = auction.getStartPrice();
+        this.deleted = auction.computeStatus() == AuctionLifeCycle.DELETED;
+        AuctionSummary summary = auction.computeSummary();
+        this.version = auction.getVersion();
+        this.price = summary.getPrice();
+        this.leader = summary.getLeader();
+        this.bidders = summary.getBidders();
+        this.lastBidTime = summary.getLastBidTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Collection<Bid> settled = auction.listBids();
+        this.checkpointPositions = new int[settled.size() / CHECKPOINT + 1];
+        this.checkpointValues = new long[this.checkpointPositions.length];
+        long previous = this.startPrice;
+        int count = 0;
+        for (Bid bid : settled) {
+            if (count % CHECKPOINT == 0) {
+                this.checkpointPositions[count / CHECKPOINT] = out.size();
+                this.checkpointValues[count / CHECKPOINT] = previous;
+            }
+            writeVarLong(out, bid.getValue() - previous);
+            writeVarLong(out, bid.getUserId());
+            previous = bid.getValue();
+            count++;
+        }
+        this.bidCount = count;
+        this.bids = out.toByteArray();
+    }
+
+    /**
+     * Rebuilds the auction, in its settled status and with its bids.
+     *
+     * @return an auction known to no house nor scheduler
+     */
+    Auction toAuction() {
+        Auction auction = new Auction(this.name, this.description, this.startTime, this.endTime, this.startPrice,
+                true, SoftClose.NONE);
+        if (this.deleted) {
+            auction.setAsDeleted();
+        } else {
+            auction.advance(Long.MAX_VALUE);
+        }
+        int[] position = new int[1];
+        long value = this.startPrice;
+        for (int i = 0; i < this.bidCount; i++) {
+            value += readVarLong(this.bids, position);
+            int userId = (int) readVarLong(this.bids, position);
+            auction.restoreBid(UserDictionary.username(userId), value);
+        }
+        auction.restoreArchived(this.version, this.lastBidTime);
+        return auction;
+    }
+
+    /**
+     * Lists the bids, optionally of a user, in acceptance order, see
+     * {@link Auction#listBids(String)}.
+     *
+     * @param username
+     *            null for all bids
+     * @return
+     */
+    List<Bid> listBids(String username) {
+        return listBids(username, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists a page of the bids, optionally of a user, in acceptance order, see
+     * {@link Auction#listBids(String, int, int)}. The bids of a user are
+     * found by decoding the bids up to the end of the page.
+     *
+     * @param username
+     *            null for all bids
+     * @param cursor
+     *            position of the first bid
+     * @param limit
+     *            maximum number of bids
+     * @return
+     */
+    List<Bid> listBids(String username, int cursor, int limit) {
+        if (username == null) {
+            return range(cursor, (int) Math.min(limit, (long) this.bidCount - cursor));
+        }
+        List<Bid> page = new ArrayList<>();
+        int userId = UserDictionary.find(username);
+        if (userId == UserDictionary.NONE) {
+            return page;
+        }
+        int[] position = new int[1];
+        long value = this.startPrice;
+        int matched = 0;
+        for (int i = 0; i < this.bidCount && page.size() < limit; i++) {
+            value += readVarLong(this.bids, position);
+            if ((int) readVarLong(this.bids, position) == userId && matched++ >= cursor) {
+                page.add(new Bid(userId, value));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Lists the highest bids, optionally of a user, the highest first, see
+     * {@link Auction#listTopBids(String, int)}.
+     *
+     * @param username
+     *            null for all bids
+     * @param count
+     * @return
+     */
+    List<Bid> listTopBids(String username, int count) {
+        if (username == null) {
+            List<Bid> top = range(Math.max(0, this.bidCount - count), Math.min(count, this.bidCount));
+            Collections.reverse(top);
+            return top;
+        }
+        Deque<Bid> top = new ArrayDeque<>();
+        int userId = UserDictionary.find(username);
+        if (userId == UserDictionary.NONE) {
+            return new ArrayList<>();
+        }
+        int[] position = new int[1];
+        long value = this.startPrice;
+        for (int i = 0; i < this.bidCount; i++) {
+            value += readVarLong(this.bids, position);
+            if ((int) readVarLong(this.bids, position) == userId) {
+                if (top.size() == count) {
+                    top.removeLast();
+                }
+                top.addFirst(new Bid(userId, value));
+            }
+        }
+        return new ArrayList<>(top);
+    }
+
+    /**
+     * Decodes consecutive bids, from the checkpoint before the first one.
+     */
+    private List<Bid> range(int from, int count) {
+        List<Bid> range = new ArrayList<>(Math.max(count, 0));
+        if (count <= 0) {
+            return range;
+        }
+        int checkpoint = from / CHECKPOINT;
+        int[] position = { this.checkpointPositions[checkpoint] };
+        long value = this.checkpointValues[checkpoint];
+        for (int i = checkpoint * CHECKPOINT; i < from + count; i++) {
+            value += readVarLong(this.bids, position);
+            int userId = (int) readVarLong(this.bids, position);
+            if (i >= from) {
+                range.add(new Bid(userId, value));
+            }
+        }
+        return range;
+    }
+
+    /**
+     * Marks the archived auction as deleted.
+     *
+     * @return true if it was not deleted yet
+     */
+    synchronized boolean delete() {
+        if (this.deleted) {
+            return false;
+        }
+        this.deleted = true;
+        this.version++;
+        return true;
+    }
+
+    /**
+     * Lists the distinct ids of the bidders.
+     *
+     * @return
+     */
+    int[] listBidders() {
+        int[] users = new int[this.bidCount];
+        int[] position = new int[1];
+        for (int i = 0; i < this.bidCount; i++) {
+            readVarLong(this.bids, position);
+            users[i] = (int) readVarLong(this.bids, position);
+        }
+        return Arrays.stream(users).distinct().toArray();
+    }
+
+    AuctionLifeCycle getStatus() {
+        return this.deleted ? AuctionLifeCycle.DELETED : AuctionLifeCycle.TERMINATED;
+    }
+
+    long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the summary of the auction, without decoding its bids.
+     *
+     * @return
+     */
+    AuctionSummary summary() {
+        long current = this.version;
+        return new AuctionSummary(this.name, getStatus(), this.price, this.leader, this.bidCount, this.bidders,
+                this.lastBidTime, this.endTime, current);
+    }
+
+    int countBids() {
+        return this.bidCount;
+    }
+
+    /**
+     * Returns the size of the packed bids, in bytes.
+     *
+     * @return
+     */
+    int sizeOfBids() {
+        return this.bids.length;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
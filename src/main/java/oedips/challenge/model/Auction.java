@@ -1,31 +1,48 @@
 package oedips.challenge.model;
 
 import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
-import java.util.stream.Collectors;
-import java.time.ZonedDateTime;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import oedips.challenge.metrics.Counter;
+import oedips.challenge.metrics.Metrics;
+import oedips.challenge.utils.Clock;
 import oedips.challenge.utils.JsonUtils;
+import oedips.challenge.utils.TimingWheel.Timeout;
 
 /**
  * Model of an auction.
  */
 public class Auction {
 
-    private volatile List<Bid> bids = new CopyOnWriteArrayList<>();
+    private static final Counter BIDS_ACCEPTED = Metrics.counter("oedips_bids_total",
+            "Bids submitted, by outcome", "outcome", "accepted");
+    private static final Counter BIDS_OUTBID = Metrics.counter("oedips_bids_total",
+            "Bids submitted, by outcome", "outcome", "outbid");
+    private static final Counter BIDS_NOT_RUNNING = Metrics.counter("oedips_bids_total",
+            "Bids submitted, by outcome", "outcome", "not_running");
+
+    private final BidEngine bids;
+    private final BidPipeline pipeline = new BidPipeline(this);
 
     private final String name;
     private final String description;
     private final long startPrice;
     private final long startTime;
-    private final long endTime;
-    private String buyer;
-    private AuctionLifeCycle status = AuctionLifeCycle.NOT_STARTED;
+    private final SoftClose softClose;
+    private volatile long endTime;
+    private volatile int buyer = UserDictionary.NONE;
+    private volatile AuctionLifeCycle status = AuctionLifeCycle.NOT_STARTED;
+    private volatile Timeout timeout;
+    private volatile AuctionListener listener;
+    private volatile int statusChanges;
+    private volatile ProxyBidder proxyBidder;
 
     /**
-     * Creates an auction
+     * Creates an auction starting now.
      * 
      * @param name
      * @param description
@@ -33,11 +50,61 @@ public class Auction {
      * @param startPrice
      */
     public Auction(final String name, final String description, final long endTime, final long startPrice) {
+        this(name, description, Clock.now(), endTime, startPrice);
+    }
+
+    /**
+     * Creates an auction
+     * 
+     * @param name
+     * @param description
+     * @param startTime
+     * @param endTime
+     * @param startPrice
+     */
+    public Auction(final String name, final String description, final long startTime, final long endTime,
+            final long startPrice) {
+        this(name, description, startTime, endTime, startPrice, BidEngine.COMPACT);
+    }
+
+    /**
+     * Creates an auction, optionally storing its bids in primitive arrays to
+     * save memory when it collects millions of bids.
+     * 
+     * @param name
+     * @param description
+     * @param startTime
+     * @param endTime
+     * @param startPrice
+     * @param compactBids
+     */
+    public Auction(final String name, final String description, final long startTime, final long endTime,
+            final long startPrice, final boolean compactBids) {
+        this(name, description, startTime, endTime, startPrice, compactBids, SoftClose.DEFAULT);
+    }
+
+    /**
+     * Creates an auction with its soft close rule.
+     * 
+     * @param name
+     * @param description
+     * @param startTime
+     * @param endTime
+     * @param startPrice
+     * @param compactBids
+     * @param softClose
+     *            how late bids push back the end of the auction
+     */
+    public Auction(final String name, final String description, final long startTime, final long endTime,
+            final long startPrice, final boolean compactBids, final SoftClose softClose) {
         this.name = name;
         this.description = description;
-        this.startTime = ZonedDateTime.now().toInstant().toEpochMilli();
+        this.startTime = startTime;
         this.endTime = endTime;
         this.startPrice = startPrice;
+        this.softClose = softClose;
+        this.bids = new BidEngine(startPrice, compactBids);
+        advance(Clock.now());
     }
 
     /**
@@ -48,51 +115,333 @@ public class Auction {
      * @return true if added
      */
     public boolean addBid(String username, long biddingValue) {
-        if (biddingValue > computeCurrentPrice() && computeStatus() == AuctionLifeCycle.RUNNING) {
-            Bid b = new Bid(username, biddingValue);
-            this.bids.add(b);
-            return true;
+        return submitBid(username, biddingValue) == BidOutcome.ACCEPTED;
+    }
+
+    /**
+     * Adds a bid if bid is valid and if auction is running.
+     * 
+     * @param username
+     * @param biddingValue
+     * @return ACCEPTED if added, otherwise why the bid was rejected
+     */
+    public BidOutcome submitBid(String username, long biddingValue) {
+        ProxyBidder proxies = this.proxyBidder;
+        if (proxies != null) {
+            return proxies.submit(username, biddingValue);
         }
-        return false;
+        BidOutcome outcome = place(username, biddingValue);
+        proxies = this.proxyBidder;
+        if (outcome == BidOutcome.ACCEPTED && proxies != null) {
+            proxies.respond();
+        }
+        return outcome;
     }
 
     /**
-     * Checks Time and updates auction status and winner.
+     * Sets the maximum bid of a user : the auction then bids automatically on
+     * behalf of the user, just enough to outbid the other bidders, up to that
+     * maximum. See {@link ProxyBidder}.
+     * 
+     * @param username
+     * @param maxValue
+     * @return ACCEPTED if set, OUTBID if not higher than the current price or
+     *         than the previous maximum of the user, NOT_RUNNING if the auction
+     *         is not running
      */
-    public AuctionLifeCycle computeStatus() {
+    public BidOutcome submitMaxBid(String username, long maxValue) {
+        if (this.status != AuctionLifeCycle.RUNNING || Clock.now() >= this.endTime) {
+            return BidOutcome.NOT_RUNNING;
+        }
+        return proxyBidder().setMaxBid(username, maxValue);
+    }
 
-        if (this.status == AuctionLifeCycle.DELETED) {
-            return this.status;
-        }
-        long time = ZonedDateTime.now().toInstant().toEpochMilli();
-        if (time > startTime) {
-            if (time < endTime) {
-                this.status = AuctionLifeCycle.RUNNING;
-            } else {
-                this.status = AuctionLifeCycle.TERMINATED;
-                Bid winningBid = computeWinningBid();
-                if (winningBid != null) {
-                    this.buyer = winningBid.getUsername();
+    /**
+     * Returns the maximum bid of a user not reached yet, 0 if none.
+     * 
+     * @param username
+     * @return
+     */
+    public long computeMaxBid(String username) {
+        ProxyBidder proxies = this.proxyBidder;
+        return proxies == null ? 0 : proxies.getMaxBid(username);
+    }
+
+    /**
+     * Returns the maximum bids not reached yet, by username, in the order they
+     * were set.
+     * 
+     * @return
+     */
+    public Map<String, Long> listMaxBids() {
+        ProxyBidder proxies = this.proxyBidder;
+        return proxies == null ? Collections.emptyMap() : proxies.listMaxBids();
+    }
+
+    /**
+     * Restores a maximum bid read back from storage, whatever the status of the
+     * auction, without bidding. The maximum bid is ignored if not higher than
+     * the current price or than the maximum of the user, so restoring it twice
+     * has no effect.
+     * 
+     * @param username
+     * @param maxValue
+     * @return true if restored
+     */
+    public boolean restoreMaxBid(String username, long maxValue) {
+        if (maxValue <= currentPrice() || !proxyBidder().restore(username, maxValue)) {
+            return false;
+        }
+        maxBidSet(username, maxValue);
+        return true;
+    }
+
+    /**
+     * Notifies the listener of a maximum bid, see
+     * {@link AuctionListener#onMaxBid(Auction, String, long)}.
+     */
+    void maxBidSet(String username, long maxValue) {
+        AuctionListener current = this.listener;
+        if (current != null) {
+            current.onMaxBid(this, username, maxValue);
+        }
+    }
+
+    private ProxyBidder proxyBidder() {
+        ProxyBidder proxies = this.proxyBidder;
+        if (proxies == null) {
+            synchronized (this) {
+                proxies = this.proxyBidder;
+                if (proxies == null) {
+                    proxies = new ProxyBidder(this);
+                    this.proxyBidder = proxies;
                 }
             }
-        } else {
-            this.status = AuctionLifeCycle.NOT_STARTED;
         }
+        return proxies;
+    }
+
+    /**
+     * Places a bid in the bid engine, without the proxies.
+     * 
+     * @param username
+     * @param biddingValue
+     * @return
+     */
+    BidOutcome place(String username, long biddingValue) {
+        long now = Clock.now();
+        if (this.status != AuctionLifeCycle.RUNNING || now >= this.endTime) {
+            BIDS_NOT_RUNNING.increment();
+            return BidOutcome.NOT_RUNNING;
+        }
+        if (this.softClose.isClosing(now, this.endTime)) {
+            return placeClosing(username, biddingValue);
+        }
+        return outcome(this.bids.accept(username, biddingValue, now));
+    }
+
+    /**
+     * Places a bid in the soft close window, and pushes back the end of the
+     * auction. The lock of the auction keeps its deadline from terminating it
+     * between the bid and the extension the bid earns.
+     */
+    private synchronized BidOutcome placeClosing(String username, long biddingValue) {
+        long now = Clock.now();
+        long previous = this.endTime;
+        if (this.status != AuctionLifeCycle.RUNNING || now >= previous) {
+            BIDS_NOT_RUNNING.increment();
+            return BidOutcome.NOT_RUNNING;
+        }
+        Bid bid = this.bids.accept(username, biddingValue, now);
+        if (bid != null) {
+            changeEndTime(previous, this.softClose.extend(now, previous));
+        }
+        return outcome(bid);
+    }
+
+    private BidOutcome outcome(Bid bid) {
+        if (bid == null) {
+            if (this.status == AuctionLifeCycle.RUNNING) {
+                BIDS_OUTBID.increment();
+                return BidOutcome.OUTBID;
+            }
+            BIDS_NOT_RUNNING.increment();
+            return BidOutcome.NOT_RUNNING;
+        }
+        BIDS_ACCEPTED.increment();
+        AuctionListener current = this.listener;
+        if (current != null) {
+            current.onBid(this, bid);
+        }
+        return BidOutcome.ACCEPTED;
+    }
+
+    /**
+     * Returns the single-writer pipeline applying the batched bids of the
+     * auction.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public BidPipeline getPipeline() {
+        return this.pipeline;
+    }
+
+    /**
+     * Restores a bid read back from storage, whatever the status of the auction.
+     * The bid is ignored if not higher than the current price, so restoring a
+     * bid twice has no effect.
+     * 
+     * @param username
+     * @param biddingValue
+     * @return true if restored
+     */
+    public synchronized boolean restoreBid(String username, long biddingValue) {
+        Bid bid = this.bids.restore(username, biddingValue);
+        if (bid == null) {
+            return false;
+        }
+        if (this.status == AuctionLifeCycle.TERMINATED) {
+            this.buyer = bid.getUserId();
+        }
+        AuctionListener current = this.listener;
+        if (current != null) {
+            current.onBid(this, bid);
+        }
+        return true;
+    }
+
+    /**
+     * Restores an end time read back from storage, if later than the current
+     * one. An auction already terminated stays terminated.
+     * 
+     * @param endTime
+     */
+    public synchronized void restoreEndTime(long endTime) {
+        changeEndTime(this.endTime, endTime);
+    }
+
+    /**
+     * Pushes back the end of the auction. Its pending deadline is left as is :
+     * when it fires, the auction is still running and the deadline is armed
+     * again at the new end, see {@link LifecycleScheduler}.
+     */
+    private void changeEndTime(long previous, long next) {
+        if (next <= previous) {
+            return;
+        }
+        this.endTime = next;
+        AuctionListener current = this.listener;
+        if (current != null) {
+            current.onEndTimeChange(this, previous);
+        }
+    }
+
+    /**
+     * Returns the status of the auction. The status is kept up to date by the
+     * {@link LifecycleScheduler} the auction is registered with.
+     */
+    public AuctionLifeCycle computeStatus() {
         return this.status;
     }
 
-    private long computeCurrentPrice() {
-        if (bids.isEmpty()) {
-            return this.startPrice;
+    /**
+     * Moves the auction to the status it has at the given time. The winner is
+     * settled once, when the auction terminates.
+     * 
+     * @param time
+     */
+    synchronized void advance(long time) {
+        if (this.status == AuctionLifeCycle.NOT_STARTED && time >= this.startTime) {
+            changeStatus(AuctionLifeCycle.RUNNING);
         }
-        return this.bids.get(bids.size() - 1).getValue();
+        if (this.status == AuctionLifeCycle.RUNNING && time >= this.endTime) {
+            Bid winningBid = this.bids.close();
+            if (winningBid != null) {
+                this.buyer = winningBid.getUserId();
+            }
+            changeStatus(AuctionLifeCycle.TERMINATED);
+        }
+    }
+
+    /**
+     * Attaches the listener of the auction, and notifies it of the current
+     * status.
+     * 
+     * @param listener
+     */
+    synchronized void attach(AuctionListener listener) {
+        this.listener = listener;
+        listener.onStatusChange(this, null, this.status);
     }
 
-    private Bid computeWinningBid() {
-        if (bids.isEmpty()) {
-            return null;
+    /**
+     * Detaches the listener of the auction.
+     */
+    synchronized void detach() {
+        this.listener = null;
+    }
+
+    private void changeStatus(AuctionLifeCycle next) {
+        AuctionLifeCycle previous = this.status;
+        this.status = next;
+        this.statusChanges++;
+        AuctionListener current = this.listener;
+        if (current != null) {
+            current.onStatusChange(this, previous, next);
+        }
+    }
+
+    /**
+     * Returns the time of the next status change, -1 if none.
+     * 
+     * @return
+     */
+    long nextDeadline() {
+        switch (this.status) {
+        case NOT_STARTED:
+            return this.startTime;
+        case RUNNING:
+            return this.endTime;
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * Keeps the pending deadline of the auction, so it can be cancelled.
+     * 
+     * @param timeout
+     */
+    synchronized void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        if (this.status == AuctionLifeCycle.DELETED) {
+            timeout.cancel();
         }
-        return this.bids.get(bids.size() - 1);
+    }
+
+    /**
+     * Returns the version of the auction, which increases with every accepted
+     * bid and status change.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return (long) this.bids.log().size() + this.statusChanges;
+    }
+
+    /**
+     * Restores the version and the time of the last bid of an auction rebuilt
+     * from its archived copy. The version is at least the one counted from its
+     * bids and status changes.
+     * 
+     * @param version
+     * @param lastBidTime
+     */
+    synchronized void restoreArchived(long version, long lastBidTime) {
+        this.statusChanges = (int) (version - this.bids.log().size());
+        this.bids.restoreLastBidTime(lastBidTime);
     }
 
     /**
@@ -110,7 +459,7 @@ public class Auction {
      * @return
      */
     public Collection<Bid> listBids() {
-        return this.bids;
+        return this.bids.log();
     }
 
     /**
@@ -121,26 +470,127 @@ public class Auction {
      */
     public Collection<Bid> listBids(String username) {
         if (username == null) {
-            return this.bids;
+            return this.bids.log();
         }
-        return this.bids.stream().filter(e -> e.getUsername().equals(username)).collect(Collectors.toList());
+        return this.bids.bidsOf(username);
+    }
+
+    /**
+     * Lists a page of the bids, optionally of a user, in acceptance order.
+     * Bids are appended, so the position after a page is the cursor of the
+     * next one.
+     * 
+     * @param username
+     *            null for all bids
+     * @param cursor
+     *            position of the first bid
+     * @param limit
+     *            maximum number of bids
+     * @return
+     */
+    public List<Bid> listBids(String username, int cursor, int limit) {
+        return this.bids.page(username, cursor, limit);
     }
 
     /**
-     * Updates the status of the auction and returns the winner.
+     * Lists the highest bids, optionally of a user, the highest first. They are
+     * also the latest bids.
+     * 
+     * @param username
+     *            null for all bids
+     * @param count
+     * @return
+     */
+    public List<Bid> listTopBids(String username, int count) {
+        return this.bids.top(username, count);
+    }
+
+    /**
+     * Returns the winner of the auction, null if not terminated or no bid.
      * 
      * @return
      */
     public String computeBuyer() {
-        computeStatus();
-        return this.buyer;
+        return UserDictionary.username(this.buyer);
+    }
+
+    /**
+     * Returns the current price : the highest bid, or the start price if no
+     * bid.
+     * 
+     * @return
+     */
+    long currentPrice() {
+        return this.bids.currentPrice();
+    }
+
+    /**
+     * Returns the highest accepted bid, null if no bid.
+     * 
+     * @return
+     */
+    public Bid computeBestBid() {
+        return this.bids.bestBid();
+    }
+
+    /**
+     * Returns the summary of the auction : current price, leader, numbers of
+     * bids and bidders, time of the last bid. It is read in constant time,
+     * whatever the number of bids.
+     * 
+     * @return
+     */
+    public AuctionSummary computeSummary() {
+        long version = getVersion();
+        AuctionLifeCycle current = this.status;
+        return this.bids.summarize(this.name, current, this.endTime, version);
     }
 
     /**
      * Sets the status of the auction as DELETED.
      */
-    public void setAsDeleted() {
-        this.status = AuctionLifeCycle.DELETED;
+    public synchronized void setAsDeleted() {
+        this.bids.close();
+        if (this.status != AuctionLifeCycle.DELETED) {
+            changeStatus(AuctionLifeCycle.DELETED);
+        }
+        Timeout pending = this.timeout;
+        if (pending != null) {
+            pending.cancel();
+        }
+    }
+
+    /**
+     * Returns the start price of the Auction.
+     */
+    @JsonIgnore
+    public long getStartPrice() {
+        return this.startPrice;
+    }
+
+    /**
+     * Returns the start time of the Auction.
+     */
+    @JsonIgnore
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Returns the end time of the Auction, pushed back by late bids in soft
+     * close.
+     */
+    @JsonIgnore
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * Returns the soft close rule of the Auction.
+     */
+    @JsonIgnore
+    public SoftClose getSoftClose() {
+        return this.softClose;
     }
 
     /**
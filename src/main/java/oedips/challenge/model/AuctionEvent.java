@@ -0,0 +1,103 @@
+package oedips.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Model of an event of an auction, pushed to the subscribers of its events.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AuctionEvent {
+
+    /**
+     * Type of event, sent as the name of the event.
+     */
+    public enum Type {
+        /** current state of the auction, sent first to a new subscriber */
+        STATUS,
+        /** new highest bid */
+        BID,
+        /** auction started */
+        STARTED,
+        /** auction terminated, with its winning bid if any */
+        TERMINATED,
+        /** auction deleted */
+        DELETED
+    }
+
+    private final Type type;
+    private final String auction;
+    private final AuctionLifeCycle status;
+    private final Bid bid;
+
+    /**
+     * Creates an event.
+     *
+     * @param type
+     * @param auction
+     * @param status
+     *            status of the auction, or null
+     * @param bid
+     *            new bid, winning bid or best bid, or null
+     */
+    public AuctionEvent(final Type type, final String auction, final AuctionLifeCycle status, final Bid bid) {
+        this.type = type;
+        this.auction = auction;
+        this.status = status;
+        this.bid = bid;
+    }
+
+    /**
+     * Gets the type of the event.
+     *
+     * @return
+     */
+    @JsonIgnore
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the name of the event, the lower case type.
+     *
+     * @return
+     */
+    @JsonIgnore
+    public String getName() {
+        return this.type.name().toLowerCase();
+    }
+
+    /**
+     * Gets the name of the auction.
+     *
+     * @return
+     */
+    public String getAuction() {
+        return this.auction;
+    }
+
+    /**
+     * Gets the status of the auction.
+     *
+     * @return
+     */
+    public AuctionLifeCycle getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Gets the bid of the event.
+     *
+     * @return
+     */
+    public Bid getBid() {
+        return this.bid;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.asJsonString(this);
+    }
+}
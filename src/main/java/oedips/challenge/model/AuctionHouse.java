@@ -1,43 +1,206 @@
 package oedips.challenge.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import oedips.challenge.metrics.Counter;
+import oedips.challenge.metrics.Metrics;
+import oedips.challenge.utils.Clock;
 import oedips.challenge.utils.JsonUtils;
 
 /**
  * Model of an auction house.
+ * 
+ * Besides the auctions by name, the house indexes its auctions by status, end
+ * time and start price. The status index follows the life cycle of the
+ * auctions, so a listing filtered by status only visits the matching auctions.
+ * Listings are ordered by auction name, and can be read one page at a time
+ * from a cursor without copying the indexes.
+ * The auctions a user has bid on are indexed by username.
+ *
+ * Some time after an auction is settled, i.e. TERMINATED or DELETED, it leaves
+ * the indexes for the archive of the house, see {@link ArchivedAuction}, so
+ * the indexes only hold the auctions still in use. An archived auction is no
+ * longer listed, but is still found by name, and still counted. The wheel of
+ * the scheduler only hands the settled auctions over to an archiving thread,
+ * which packs their bids.
  */
-public class AuctionHouse {
+public class AuctionHouse implements AuctionListener {
+
+    private static final AtomicLong EPOCHS = new AtomicLong(System.currentTimeMillis());
+
+    private static final Map<AuctionLifeCycle, Counter> STATUS_CHANGES = new EnumMap<>(AuctionLifeCycle.class);
+
+    static {
+        for (AuctionLifeCycle status : AuctionLifeCycle.values()) {
+            STATUS_CHANGES.put(status, Metrics.counter("oedips_auction_status_changes_total",
+                    "Auctions entering a status", "status", status.name()));
+        }
+    }
+
+    /**
+     * Delay after which a settled auction is archived, set in seconds by the
+     * oedips.archive.after system property, 1 hour by default. Auctions are
+     * never archived if 0.
+     */
+    public static final long ARCHIVE_AFTER_MILLIS = Long.getLong("oedips.archive.after", 3600) * 1000;
+
+    /**
+     * Initial capacity of the maps of a house, set by the oedips.house.capacity
+     * system property, 16 by default. A house expecting many auctions avoids
+     * resizing its maps while they fill up.
+     */
+    public static final int INITIAL_CAPACITY = Integer.getInteger("oedips.house.capacity", 16);
+
+    /**
+     * Expected number of threads updating the maps of the houses concurrently,
+     * set by the oedips.concurrency system property, the number of processors
+     * by default.
+     */
+    public static final int CONCURRENCY = Integer.getInteger("oedips.concurrency",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final Executor ARCHIVER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "auction-archive");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private final String name;
+    private final LifecycleScheduler scheduler;
+    private final long archiveAfterMillis;
+    private final Executor archiver;
+    private final long epoch = EPOCHS.incrementAndGet();
+    private final AtomicLong version = new AtomicLong();
+
+    private final Map<String, Auction> auctions = new ConcurrentHashMap<>(INITIAL_CAPACITY, 0.75f, CONCURRENCY);
 
-    private volatile Map<String, Auction> auctions = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, Auction> auctionsByName = new ConcurrentSkipListMap<>();
+    private final Map<AuctionLifeCycle, ConcurrentNavigableMap<String, Auction>> auctionsByStatus = new EnumMap<>(
+            AuctionLifeCycle.class);
+    private final Map<AuctionLifeCycle, AtomicInteger> statusCounts = new EnumMap<>(AuctionLifeCycle.class);
+    private final ConcurrentNavigableMap<IndexKey, Auction> auctionsByEndTime = new ConcurrentSkipListMap<>();
+    private final ConcurrentNavigableMap<IndexKey, Auction> auctionsByStartPrice = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Set<Auction>> auctionsByBidder = new ConcurrentHashMap<>(INITIAL_CAPACITY, 0.75f,
+            CONCURRENCY);
+    private final List<AuctionListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentNavigableMap<String, ArchivedAuction> archive = new ConcurrentSkipListMap<>();
+    private final Set<Auction> fencedArchives = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    private volatile boolean fenced;
+    private final AtomicInteger writers = new AtomicInteger();
 
     /**
-     * Creates an AuctionHouse.
+     * Creates an AuctionHouse using the shared life cycle scheduler.
      * 
      * @param name
      */
     public AuctionHouse(final String name) {
+        this(name, LifecycleScheduler.shared());
+    }
+
+    /**
+     * Creates an AuctionHouse.
+     * 
+     * @param name
+     * @param scheduler
+     */
+    public AuctionHouse(final String name, final LifecycleScheduler scheduler) {
+        this(name, scheduler, ARCHIVE_AFTER_MILLIS);
+    }
+
+    /**
+     * Creates an AuctionHouse archiving its settled auctions after the given
+     * delay.
+     * 
+     * @param name
+     * @param scheduler
+     * @param archiveAfterMillis
+     *            0 to never archive
+     */
+    public AuctionHouse(final String name, final LifecycleScheduler scheduler, final long archiveAfterMillis) {
+        this(name, scheduler, archiveAfterMillis, ARCHIVER);
+    }
+
+    /**
+     * Creates an AuctionHouse archiving its settled auctions after the given
+     * delay, on the given executor.
+     * 
+     * @param name
+     * @param scheduler
+     * @param archiveAfterMillis
+     *            0 to never archive
+     * @param archiver
+     *            runs the archiving of the auctions, off the thread of the
+     *            scheduler
+     */
+    public AuctionHouse(final String name, final LifecycleScheduler scheduler, final long archiveAfterMillis,
+            final Executor archiver) {
         this.name = name;
+        this.scheduler = scheduler;
+        this.archiveAfterMillis = archiveAfterMillis;
+        this.archiver = archiver;
+        for (AuctionLifeCycle status : AuctionLifeCycle.values()) {
+            this.auctionsByStatus.put(status, new ConcurrentSkipListMap<>());
+            this.statusCounts.put(status, new AtomicInteger());
+        }
     }
 
     /**
-     * Adds an auction if it does not exist.
+     * Adds an auction if it does not exist. Of concurrent additions of
+     * auctions of the same name, a single one succeeds : the auction is
+     * registered by name first, atomically, then indexed. An archived
+     * auction is put in the archive before it leaves the registry, so an
+     * addition racing the archiving of its name sees it afterwards.
      * 
      * @param auction
      * @return true if auction was added.
      */
     public boolean addAuction(Auction auction) {
-        if (this.auctions.get(auction.getName()) != null) {
+        if (!enter()) {
             return false;
         }
-        this.auctions.put(auction.getName(), auction);
+        try {
+            return register(auction);
+        } finally {
+            leave();
+        }
+    }
+
+    private boolean register(Auction auction) {
+        if (this.auctions.putIfAbsent(auction.getName(), auction) != null) {
+            return false;
+        }
+        if (this.archive.containsKey(auction.getName())) {
+            this.auctions.remove(auction.getName(), auction);
+            return false;
+        }
+        this.auctionsByName.put(auction.getName(), auction);
+        this.auctionsByEndTime.put(new IndexKey(auction.getEndTime(), auction.getName()), auction);
+        this.auctionsByStartPrice.put(new IndexKey(auction.getStartPrice(), auction.getName()), auction);
+        auction.attach(this);
+        this.version.incrementAndGet();
+        this.scheduler.register(auction);
         return true;
     }
 
@@ -50,14 +213,115 @@ public class AuctionHouse {
      * @return true if bid was added.
      */
     public boolean addBid(String auctionName, String username, long biddingValue) {
-        Auction a = this.auctions.get(auctionName);
-        if (a != null) {
-            if (a.addBid(username, biddingValue)) {
-                addAuction(a);
-                return true;
+        return submitBid(auctionName, username, biddingValue) == BidOutcome.ACCEPTED;
+    }
+
+    /**
+     * Adds a bid if valid, see {@link Auction#submitBid(String, long)}.
+     *
+     * @param auctionName
+     * @param username
+     * @param biddingValue
+     * @return AUCTION_NOT_FOUND if the auction does not exist, HOUSE_FENCED if
+     *         the house is fenced
+     */
+    public BidOutcome submitBid(String auctionName, String username, long biddingValue) {
+        if (!enter()) {
+            return BidOutcome.HOUSE_FENCED;
+        }
+        try {
+            Auction a = this.auctions.get(auctionName);
+            if (a == null) {
+                return this.archive.containsKey(auctionName) ? BidOutcome.NOT_RUNNING : BidOutcome.AUCTION_NOT_FOUND;
+            }
+            return a.submitBid(username, biddingValue);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     * Sets the maximum bid of a user on an auction, see
+     * {@link Auction#submitMaxBid(String, long)}.
+     *
+     * @param auctionName
+     * @param username
+     * @param maxValue
+     * @return AUCTION_NOT_FOUND if the auction does not exist, HOUSE_FENCED if
+     *         the house is fenced
+     */
+    public BidOutcome setMaxBid(String auctionName, String username, long maxValue) {
+        if (!enter()) {
+            return BidOutcome.HOUSE_FENCED;
+        }
+        try {
+            Auction a = this.auctions.get(auctionName);
+            if (a == null) {
+                return this.archive.containsKey(auctionName) ? BidOutcome.NOT_RUNNING : BidOutcome.AUCTION_NOT_FOUND;
             }
+            return a.submitMaxBid(username, maxValue);
+        } finally {
+            leave();
         }
-        return false;
+    }
+
+    /**
+     * Adds a batch of bids, possibly on several auctions. The bids of each
+     * auction go through the pipeline of the auction, in the order of the batch.
+     * 
+     * @param bids
+     * @return the result of each bid, in the same order : all HOUSE_FENCED if
+     *         the house is fenced
+     */
+    public List<BidResult> addBids(List<BidRequest> bids) {
+        if (!enter()) {
+            List<BidResult> results = new ArrayList<>(bids.size());
+            for (BidRequest bid : bids) {
+                results.add(new BidResult(bid, BidOutcome.HOUSE_FENCED));
+            }
+            return results;
+        }
+        try {
+            return submitBids(bids);
+        } finally {
+            leave();
+        }
+    }
+
+    private List<BidResult> submitBids(List<BidRequest> bids) {
+        Map<String, List<Integer>> positionsByAuction = new LinkedHashMap<>();
+        for (int i = 0; i < bids.size(); i++) {
+            positionsByAuction.computeIfAbsent(bids.get(i).getAuction(), a -> new ArrayList<>()).add(i);
+        }
+        BidResult[] results = new BidResult[bids.size()];
+        List<List<Integer>> pendingPositions = new ArrayList<>();
+        List<CompletableFuture<BidOutcome[]>> pendingOutcomes = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : positionsByAuction.entrySet()) {
+            Auction auction = group.getKey() == null ? null : this.auctions.get(group.getKey());
+            if (auction == null) {
+                BidOutcome outcome = group.getKey() != null && this.archive.containsKey(group.getKey())
+                        ? BidOutcome.NOT_RUNNING
+                        : BidOutcome.AUCTION_NOT_FOUND;
+                for (int position : group.getValue()) {
+                    results[position] = new BidResult(bids.get(position), outcome);
+                }
+                continue;
+            }
+            List<BidRequest> auctionBids = new ArrayList<>(group.getValue().size());
+            for (int position : group.getValue()) {
+                auctionBids.add(bids.get(position));
+            }
+            pendingPositions.add(group.getValue());
+            pendingOutcomes.add(auction.getPipeline().submit(auctionBids));
+        }
+        for (int g = 0; g < pendingOutcomes.size(); g++) {
+            BidOutcome[] outcomes = pendingOutcomes.get(g).join();
+            for (int i = 0; i < outcomes.length; i++) {
+                int position = pendingPositions.get(g).get(i);
+                results[position] = new BidResult(bids.get(position), outcomes[i]);
+            }
+        }
+        return Arrays.asList(results);
     }
 
     /**
@@ -68,26 +332,522 @@ public class AuctionHouse {
      * @return
      */
     public List<Auction> listAuctions(String status) {
+        return new ArrayList<>(index(status).values());
+    }
+
+    /**
+     * Lists a page of the auctions for the house, by name, optionally with a
+     * status. Only the auctions of the page are visited.
+     * 
+     * @param status
+     *            null or invalid for all auctions
+     * @param cursor
+     *            name of the last auction of the previous page, null for the
+     *            first page
+     * @param limit
+     *            maximum number of auctions
+     * @return
+     */
+    public List<Auction> listAuctions(String status, String cursor, int limit) {
+        ConcurrentNavigableMap<String, Auction> index = index(status);
+        if (cursor != null) {
+            index = index.tailMap(cursor, false);
+        }
+        List<Auction> page = new ArrayList<>(Math.min(limit, 256));
+        for (Auction auction : index.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(auction);
+        }
+        return page;
+    }
+
+    private ConcurrentNavigableMap<String, Auction> index(String status) {
         if (status == null) {
-            return new ArrayList<>(auctions.values());
+            return this.auctionsByName;
         }
         try {
-            AuctionLifeCycle auctionStatus = AuctionLifeCycle.valueOf(status);
-            return auctions.values().stream().filter(e -> e.computeStatus().equals(auctionStatus))
-                    .collect(Collectors.toCollection(ArrayList::new));
+            return this.auctionsByStatus.get(AuctionLifeCycle.valueOf(status));
         } catch (IllegalArgumentException e) {
-            return new ArrayList<>(auctions.values());
+            return this.auctionsByName;
+        }
+    }
+
+    /**
+     * Counts the auctions of the house with a status.
+     * 
+     * @param status
+     * @return
+     */
+    public int countAuctions(AuctionLifeCycle status) {
+        return this.statusCounts.get(status).get();
+    }
+
+    /**
+     * Lists the running auctions ending in the given time range, the soonest
+     * first.
+     * 
+     * @param from
+     *            inclusive
+     * @param to
+     *            exclusive
+     * @return
+     */
+    public List<Auction> listAuctionsEndingBetween(long from, long to) {
+        return listAuctionsEndingBetween(from, to, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists the first running auctions ending in the given time range, the
+     * soonest first.
+     * 
+     * @param from
+     *            inclusive
+     * @param to
+     *            exclusive
+     * @param limit
+     *            maximum number of auctions
+     * @return
+     */
+    public List<Auction> listAuctionsEndingBetween(long from, long to, int limit) {
+        List<Auction> result = new ArrayList<>();
+        if (from >= to) {
+            return result;
+        }
+        for (Auction auction : this.auctionsByEndTime.subMap(new IndexKey(from, ""), new IndexKey(to, "")).values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (auction.computeStatus() == AuctionLifeCycle.RUNNING) {
+                result.add(auction);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lists the auctions whose start price is in the given range, the cheapest
+     * first.
+     * 
+     * @param min
+     *            inclusive
+     * @param max
+     *            exclusive
+     * @return
+     */
+    public List<Auction> listAuctionsByStartPrice(long min, long max) {
+        if (min >= max) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(
+                this.auctionsByStartPrice.subMap(new IndexKey(min, ""), new IndexKey(max, "")).values());
+    }
+
+    /**
+     * Lists the bids of a user in the running auctions of the house, by auction
+     * name.
+     * 
+     * @param username
+     * @return
+     */
+    public Map<String, Collection<Bid>> listActiveBids(String username) {
+        Map<String, Collection<Bid>> result = new TreeMap<>();
+        Set<Auction> bidderAuctions = this.auctionsByBidder.get(UserDictionary.find(username));
+        if (bidderAuctions != null) {
+            for (Auction auction : bidderAuctions) {
+                if (auction.computeStatus() == AuctionLifeCycle.RUNNING) {
+                    result.put(auction.getName(), auction.listBids(username));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the auction to the index of its new status.
+     */
+    @Override
+    public void onStatusChange(Auction auction, AuctionLifeCycle previous, AuctionLifeCycle status) {
+        if (previous != null) {
+            if (this.auctionsByStatus.get(previous).remove(auction.getName()) != null) {
+                this.statusCounts.get(previous).decrementAndGet();
+            }
+        }
+        if (this.auctionsByStatus.get(status).put(auction.getName(), auction) == null) {
+            this.statusCounts.get(status).incrementAndGet();
+        }
+        this.version.incrementAndGet();
+        STATUS_CHANGES.get(status).increment();
+        for (AuctionListener listener : this.listeners) {
+            listener.onStatusChange(auction, previous, status);
+        }
+        if ((status == AuctionLifeCycle.TERMINATED || status == AuctionLifeCycle.DELETED)
+                && this.archiveAfterMillis > 0 && !this.closed) {
+            this.scheduler.schedule(Clock.now() + this.archiveAfterMillis,
+                    () -> this.archiver.execute(() -> archiveSettled(auction)));
+        }
+    }
+
+    /**
+     * Indexes the auction under the bidder.
+     */
+    @Override
+    public void onBid(Auction auction, Bid bid) {
+        Set<Auction> bidderAuctions = this.auctionsByBidder.get(bid.getUserId());
+        if (bidderAuctions == null) {
+            bidderAuctions = this.auctionsByBidder.computeIfAbsent(bid.getUserId(),
+                    u -> ConcurrentHashMap.newKeySet());
+        }
+        bidderAuctions.add(auction);
+        for (AuctionListener listener : this.listeners) {
+            listener.onBid(auction, bid);
+        }
+    }
+
+    @Override
+    public void onMaxBid(Auction auction, String username, long maxValue) {
+        for (AuctionListener listener : this.listeners) {
+            listener.onMaxBid(auction, username, maxValue);
+        }
+    }
+
+    /**
+     * Moves the auction in the index by end time.
+     */
+    @Override
+    public void onEndTimeChange(Auction auction, long previousEndTime) {
+        this.auctionsByEndTime.put(new IndexKey(auction.getEndTime(), auction.getName()), auction);
+        this.auctionsByEndTime.remove(new IndexKey(previousEndTime, auction.getName()));
+        this.version.incrementAndGet();
+        for (AuctionListener listener : this.listeners) {
+            listener.onEndTimeChange(auction, previousEndTime);
         }
     }
 
     /**
-     * Returns a specific auction
+     * Adds a listener of the changes of every auction of the house, from now
+     * on. It is called from the threads changing the auctions, and must not
+     * block.
+     * 
+     * @param listener
+     */
+    public void addListener(AuctionListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(AuctionListener)}.
+     * 
+     * @param listener
+     */
+    public void removeListener(AuctionListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Returns a specific auction. An archived auction is rebuilt from the
+     * archive : it is a read-only copy, and costs a pass over its bids. The
+     * bids, the winner and the summary of an auction, archived or not, are
+     * read without rebuilding it through {@link #listBids(String, String)},
+     * {@link #listBids(String, String, int, int)},
+     * {@link #listTopBids(String, String, int)} and
+     * {@link #getSummary(String)}.
      * 
      * @param auctionName
      * @return the auction, null if does not exist
      */
     public Auction getAuction(String auctionName) {
-        return this.auctions.get(auctionName);
+        Auction auction = this.auctions.get(auctionName);
+        if (auction == null) {
+            ArchivedAuction archived = this.archive.get(auctionName);
+            if (archived != null) {
+                return archived.toAuction();
+            }
+        }
+        return auction;
+    }
+
+    /**
+     * Returns the summary of an auction, archived or not, see
+     * {@link Auction#computeSummary()}. An archived auction is summarized
+     * without being rebuilt.
+     * 
+     * @param auctionName
+     * @return the summary, null if the auction does not exist
+     */
+    public AuctionSummary getSummary(String auctionName) {
+        Auction auction = this.auctions.get(auctionName);
+        if (auction != null) {
+            return auction.computeSummary();
+        }
+        ArchivedAuction archived = this.archive.get(auctionName);
+        return archived == null ? null : archived.summary();
+    }
+
+    /**
+     * Lists the bids of an auction, archived or not, optionally of a user, see
+     * {@link Auction#listBids(String)}. The bids of an archived auction are
+     * decoded from the archive.
+     * 
+     * @param auctionName
+     * @param username
+     *            null for all bids
+     * @return null if the auction does not exist
+     */
+    public Collection<Bid> listBids(String auctionName, String username) {
+        Auction auction = this.auctions.get(auctionName);
+        if (auction != null) {
+            return auction.listBids(username);
+        }
+        ArchivedAuction archived = this.archive.get(auctionName);
+        return archived == null ? null : archived.listBids(username);
+    }
+
+    /**
+     * Lists a page of the bids of an auction, archived or not, see
+     * {@link Auction#listBids(String, int, int)}. The bids of an archived
+     * auction are decoded from the archive.
+     * 
+     * @param auctionName
+     * @param username
+     *            null for all bids
+     * @param cursor
+     *            position of the first bid
+     * @param limit
+     *            maximum number of bids
+     * @return null if the auction does not exist
+     */
+    public List<Bid> listBids(String auctionName, String username, int cursor, int limit) {
+        Auction auction = this.auctions.get(auctionName);
+        if (auction != null) {
+            return auction.listBids(username, cursor, limit);
+        }
+        ArchivedAuction archived = this.archive.get(auctionName);
+        return archived == null ? null : archived.listBids(username, cursor, limit);
+    }
+
+    /**
+     * Lists the highest bids of an auction, archived or not, see
+     * {@link Auction#listTopBids(String, int)}. The bids of an archived
+     * auction are decoded from the archive.
+     * 
+     * @param auctionName
+     * @param username
+     *            null for all bids
+     * @param count
+     * @return null if the auction does not exist
+     */
+    public List<Bid> listTopBids(String auctionName, String username, int count) {
+        Auction auction = this.auctions.get(auctionName);
+        if (auction != null) {
+            return auction.listTopBids(username, count);
+        }
+        ArchivedAuction archived = this.archive.get(auctionName);
+        return archived == null ? null : archived.listTopBids(username, count);
+    }
+
+    /**
+     * Deletes an auction, archived or not.
+     * 
+     * @param auctionName
+     * @return false if the auction does not exist or the house is fenced
+     */
+    public boolean deleteAuction(String auctionName) {
+        if (!enter()) {
+            return false;
+        }
+        try {
+            return delete(auctionName);
+        } finally {
+            leave();
+        }
+    }
+
+    private boolean delete(String auctionName) {
+        Auction auction = this.auctions.get(auctionName);
+        if (auction != null) {
+            auction.setAsDeleted();
+            if (this.auctions.get(auctionName) == auction) {
+                return true;
+            }
+        }
+        ArchivedAuction archived = this.archive.get(auctionName);
+        if (archived == null) {
+            return false;
+        }
+        if (archived.delete()) {
+            this.statusCounts.get(AuctionLifeCycle.TERMINATED).decrementAndGet();
+            this.statusCounts.get(AuctionLifeCycle.DELETED).incrementAndGet();
+            this.version.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Moves a settled auction from the indexes to the archive.
+     * 
+     * @param auctionName
+     * @return false if the auction does not exist, is archived or is not
+     *         settled
+     */
+    public boolean archive(String auctionName) {
+        Auction auction = this.auctions.get(auctionName);
+        return auction != null && archive(auction);
+    }
+
+    /**
+     * Archives a settled auction when its delay is over. An auction of a fenced
+     * house is set aside, and archived once the house is unfenced, see
+     * {@link #unfence()} : it is checked again after being set aside, so an
+     * unfence in between does not miss it.
+     */
+    private void archiveSettled(Auction auction) {
+        if (archive(auction) || !this.fenced) {
+            return;
+        }
+        this.fencedArchives.add(auction);
+        if (!this.fenced && this.fencedArchives.remove(auction)) {
+            archiveSettled(auction);
+        }
+    }
+
+    /**
+     * Archives an auction under its lock, so its status cannot change in
+     * between. The auction is then detached : were it deleted through a stale
+     * reference, the indexes would not notice, and
+     * {@link #deleteAuction(String)} deletes the archived copy instead.
+     */
+    private boolean archive(Auction auction) {
+        String auctionName = auction.getName();
+        synchronized (auction) {
+            AuctionLifeCycle status = auction.computeStatus();
+            if (status != AuctionLifeCycle.TERMINATED && status != AuctionLifeCycle.DELETED || this.closed
+                    || this.fenced || this.auctions.get(auctionName) != auction) {
+                return false;
+            }
+            ArchivedAuction archived = new ArchivedAuction(auction);
+            this.archive.put(auctionName, archived);
+            auction.detach();
+            this.auctions.remove(auctionName, auction);
+            this.auctionsByName.remove(auctionName, auction);
+            this.auctionsByStatus.get(status).remove(auctionName, auction);
+            this.auctionsByEndTime.remove(new IndexKey(auction.getEndTime(), auctionName), auction);
+            this.auctionsByStartPrice.remove(new IndexKey(auction.getStartPrice(), auctionName), auction);
+            for (int userId : archived.listBidders()) {
+                Set<Auction> bidderAuctions = this.auctionsByBidder.get(userId);
+                if (bidderAuctions != null) {
+                    bidderAuctions.remove(auction);
+                }
+            }
+        }
+        this.version.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Rebuilds the archived auctions one at a time, by name.
+     * 
+     * @return
+     */
+    public Stream<Auction> streamArchivedAuctions() {
+        return this.archive.values().stream().map(ArchivedAuction::toAuction);
+    }
+
+    /**
+     * Counts the archived auctions.
+     * 
+     * @return
+     */
+    public int countArchivedAuctions() {
+        return this.archive.size();
+    }
+
+    /**
+     * Fences the house before it is copied elsewhere : bids, auction additions
+     * and deletions are then refused, archiving is put off until
+     * {@link #unfence()}, and this call returns once those already under way
+     * are done. The house no longer changes but for the statuses its auctions
+     * reach with time.
+     */
+    public void fence() {
+        this.fenced = true;
+        while (this.writers.get() > 0) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Lifts the fence, when the copy failed, and archives the auctions whose
+     * archiving was refused meanwhile.
+     */
+    public void unfence() {
+        this.fenced = false;
+        for (Auction auction : this.fencedArchives) {
+            if (this.fencedArchives.remove(auction)) {
+                this.archiver.execute(() -> archiveSettled(auction));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the house is fenced, see {@link #fence()}.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public boolean isFenced() {
+        return this.fenced;
+    }
+
+    /**
+     * Registers a change of the house, unless it is fenced : the writer is
+     * counted before the fence is read, so {@link #fence()} either waits for it
+     * or is seen by it.
+     */
+    private boolean enter() {
+        this.writers.incrementAndGet();
+        if (this.fenced) {
+            leave();
+            return false;
+        }
+        return true;
+    }
+
+    private void leave() {
+        this.writers.decrementAndGet();
+    }
+
+    /**
+     * Marks every auction of the house as deleted, which releases their pending
+     * deadlines.
+     */
+    public void close() {
+        this.closed = true;
+        this.auctions.values().forEach(Auction::setAsDeleted);
+    }
+
+    /**
+     * Returns the version of the auction listings of the house, which increases
+     * when an auction is added or changes status. Bids are versioned by each
+     * auction.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return this.version.get();
+    }
+
+    /**
+     * Returns a number identifying this house among all the houses created
+     * with the same name.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public long getEpoch() {
+        return this.epoch;
     }
 
     /**
@@ -104,4 +864,25 @@ public class AuctionHouse {
         return JsonUtils.asJsonString(this);
     }
 
+    /**
+     * Key of the sorted indexes : a value, then the auction name to keep the
+     * keys unique.
+     */
+    private static final class IndexKey implements Comparable<IndexKey> {
+
+        private final long value;
+        private final String name;
+
+        private IndexKey(final long value, final String name) {
+            this.value = value;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int byValue = Long.compare(this.value, other.value);
+            return byValue != 0 ? byValue : this.name.compareTo(other.name);
+        }
+    }
+
 }
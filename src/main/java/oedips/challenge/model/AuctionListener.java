@@ -0,0 +1,48 @@
+package oedips.challenge.model;
+
+/**
+ * Listener of the changes of an auction.
+ */
+public interface AuctionListener {
+
+    /**
+     * Called when the auction changes status, and once when the listener is
+     * attached, with a null previous status. Calls for one auction never
+     * overlap.
+     *
+     * @param auction
+     * @param previous
+     * @param status
+     */
+    void onStatusChange(Auction auction, AuctionLifeCycle previous, AuctionLifeCycle status);
+
+    /**
+     * Called after a bid is accepted, possibly from several threads at once.
+     *
+     * @param auction
+     * @param bid
+     */
+    default void onBid(Auction auction, Bid bid) {
+    }
+
+    /**
+     * Called after a maximum bid is set, before the bids it leads to, see
+     * {@link ProxyBidder}.
+     *
+     * @param auction
+     * @param username
+     * @param maxValue
+     */
+    default void onMaxBid(Auction auction, String username, long maxValue) {
+    }
+
+    /**
+     * Called after a late bid pushed back the end of the auction, see
+     * {@link SoftClose}.
+     *
+     * @param auction
+     * @param previousEndTime
+     */
+    default void onEndTimeChange(Auction auction, long previousEndTime) {
+    }
+}
@@ -0,0 +1,139 @@
+package oedips.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Model of the summary of an auction, a snapshot of its running aggregates.
+ * Once the auction is terminated, the leader is the winner.
+ */
+public class AuctionSummary {
+
+    private final String name;
+    private final AuctionLifeCycle status;
+    private final long price;
+    private final String leader;
+    private final int bids;
+    private final int bidders;
+    private final long lastBidTime;
+    private final long endTime;
+    private final long version;
+
+    /**
+     * Creates a summary.
+     *
+     * @param name
+     * @param status
+     * @param price
+     * @param leader
+     *            null if no bid
+     * @param bids
+     * @param bidders
+     * @param lastBidTime
+     *            0 if unknown
+     * @param endTime
+     * @param version
+     *            version of the auction, at most the one summarized
+     */
+    public AuctionSummary(final String name, final AuctionLifeCycle status, final long price, final String leader,
+            final int bids, final int bidders, final long lastBidTime, final long endTime, final long version) {
+        this.name = name;
+        this.status = status;
+        this.price = price;
+        this.leader = leader;
+        this.bids = bids;
+        this.bidders = bidders;
+        this.lastBidTime = lastBidTime;
+        this.endTime = endTime;
+        this.version = version;
+    }
+
+    /**
+     * Gets the name of the auction.
+     *
+     * @return
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the status of the auction.
+     *
+     * @return
+     */
+    public AuctionLifeCycle getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Gets the current price : the highest bid, or the start price if no bid.
+     *
+     * @return
+     */
+    public long getPrice() {
+        return this.price;
+    }
+
+    /**
+     * Gets the username of the highest bid, null if no bid.
+     *
+     * @return
+     */
+    public String getLeader() {
+        return this.leader;
+    }
+
+    /**
+     * Gets the number of accepted bids.
+     *
+     * @return
+     */
+    public int getBids() {
+        return this.bids;
+    }
+
+    /**
+     * Gets the number of distinct bidders.
+     *
+     * @return
+     */
+    public int getBidders() {
+        return this.bidders;
+    }
+
+    /**
+     * Gets the time of the last accepted bid, 0 if no bid or if the bids were
+     * restored from storage, which does not keep their time.
+     *
+     * @return
+     */
+    public long getLastBidTime() {
+        return this.lastBidTime;
+    }
+
+    /**
+     * Gets the end time of the auction.
+     *
+     * @return
+     */
+    public long getEndTime() {
+        return this.endTime;
+    }
+
+    /**
+     * Gets the version of the auction, see {@link Auction#getVersion()}.
+     *
+     * @return
+     */
+    @JsonIgnore
+    public long getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.asJsonString(this);
+    }
+}
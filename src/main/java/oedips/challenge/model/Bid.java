@@ -1,13 +1,16 @@
 package oedips.challenge.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import oedips.challenge.utils.JsonUtils;
 
 /**
- * Model of a bidding.
+ * Model of a bidding. The bidder is held as its id in the
+ * {@link UserDictionary}.
  */
 public class Bid {
 
-    private final String username;
+    private final int userId;
     private final long value;
 
     /**
@@ -17,7 +20,17 @@ public class Bid {
      * @param value
      */
     public Bid(final String username, final long value) {
-        this.username = username;
+        this(UserDictionary.id(username), value);
+    }
+
+    /**
+     * Creates a bid of a user id.
+     * 
+     * @param userId
+     * @param value
+     */
+    public Bid(final int userId, final long value) {
+        this.userId = userId;
         this.value = value;
     }
 
@@ -36,7 +49,17 @@ public class Bid {
      * @return
      */
     public String getUsername() {
-        return this.username;
+        return UserDictionary.username(this.userId);
+    }
+
+    /**
+     * Gets the id of the user of the bid.
+     * 
+     * @return
+     */
+    @JsonIgnore
+    public int getUserId() {
+        return this.userId;
     }
 
     @Override
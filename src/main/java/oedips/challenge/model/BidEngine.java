@@ -0,0 +1,304 @@
+package oedips.challenge.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import oedips.challenge.utils.Clock;
+
+/**
+ * Bid engine of an auction.
+ *
+ * The current best bid lives in a single atomic slot. A bid is accepted by
+ * swapping the slot with compare-and-set, which also reserves the bid its
+ * sequence number in the {@link BidLog}: the check against the current price
+ * and the acceptance are one atomic step, and the log order is the acceptance
+ * order.
+ *
+ * Accepted bids are also indexed by user id, so the bids of one user are
+ * listed without scanning the log. A bid is indexed before it is published in
+ * the log, so the size of the log counts fully visible bids only.
+ *
+ * The slot also holds the running aggregates of the auction, the number of
+ * bids and the time of the last one, so a consistent summary is read in
+ * constant time, see {@link #summarize(String, AuctionLifeCycle, long, long)}.
+ *
+ * A compact engine stores the values and user ids of the bids in primitive
+ * arrays rather than bid objects, for auctions collecting millions of bids.
+ * The oedips.bids.compact system property makes every engine compact.
+ */
+public class BidEngine {
+
+    /**
+     * True if engines are compact unless specified otherwise.
+     */
+    public static final boolean COMPACT = Boolean.getBoolean("oedips.bids.compact");
+
+    private final long startPrice;
+    private final boolean compact;
+    private final BidLog log;
+    private final ConcurrentMap<Integer, UserBids> bidsByUser = new ConcurrentHashMap<>();
+    private final AtomicReference<State> state = new AtomicReference<>(new State(null, 0, 0, false));
+
+    /**
+     * Creates a bid engine.
+     *
+     * @param startPrice
+     */
+    public BidEngine(final long startPrice) {
+        this(startPrice, COMPACT);
+    }
+
+    /**
+     * Creates a bid engine.
+     *
+     * @param startPrice
+     * @param compact
+     *            true to store the bids in primitive arrays
+     */
+    public BidEngine(final long startPrice, final boolean compact) {
+        this.startPrice = startPrice;
+        this.compact = compact;
+        this.log = compact ? new CompactBidLog() : new ReferenceBidLog();
+    }
+
+    /**
+     * Accepts the bid if it is higher than the current price and the engine is
+     * not closed.
+     *
+     * @param username
+     * @param biddingValue
+     * @return true if accepted
+     */
+    public boolean offer(String username, long biddingValue) {
+        return accept(username, biddingValue) != null;
+    }
+
+    /**
+     * Accepts the bid if it is higher than the current price and the engine is
+     * not closed.
+     *
+     * @param username
+     * @param biddingValue
+     * @return the accepted bid, null if rejected
+     */
+    public Bid accept(String username, long biddingValue) {
+        return accept(username, biddingValue, Clock.now());
+    }
+
+    /**
+     * Accepts the bid if it is higher than the current price and the engine is
+     * not closed.
+     *
+     * @param username
+     * @param biddingValue
+     * @param time
+     *            time of the bid
+     * @return the accepted bid, null if rejected
+     */
+    public Bid accept(String username, long biddingValue, long time) {
+        return append(username, biddingValue, time, false);
+    }
+
+    /**
+     * Restores a bid read back from storage : the bid is appended if it is
+     * higher than the current price, even if the engine is closed. The time of
+     * the bid is not stored, so the time of the last bid is left as is.
+     *
+     * @param username
+     * @param biddingValue
+     * @return the restored bid, null if not higher than the current price
+     */
+    public Bid restore(String username, long biddingValue) {
+        return append(username, biddingValue, -1, true);
+    }
+
+    private Bid append(String username, long biddingValue, long time, boolean restoring) {
+        Bid bid = null;
+        State current;
+        State next;
+        do {
+            current = this.state.get();
+            if ((current.closed && !restoring) || biddingValue <= current.price(this.startPrice)) {
+                return null;
+            }
+            if (bid == null) {
+                bid = new Bid(username, biddingValue);
+            }
+            next = new State(bid, current.count + 1, restoring ? current.lastBidTime : time, current.closed);
+        } while (!this.state.compareAndSet(current, next));
+        UserBids userBids = this.bidsByUser.get(bid.getUserId());
+        if (userBids == null) {
+            userBids = this.bidsByUser.computeIfAbsent(bid.getUserId(),
+                    u -> this.compact ? new UserBids(u) : new UserBids());
+        }
+        userBids.add(bid);
+        this.log.set(current.count, bid);
+        return bid;
+    }
+
+    /**
+     * Restores the time of the last bid, read back from storage.
+     *
+     * @param time
+     */
+    void restoreLastBidTime(long time) {
+        State current;
+        do {
+            current = this.state.get();
+        } while (!this.state.compareAndSet(current,
+                new State(current.best, current.count, time, current.closed)));
+    }
+
+    /**
+     * Closes the engine : no bid is accepted afterwards.
+     *
+     * @return the best bid at closing time, null if no bid
+     */
+    public Bid close() {
+        State current;
+        do {
+            current = this.state.get();
+            if (current.closed) {
+                return current.best;
+            }
+        } while (!this.state.compareAndSet(current, new State(current.best, current.count, current.lastBidTime, true)));
+        return current.best;
+    }
+
+    /**
+     * Returns the current price : the best bid, or the start price if no bid.
+     *
+     * @return
+     */
+    public long currentPrice() {
+        return this.state.get().price(this.startPrice);
+    }
+
+    /**
+     * Returns the best bid, null if no bid.
+     *
+     * @return
+     */
+    public Bid bestBid() {
+        return this.state.get().best;
+    }
+
+    /**
+     * Returns the summary of the auction of the engine, read from a single
+     * state of the engine.
+     *
+     * @param name
+     * @param status
+     * @param endTime
+     * @param version
+     * @return
+     */
+    AuctionSummary summarize(String name, AuctionLifeCycle status, long endTime, long version) {
+        State current = this.state.get();
+        return new AuctionSummary(name, status, current.price(this.startPrice),
+                current.best == null ? null : current.best.getUsername(), current.count, this.bidsByUser.size(),
+                current.lastBidTime, endTime, version);
+    }
+
+    /**
+     * Returns true if the bids are stored in primitive arrays.
+     *
+     * @return
+     */
+    public boolean isCompact() {
+        return this.compact;
+    }
+
+    /**
+     * Returns the log of accepted bids, in acceptance order.
+     *
+     * @return
+     */
+    public BidLog log() {
+        return this.log;
+    }
+
+    /**
+     * Returns the accepted bids of a user, in acceptance order.
+     *
+     * @param username
+     * @return
+     */
+    public Collection<Bid> bidsOf(String username) {
+        UserBids userBids = this.bidsByUser.get(UserDictionary.find(username));
+        if (userBids == null) {
+            return Collections.emptyList();
+        }
+        return userBids.list();
+    }
+
+    /**
+     * Returns a page of the accepted bids, optionally of one user, in
+     * acceptance order.
+     *
+     * @param username
+     *            null for all bids
+     * @param from
+     *            position of the first bid
+     * @param limit
+     *            maximum number of bids
+     * @return
+     */
+    public List<Bid> page(String username, int from, int limit) {
+        if (username == null) {
+            return this.log.range(from, limit);
+        }
+        UserBids userBids = this.bidsByUser.get(UserDictionary.find(username));
+        if (userBids == null) {
+            return Collections.emptyList();
+        }
+        return userBids.range(from, limit);
+    }
+
+    /**
+     * Returns the highest accepted bids, optionally of one user, the highest
+     * first. As each accepted bid outbids the previous one, they are also the
+     * latest bids.
+     *
+     * @param username
+     *            null for all bids
+     * @param count
+     * @return
+     */
+    public List<Bid> top(String username, int count) {
+        if (username == null) {
+            return this.log.last(count);
+        }
+        UserBids userBids = this.bidsByUser.get(UserDictionary.find(username));
+        if (userBids == null) {
+            return Collections.emptyList();
+        }
+        return userBids.last(count);
+    }
+
+    /**
+     * Immutable content of the best bid slot.
+     */
+    private static final class State {
+
+        private final Bid best;
+        private final int count;
+        private final long lastBidTime;
+        private final boolean closed;
+
+        private State(final Bid best, final int count, final long lastBidTime, final boolean closed) {
+            this.best = best;
+            this.count = count;
+            this.lastBidTime = lastBidTime;
+            this.closed = closed;
+        }
+
+        private long price(long startPrice) {
+            return this.best == null ? startPrice : this.best.getValue();
+        }
+    }
+}
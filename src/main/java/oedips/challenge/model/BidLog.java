@@ -0,0 +1,169 @@
+package oedips.challenge.model;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Append-only log of bids.
+ *
+ * Bids are stored in chunks whose sizes double (16, 32, 64, ...), so that an
+ * append never copies existing bids and an index maps to its chunk with a few
+ * bit operations. Each slot is written exactly once by the thread which
+ * reserved its sequence number in the {@link BidEngine}.
+ *
+ * Readers see the contiguous prefix of published slots: a slot reserved but
+ * not yet written hides the slots after it until it is published.
+ *
+ * How slots are stored is left to the subclasses : {@link ReferenceBidLog}
+ * keeps the bid objects, {@link CompactBidLog} keeps primitive values only.
+ */
+public abstract class BidLog extends AbstractCollection<Bid> {
+
+    protected static final int FIRST_CHUNK_SHIFT = 4;
+    protected static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_SHIFT;
+    protected static final int MAX_CHUNKS = 32 - FIRST_CHUNK_SHIFT;
+
+    private static final AtomicIntegerFieldUpdater<BidLog> PUBLISHED = AtomicIntegerFieldUpdater
+            .newUpdater(BidLog.class, "published");
+
+    private volatile int published;
+
+    /**
+     * Writes a bid at the given sequence number, then publishes it.
+     *
+     * @param seq
+     * @param bid
+     */
+    public abstract void set(int seq, Bid bid);
+
+    /**
+     * Returns the bid at the given sequence number, null if not written yet.
+     *
+     * @param seq
+     * @return
+     */
+    public abstract Bid get(int seq);
+
+    /**
+     * Returns true if the slot of a sequence number is written.
+     *
+     * @param seq
+     * @return
+     */
+    protected abstract boolean isWritten(int seq);
+
+    /**
+     * Returns the number of published bids.
+     */
+    @Override
+    public int size() {
+        return this.published;
+    }
+
+    /**
+     * Returns the published bids from a sequence number, in log order.
+     *
+     * @param from
+     *            first sequence number
+     * @param limit
+     *            maximum number of bids
+     * @return
+     */
+    public List<Bid> range(int from, int limit) {
+        int end = (int) Math.min(this.published, (long) from + limit);
+        List<Bid> bids = new ArrayList<>(Math.max(0, end - from));
+        for (int seq = Math.max(0, from); seq < end; seq++) {
+            bids.add(get(seq));
+        }
+        return bids;
+    }
+
+    /**
+     * Returns the last published bids, the last one first.
+     *
+     * @param count
+     * @return
+     */
+    public List<Bid> last(int count) {
+        int end = this.published;
+        int start = Math.max(0, end - count);
+        List<Bid> bids = new ArrayList<>(end - start);
+        for (int seq = end - 1; seq >= start; seq--) {
+            bids.add(get(seq));
+        }
+        return bids;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.published == 0;
+    }
+
+    @Override
+    public Iterator<Bid> iterator() {
+        final int end = this.published;
+        return new Iterator<Bid>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Bid next() {
+                if (next >= end) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * Returns the index of the chunk holding a sequence number.
+     *
+     * @param seq
+     * @return
+     */
+    protected static int chunkIndex(int seq) {
+        return (31 - Integer.numberOfLeadingZeros(seq + FIRST_CHUNK_SIZE)) - FIRST_CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the offset of a sequence number in its chunk.
+     *
+     * @param seq
+     * @param chunkIndex
+     * @return
+     */
+    protected static int offset(int seq, int chunkIndex) {
+        return seq + FIRST_CHUNK_SIZE - (FIRST_CHUNK_SIZE << chunkIndex);
+    }
+
+    /**
+     * Returns the size of a chunk.
+     *
+     * @param chunkIndex
+     * @return
+     */
+    protected static int chunkSize(int chunkIndex) {
+        return FIRST_CHUNK_SIZE << chunkIndex;
+    }
+
+    /**
+     * Moves the published mark over every contiguous written slot. Any writer
+     * may advance it, so a slow writer does not have to wait for the others.
+     */
+    protected void advancePublished() {
+        int current = this.published;
+        while (isWritten(current)) {
+            PUBLISHED.compareAndSet(this, current, current + 1);
+            current = this.published;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package oedips.challenge.model;
+
+/**
+ * Outcome of a bid. HOUSE_FENCED : the house is being moved to another node,
+ * see {@link AuctionHouse#fence()}.
+ */
+public enum BidOutcome {
+    ACCEPTED, OUTBID, NOT_RUNNING, AUCTION_NOT_FOUND, HOUSE_FENCED;
+}
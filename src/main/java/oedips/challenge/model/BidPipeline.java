@@ -0,0 +1,80 @@
+package oedips.challenge.model;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-writer queue of bid batches for one auction.
+ *
+ * Submitters enqueue their batch, then one of them at a time becomes the
+ * writer and applies every queued batch in order. Bids of a hot auction are
+ * thus applied by one thread, without the submitters competing on the bid
+ * engine, and no thread is dedicated to the auction.
+ */
+public class BidPipeline {
+
+    private final Auction auction;
+    private final Queue<Batch> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    /**
+     * Creates the pipeline of an auction.
+     *
+     * @param auction
+     */
+    public BidPipeline(final Auction auction) {
+        this.auction = auction;
+    }
+
+    /**
+     * Submits bids of the auction, applied in order.
+     *
+     * @param bids
+     * @return the outcome of each bid, in the same order
+     */
+    public CompletableFuture<BidOutcome[]> submit(List<BidRequest> bids) {
+        Batch batch = new Batch(bids);
+        this.queue.add(batch);
+        drain();
+        return batch.outcomes;
+    }
+
+    private void drain() {
+        while (!this.queue.isEmpty() && this.writing.compareAndSet(false, true)) {
+            try {
+                Batch batch;
+                while ((batch = this.queue.poll()) != null) {
+                    apply(batch);
+                }
+            } finally {
+                this.writing.set(false);
+            }
+        }
+    }
+
+    private void apply(Batch batch) {
+        BidOutcome[] outcomes = new BidOutcome[batch.bids.size()];
+        try {
+            for (int i = 0; i < outcomes.length; i++) {
+                BidRequest bid = batch.bids.get(i);
+                outcomes[i] = this.auction.submitBid(bid.getUsername(), bid.getBid());
+            }
+            batch.outcomes.complete(outcomes);
+        } catch (RuntimeException e) {
+            batch.outcomes.completeExceptionally(e);
+        }
+    }
+
+    private static final class Batch {
+
+        private final List<BidRequest> bids;
+        private final CompletableFuture<BidOutcome[]> outcomes = new CompletableFuture<>();
+
+        private Batch(final List<BidRequest> bids) {
+            this.bids = bids;
+        }
+    }
+}
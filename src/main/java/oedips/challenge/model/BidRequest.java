@@ -0,0 +1,63 @@
+package oedips.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Model of a bid submitted in a batch.
+ */
+public class BidRequest {
+
+    private final String auction;
+    private final String username;
+    private final long bid;
+
+    /**
+     * Creates a bid request.
+     * 
+     * @param auction
+     * @param username
+     * @param bid
+     */
+    @JsonCreator
+    public BidRequest(@JsonProperty("auction") final String auction, @JsonProperty("username") final String username,
+            @JsonProperty("bid") final long bid) {
+        this.auction = auction;
+        this.username = username;
+        this.bid = bid;
+    }
+
+    /**
+     * Gets the name of the auction.
+     * 
+     * @return
+     */
+    public String getAuction() {
+        return this.auction;
+    }
+
+    /**
+     * Gets the username of the bidder.
+     * 
+     * @return
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Gets the bidding value.
+     * 
+     * @return
+     */
+    public long getBid() {
+        return this.bid;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.asJsonString(this);
+    }
+}
@@ -0,0 +1,73 @@
+package oedips.challenge.model;
+
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Model of the result of a bid submitted in a batch.
+ */
+public class BidResult {
+
+    private final BidRequest request;
+    private final BidOutcome outcome;
+
+    /**
+     * Creates a bid result.
+     * 
+     * @param request
+     * @param outcome
+     */
+    public BidResult(final BidRequest request, final BidOutcome outcome) {
+        this.request = request;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Gets the name of the auction.
+     * 
+     * @return
+     */
+    public String getAuction() {
+        return this.request.getAuction();
+    }
+
+    /**
+     * Gets the username of the bidder.
+     * 
+     * @return
+     */
+    public String getUsername() {
+        return this.request.getUsername();
+    }
+
+    /**
+     * Gets the bidding value.
+     * 
+     * @return
+     */
+    public long getBid() {
+        return this.request.getBid();
+    }
+
+    /**
+     * Returns true if the bid was accepted.
+     * 
+     * @return
+     */
+    public boolean isAccepted() {
+        return this.outcome == BidOutcome.ACCEPTED;
+    }
+
+    /**
+     * Gets the outcome of the bid.
+     * 
+     * @return
+     */
+    public BidOutcome getOutcome() {
+        return this.outcome;
+    }
+
+    @Override
+    public String toString() {
+        return JsonUtils.asJsonString(this);
+    }
+}
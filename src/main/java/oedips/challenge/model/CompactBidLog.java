@@ -0,0 +1,75 @@
+package oedips.challenge.model;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log of bids keeping primitive values only : each slot is a value in a
+ * long[] and a user id of the {@link UserDictionary} in an int[]. A slot costs
+ * 12 bytes and no object, instead of a reference and a {@link Bid}, and the
+ * garbage collector has no reference to trace. Bids are materialized on read, so reads return equal but new bids.
+ */
+public class CompactBidLog extends BidLog {
+
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    @Override
+    public void set(int seq, Bid bid) {
+        int userId = bid.getUserId();
+        int chunkIndex = chunkIndex(seq);
+        Chunk chunk = chunk(chunkIndex);
+        int offset = offset(seq, chunkIndex);
+        chunk.values[offset] = bid.getValue();
+        chunk.users.set(offset, userId + 1);
+        advancePublished();
+    }
+
+    @Override
+    public Bid get(int seq) {
+        int chunkIndex = chunkIndex(seq);
+        Chunk chunk = this.chunks.get(chunkIndex);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = offset(seq, chunkIndex);
+        int user = chunk.users.get(offset);
+        if (user == 0) {
+            return null;
+        }
+        return new Bid(user - 1, chunk.values[offset]);
+    }
+
+    @Override
+    protected boolean isWritten(int seq) {
+        int chunkIndex = chunkIndex(seq);
+        Chunk chunk = this.chunks.get(chunkIndex);
+        return chunk != null && chunk.users.get(offset(seq, chunkIndex)) != 0;
+    }
+
+    private Chunk chunk(int chunkIndex) {
+        Chunk chunk = this.chunks.get(chunkIndex);
+        if (chunk == null) {
+            Chunk created = new Chunk(chunkSize(chunkIndex));
+            if (this.chunks.compareAndSet(chunkIndex, null, created)) {
+                return created;
+            }
+            chunk = this.chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * Slots of a chunk. A value is written before its user id, whose volatile
+     * write publishes it : a slot is written once its user id is not 0.
+     */
+    private static final class Chunk {
+
+        private final long[] values;
+        private final AtomicIntegerArray users;
+
+        private Chunk(final int size) {
+            this.values = new long[size];
+            this.users = new AtomicIntegerArray(size);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package oedips.challenge.model;
+
+import oedips.challenge.utils.Clock;
+import oedips.challenge.utils.TimingWheel;
+
+/**
+ * Drives the life cycle of auctions : moves them from NOT_STARTED to RUNNING
+ * at their start time, and from RUNNING to TERMINATED at their end time.
+ *
+ * Each registered auction has at most one pending timeout in a
+ * {@link TimingWheel}, so the cost of the scheduler does not depend on the
+ * number of auctions, and reading the status of an auction does not need the
+ * clock.
+ *
+ * When a late bid pushes back the end of an auction, see {@link SoftClose},
+ * its timeout is not moved : it fires at the former end, finds the auction
+ * still running, and is armed again at the new end. Extending an auction is
+ * thus a single write, however many bids arrive in its last seconds.
+ */
+public class LifecycleScheduler {
+
+    private static final long TICK_MILLIS = 10;
+
+    private static final LifecycleScheduler SHARED = new LifecycleScheduler(
+            new TimingWheel(TICK_MILLIS, Clock.now()).start("auction-lifecycle"));
+
+    private final TimingWheel wheel;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param wheel
+     *            the wheel firing the deadlines, advanced by its owner
+     */
+    public LifecycleScheduler(final TimingWheel wheel) {
+        this.wheel = wheel;
+    }
+
+    /**
+     * Returns the scheduler shared by the auction houses.
+     *
+     * @return
+     */
+    public static LifecycleScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Brings the auction to its current status, and arms its next deadline.
+     *
+     * @param auction
+     */
+    public void register(Auction auction) {
+        auction.advance(Clock.now());
+        arm(auction);
+    }
+
+    /**
+     * Runs a task at a deadline, on the thread of the wheel.
+     *
+     * @param deadline
+     * @param task
+     *            must not block
+     * @return a handle to cancel the task
+     */
+    public TimingWheel.Timeout schedule(long deadline, Runnable task) {
+        return this.wheel.schedule(deadline, task);
+    }
+
+    private void arm(final Auction auction) {
+        long deadline = auction.nextDeadline();
+        if (deadline < 0) {
+            return;
+        }
+        auction.setTimeout(this.wheel.schedule(deadline, () -> {
+            auction.advance(deadline);
+            arm(auction);
+        }));
+    }
+}
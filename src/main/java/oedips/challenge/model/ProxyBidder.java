@@ -0,0 +1,189 @@
+package oedips.challenge.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bids automatically on behalf of the bidders of an auction, up to their
+ * maximum bid.
+ *
+ * After each change, the proxies are resolved at once, as a second-price
+ * auction : the highest maximum bid leads, at one increment above the second
+ * highest maximum bid, or at its own maximum if lower. On a tie, the current
+ * leader keeps the lead, then the maximum set first wins. A resolution places
+ * at most one bid, instead of a bidding war of one increment per bid.
+ *
+ * An auction creates its proxy bidder with its first maximum bid. Every bid of
+ * the auction then goes through the proxy bidder, under its lock, so a bid and
+ * the answer of the proxies are a single step.
+ *
+ * The maximum bids are journaled as they are set, and restored without
+ * bidding : the bids they led to are journaled and restored on their own.
+ */
+public class ProxyBidder {
+
+    /**
+     * Increment of the bids placed by the proxies, set by the
+     * oedips.proxy.increment system property.
+     */
+    public static final long INCREMENT = Long.getLong("oedips.proxy.increment", 1);
+
+    private final Auction auction;
+    private final Map<Integer, Proxy> proxies = new HashMap<>();
+    private long sequence;
+
+    /**
+     * Creates the proxy bidder of an auction.
+     *
+     * @param auction
+     */
+    ProxyBidder(final Auction auction) {
+        this.auction = auction;
+    }
+
+    /**
+     * Sets the maximum bid of a user, then resolves the proxies. A maximum
+     * bid can only be raised, and must be higher than the current price.
+     *
+     * @param username
+     * @param maxValue
+     * @return ACCEPTED if set, OUTBID otherwise
+     */
+    synchronized BidOutcome setMaxBid(String username, long maxValue) {
+        int userId = UserDictionary.id(username);
+        Proxy current = this.proxies.get(userId);
+        if (maxValue <= this.auction.currentPrice() || current != null && maxValue <= current.maxValue) {
+            return BidOutcome.OUTBID;
+        }
+        this.proxies.put(userId, new Proxy(maxValue, this.sequence++));
+        this.auction.maxBidSet(username, maxValue);
+        resolve();
+        return BidOutcome.ACCEPTED;
+    }
+
+    /**
+     * Restores a maximum bid read back from storage, without bidding. Ignored
+     * if not higher than the current price or than the maximum of the user.
+     *
+     * @param username
+     * @param maxValue
+     * @return true if restored
+     */
+    synchronized boolean restore(String username, long maxValue) {
+        int userId = UserDictionary.id(username);
+        Proxy current = this.proxies.get(userId);
+        if (maxValue <= this.auction.currentPrice() || current != null && maxValue <= current.maxValue) {
+            return false;
+        }
+        this.proxies.put(userId, new Proxy(maxValue, this.sequence++));
+        return true;
+    }
+
+    /**
+     * Returns the maximum bids not reached yet, by username, in the order they
+     * were set.
+     *
+     * @return
+     */
+    synchronized Map<String, Long> listMaxBids() {
+        List<Map.Entry<Integer, Proxy>> entries = new ArrayList<>(this.proxies.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().sequence));
+        Map<String, Long> maxBids = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Proxy> entry : entries) {
+            maxBids.put(UserDictionary.username(entry.getKey()), entry.getValue().maxValue);
+        }
+        return maxBids;
+    }
+
+    /**
+     * Places a bid, then resolves the proxies.
+     *
+     * @param username
+     * @param biddingValue
+     * @return
+     */
+    synchronized BidOutcome submit(String username, long biddingValue) {
+        BidOutcome outcome = this.auction.place(username, biddingValue);
+        if (outcome == BidOutcome.ACCEPTED) {
+            resolve();
+        }
+        return outcome;
+    }
+
+    /**
+     * Resolves the proxies after a bid placed without the lock, while the
+     * proxy bidder was being created.
+     */
+    synchronized void respond() {
+        resolve();
+    }
+
+    /**
+     * Returns the maximum bid of a user, 0 if none or exhausted.
+     *
+     * @param username
+     * @return
+     */
+    synchronized long getMaxBid(String username) {
+        Proxy proxy = this.proxies.get(UserDictionary.find(username));
+        return proxy == null ? 0 : proxy.maxValue;
+    }
+
+    private void resolve() {
+        Bid best = this.auction.computeBestBid();
+        long price = this.auction.currentPrice();
+        int leader = best == null ? UserDictionary.NONE : best.getUserId();
+        Proxy leaderProxy = this.proxies.get(leader);
+
+        int winner = leader;
+        long winnerMax = leaderProxy == null ? price : Math.max(leaderProxy.maxValue, price);
+        long winnerSequence = -1;
+        long second = price;
+        for (Map.Entry<Integer, Proxy> entry : this.proxies.entrySet()) {
+            Proxy proxy = entry.getValue();
+            if (entry.getKey() == leader) {
+                continue;
+            }
+            if (proxy.maxValue > winnerMax || proxy.maxValue == winnerMax && winner != leader
+                    && proxy.sequence < winnerSequence) {
+                second = Math.max(second, winnerMax);
+                winner = entry.getKey();
+                winnerMax = proxy.maxValue;
+                winnerSequence = proxy.sequence;
+            } else {
+                second = Math.max(second, proxy.maxValue);
+            }
+        }
+        if (second <= price && winner == leader) {
+            return;
+        }
+        long value = second >= winnerMax - INCREMENT ? winnerMax : second + INCREMENT;
+        if (value > price && this.auction.place(UserDictionary.username(winner), value) == BidOutcome.ACCEPTED) {
+            price = value;
+        }
+        for (Iterator<Proxy> it = this.proxies.values().iterator(); it.hasNext();) {
+            if (it.next().maxValue <= price) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Maximum bid of a user.
+     */
+    private static final class Proxy {
+
+        private final long maxValue;
+        private final long sequence;
+
+        private Proxy(final long maxValue, final long sequence) {
+            this.maxValue = maxValue;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package oedips.challenge.model;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log of bids keeping the accepted bid objects : reads return the very bids
+ * which were appended.
+ */
+public class ReferenceBidLog extends BidLog {
+
+    private final AtomicReferenceArray<AtomicReferenceArray<Bid>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    @Override
+    public void set(int seq, Bid bid) {
+        int chunkIndex = chunkIndex(seq);
+        chunk(chunkIndex).set(offset(seq, chunkIndex), bid);
+        advancePublished();
+    }
+
+    @Override
+    public Bid get(int seq) {
+        int chunkIndex = chunkIndex(seq);
+        AtomicReferenceArray<Bid> chunk = this.chunks.get(chunkIndex);
+        if (chunk == null) {
+            return null;
+        }
+        return chunk.get(offset(seq, chunkIndex));
+    }
+
+    @Override
+    protected boolean isWritten(int seq) {
+        return get(seq) != null;
+    }
+
+    private AtomicReferenceArray<Bid> chunk(int chunkIndex) {
+        AtomicReferenceArray<Bid> chunk = this.chunks.get(chunkIndex);
+        if (chunk == null) {
+            AtomicReferenceArray<Bid> created = new AtomicReferenceArray<>(chunkSize(chunkIndex));
+            if (this.chunks.compareAndSet(chunkIndex, null, created)) {
+                return created;
+            }
+            chunk = this.chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+}
@@ -0,0 +1,98 @@
+package oedips.challenge.model;
+
+/**
+ * Anti-sniping rule of an auction : a bid accepted in the last seconds of the
+ * auction pushes its end back, so that the other bidders have time to answer.
+ *
+ * The default rule is set by the oedips.softClose.window and
+ * oedips.softClose.extension system properties, in seconds. Soft close is
+ * disabled when the window is 0, the default.
+ */
+public class SoftClose {
+
+    /**
+     * No soft close : auctions end at their end time.
+     */
+    public static final SoftClose NONE = new SoftClose(0, 0);
+
+    /**
+     * Rule configured by the system properties.
+     */
+    public static final SoftClose DEFAULT = fromSystemProperties();
+
+    private final long windowMillis;
+    private final long extensionMillis;
+
+    /**
+     * Creates a rule.
+     *
+     * @param windowMillis
+     *            a bid accepted less than windowMillis before the end extends
+     *            the auction, 0 to disable
+     * @param extensionMillis
+     *            the auction then ends extensionMillis after the bid, at the
+     *            earliest
+     */
+    public SoftClose(final long windowMillis, final long extensionMillis) {
+        this.windowMillis = windowMillis;
+        this.extensionMillis = extensionMillis;
+    }
+
+    /**
+     * Returns the rule configured by the system properties. The extension
+     * defaults to the window.
+     *
+     * @return
+     */
+    public static SoftClose fromSystemProperties() {
+        long window = Long.getLong("oedips.softClose.window", 0);
+        long extension = Long.getLong("oedips.softClose.extension", window);
+        if (window <= 0) {
+            return NONE;
+        }
+        return new SoftClose(window * 1000, extension * 1000);
+    }
+
+    /**
+     * Returns true if a bid at the given time extends the auction.
+     *
+     * @param now
+     * @param endTime
+     * @return
+     */
+    public boolean isClosing(long now, long endTime) {
+        return this.windowMillis > 0 && now >= endTime - this.windowMillis;
+    }
+
+    /**
+     * Returns the end time of an auction after a bid at the given time.
+     *
+     * @param now
+     * @param endTime
+     * @return
+     */
+    public long extend(long now, long endTime) {
+        if (!isClosing(now, endTime)) {
+            return endTime;
+        }
+        return Math.max(endTime, now + this.extensionMillis);
+    }
+
+    /**
+     * Gets the window, in milliseconds.
+     *
+     * @return
+     */
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    /**
+     * Gets the extension, in milliseconds.
+     *
+     * @return
+     */
+    public long getExtensionMillis() {
+        return this.extensionMillis;
+    }
+}
@@ -0,0 +1,140 @@
+package oedips.challenge.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bids of one user in one auction, in acceptance order.
+ *
+ * Accepted bids of an auction have increasing values, so the acceptance order
+ * is the value order : a bid appended concurrently out of order is moved back
+ * into place by value.
+ *
+ * A compact instance keeps the values only, and materializes the bids of its
+ * user on read.
+ */
+public class UserBids {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final int userId;
+    private Bid[] bids;
+    private long[] values;
+    private int size;
+
+    /**
+     * Creates the bids of a user, keeping the bid objects.
+     */
+    public UserBids() {
+        this.userId = UserDictionary.NONE;
+        this.bids = new Bid[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Creates the compact bids of a user, keeping their values only.
+     *
+     * @param userId
+     */
+    public UserBids(final int userId) {
+        this.userId = userId;
+        this.values = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds an accepted bid.
+     *
+     * @param bid
+     */
+    public synchronized void add(Bid bid) {
+        if (this.values != null) {
+            addValue(bid.getValue());
+            return;
+        }
+        if (this.size == this.bids.length) {
+            this.bids = Arrays.copyOf(this.bids, this.size * 2);
+        }
+        int position = this.size;
+        while (position > 0 && this.bids[position - 1].getValue() > bid.getValue()) {
+            this.bids[position] = this.bids[position - 1];
+            position--;
+        }
+        this.bids[position] = bid;
+        this.size++;
+    }
+
+    /**
+     * Returns a copy of the bids.
+     *
+     * @return
+     */
+    public synchronized List<Bid> list() {
+        return copy(0, this.size);
+    }
+
+    /**
+     * Returns a copy of the bids from a position.
+     *
+     * @param from
+     * @param limit
+     *            maximum number of bids
+     * @return
+     */
+    public synchronized List<Bid> range(int from, int limit) {
+        int start = Math.min(Math.max(0, from), this.size);
+        int end = (int) Math.min(this.size, (long) start + limit);
+        return copy(start, end);
+    }
+
+    /**
+     * Returns a copy of the last bids, the last one first.
+     *
+     * @param count
+     * @return
+     */
+    public synchronized List<Bid> last(int count) {
+        int length = Math.min(count, this.size);
+        Bid[] last = new Bid[length];
+        for (int i = 0; i < length; i++) {
+            last[i] = bidAt(this.size - 1 - i);
+        }
+        return Collections.unmodifiableList(Arrays.asList(last));
+    }
+
+    /**
+     * Returns the number of bids.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    private void addValue(long value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+        int position = this.size;
+        while (position > 0 && this.values[position - 1] > value) {
+            this.values[position] = this.values[position - 1];
+            position--;
+        }
+        this.values[position] = value;
+        this.size++;
+    }
+
+    private List<Bid> copy(int start, int end) {
+        if (this.values == null) {
+            return Collections.unmodifiableList(Arrays.asList(Arrays.copyOfRange(this.bids, start, end)));
+        }
+        Bid[] copy = new Bid[end - start];
+        for (int i = start; i < end; i++) {
+            copy[i - start] = bidAt(i);
+        }
+        return Collections.unmodifiableList(Arrays.asList(copy));
+    }
+
+    private Bid bidAt(int position) {
+        return this.values == null ? this.bids[position] : new Bid(this.userId, this.values[position]);
+    }
+}
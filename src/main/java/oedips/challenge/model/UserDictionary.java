@@ -0,0 +1,87 @@
+package oedips.challenge.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dictionary of the usernames of all the houses : each username gets an int
+ * id on its first bid. Bids, the indexes by user and the buyers of the
+ * auctions hold ids, so a username is stored once and compared as an int.
+ *
+ * Ids are never reused : the dictionary grows with the number of distinct
+ * bidders.
+ */
+public final class UserDictionary {
+
+    /**
+     * Id of no user.
+     */
+    public static final int NONE = -1;
+
+    private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] usernames = new String[1024];
+    private static int count;
+
+    private UserDictionary() {
+    }
+
+    /**
+     * Returns the id of a username, assigning the next one on first use. The
+     * username is visible in the dictionary before its id is returned.
+     *
+     * @param username
+     * @return
+     */
+    public static int id(String username) {
+        Integer id = ids.get(username);
+        if (id != null) {
+            return id;
+        }
+        synchronized (UserDictionary.class) {
+            id = ids.get(username);
+            if (id == null) {
+                String[] names = usernames;
+                if (count == names.length) {
+                    names = Arrays.copyOf(names, names.length * 2);
+                }
+                names[count] = username;
+                usernames = names;
+                id = count++;
+                ids.put(username, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Returns the id of a username, {@link #NONE} if it never bid. Unlike
+     * {@link #id(String)}, never grows the dictionary.
+     *
+     * @param username
+     * @return
+     */
+    public static int find(String username) {
+        Integer id = ids.get(username);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * Returns the username of an id.
+     *
+     * @param id
+     * @return null for {@link #NONE}
+     */
+    public static String username(int id) {
+        return id == NONE ? null : usernames[id];
+    }
+
+    /**
+     * Returns the number of usernames.
+     *
+     * @return
+     */
+    public static int size() {
+        return ids.size();
+    }
+}
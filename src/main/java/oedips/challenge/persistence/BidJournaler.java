@@ -0,0 +1,63 @@
+package oedips.challenge.persistence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.AuctionListener;
+import oedips.challenge.model.Bid;
+
+/**
+ * Journals the bids accepted by the auctions of a house, whoever placed them :
+ * a bidder, a batch, or a proxy bidding on behalf of a bidder; the maximum
+ * bids of the proxies; and the extensions of the auctions the bids earn.
+ *
+ * Bids are journaled before the call accepting them returns, so a caller
+ * waiting for {@link #awaitDurable()} afterwards waits for its own bids.
+ */
+public class BidJournaler implements AuctionListener {
+
+    private final Journal journal;
+    private final String houseName;
+    private final AtomicLong lastLsn = new AtomicLong();
+
+    /**
+     * Creates a journaler.
+     *
+     * @param journal
+     * @param houseName
+     */
+    public BidJournaler(final Journal journal, final String houseName) {
+        this.journal = journal;
+        this.houseName = houseName;
+    }
+
+    @Override
+    public void onStatusChange(Auction auction, AuctionLifeCycle previous, AuctionLifeCycle status) {
+    }
+
+    @Override
+    public void onBid(Auction auction, Bid bid) {
+        long lsn = this.journal.bidAccepted(this.houseName, auction.getName(), bid.getUsername(), bid.getValue());
+        this.lastLsn.accumulateAndGet(lsn, Math::max);
+    }
+
+    @Override
+    public void onMaxBid(Auction auction, String username, long maxValue) {
+        long lsn = this.journal.maxBidSet(this.houseName, auction.getName(), username, maxValue);
+        this.lastLsn.accumulateAndGet(lsn, Math::max);
+    }
+
+    @Override
+    public void onEndTimeChange(Auction auction, long previousEndTime) {
+        long lsn = this.journal.auctionExtended(this.houseName, auction.getName(), auction.getEndTime());
+        this.lastLsn.accumulateAndGet(lsn, Math::max);
+    }
+
+    /**
+     * Waits until the bids journaled so far are durable.
+     */
+    public void awaitDurable() {
+        this.journal.awaitDurable(this.lastLsn.get());
+    }
+}
@@ -0,0 +1,460 @@
+package oedips.challenge.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.Bid;
+
+/**
+ * Journal stored in a {@link WriteAheadLog}, compacted by periodic snapshots.
+ *
+ * A snapshot is written while the houses keep changing : it records the LSN
+ * of the log when it started, and recovery loads the latest snapshot then
+ * replays the log from that LSN. Replaying a mutation already present in the
+ * snapshot has no effect, so the overlap is harmless.
+ */
+public class FileJournal implements Journal, AutoCloseable {
+
+    private static final byte HOUSE_CREATED = 1;
+    private static final byte HOUSE_DELETED = 2;
+    private static final byte AUCTION_CREATED = 3;
+    private static final byte AUCTION_DELETED = 4;
+    private static final byte BID_ACCEPTED = 5;
+    private static final byte AUCTION_EXTENDED = 6;
+    private static final byte MAX_BID_SET = 7;
+
+    private static final int SNAPSHOT_MAGIC = 0x0ED1B5AC;
+    /** magic of the snapshots written before the maximum bids were kept */
+    private static final int SNAPSHOT_MAGIC_WITHOUT_MAX_BIDS = 0x0ED1B5AB;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private final File directory;
+    private final WriteAheadLog wal;
+    private final ConcurrentMap<String, AuctionHouse> houses;
+    private final ScheduledExecutorService snapshotter;
+
+    private FileJournal(final File directory, final WriteAheadLog wal,
+            final ConcurrentMap<String, AuctionHouse> houses, final Settings settings) {
+        this.directory = directory;
+        this.wal = wal;
+        this.houses = houses;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (settings.snapshotIntervalSeconds > 0) {
+            this.snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, settings.snapshotIntervalSeconds,
+                    settings.snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Recovers the houses stored in the directory, and opens the journal for
+     * appending.
+     *
+     * @param directory
+     * @param houses
+     * @param settings
+     * @return
+     */
+    public static FileJournal open(File directory, ConcurrentMap<String, AuctionHouse> houses, Settings settings) {
+        try {
+            WriteAheadLog wal = new WriteAheadLog(new File(directory, "wal"), settings.segmentSize);
+            long fromLsn = loadSnapshot(directory, houses);
+            Map<Auction, List<Bid>> replayedBids = new IdentityHashMap<>();
+            Map<Auction, List<Bid>> replayedMaxBids = new IdentityHashMap<>();
+            wal.replay(fromLsn, (lsn, payload) -> apply(payload, houses, replayedBids, replayedMaxBids));
+            for (Map.Entry<Auction, List<Bid>> entry : replayedBids.entrySet()) {
+                List<Bid> bids = entry.getValue();
+                bids.sort(Comparator.comparingLong(Bid::getValue));
+                for (Bid bid : bids) {
+                    entry.getKey().restoreBid(bid.getUsername(), bid.getValue());
+                }
+            }
+            for (Map.Entry<Auction, List<Bid>> entry : replayedMaxBids.entrySet()) {
+                for (Bid maxBid : entry.getValue()) {
+                    entry.getKey().restoreMaxBid(maxBid.getUsername(), maxBid.getValue());
+                }
+            }
+            return new FileJournal(directory, wal, houses, settings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long houseCreated(String houseName) {
+        return append(HOUSE_CREATED, out -> out.writeUTF(houseName));
+    }
+
+    @Override
+    public long houseDeleted(String houseName) {
+        return append(HOUSE_DELETED, out -> out.writeUTF(houseName));
+    }
+
+    @Override
+    public long auctionCreated(String houseName, Auction auction) {
+        return append(AUCTION_CREATED, out -> {
+            out.writeUTF(houseName);
+            writeAuction(out, auction);
+        });
+    }
+
+    @Override
+    public long auctionDeleted(String houseName, String auctionName) {
+        return append(AUCTION_DELETED, out -> {
+            out.writeUTF(houseName);
+            out.writeUTF(auctionName);
+        });
+    }
+
+    @Override
+    public long bidAccepted(String houseName, String auctionName, String username, long value) {
+        return append(BID_ACCEPTED, out -> {
+            out.writeUTF(houseName);
+            out.writeUTF(auctionName);
+            out.writeUTF(username);
+            out.writeLong(value);
+        });
+    }
+
+    @Override
+    public long maxBidSet(String houseName, String auctionName, String username, long maxValue) {
+        return append(MAX_BID_SET, out -> {
+            out.writeUTF(houseName);
+            out.writeUTF(auctionName);
+            out.writeUTF(username);
+            out.writeLong(maxValue);
+        });
+    }
+
+    @Override
+    public long auctionExtended(String houseName, String auctionName, long endTime) {
+        return append(AUCTION_EXTENDED, out -> {
+            out.writeUTF(houseName);
+            out.writeUTF(auctionName);
+            out.writeLong(endTime);
+        });
+    }
+
+    @Override
+    public void awaitDurable(long lsn) {
+        this.wal.awaitDurable(lsn);
+    }
+
+    /**
+     * Writes a snapshot of the houses, then drops the log segments and older
+     * snapshots it makes useless.
+     *
+     * @throws IOException
+     */
+    public synchronized void snapshot() throws IOException {
+        long lsn = this.wal.currentLsn();
+        File target = snapshotFile(this.directory, lsn);
+        File temporary = new File(this.directory, target.getName() + ".tmp");
+        FileOutputStream file = new FileOutputStream(temporary);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lsn);
+            for (AuctionHouse house : this.houses.values()) {
+                out.writeBoolean(true);
+                writeHouse(out, house);
+            }
+            out.writeBoolean(false);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        this.wal.truncateBefore(lsn);
+        for (long older : snapshotLsns(this.directory)) {
+            if (older < lsn) {
+                Files.deleteIfExists(snapshotFile(this.directory, older).toPath());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.snapshotter.shutdownNow();
+        this.wal.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // the log is kept, the next snapshot will cover the same mutations
+        }
+    }
+
+    private long append(byte type, RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.wal.append(bytes.toByteArray());
+    }
+
+    /**
+     * Writes a house, its auctions, their bids and maximum bids in the snapshot
+     * format.
+     *
+     * @param out
+     * @param house
+     * @throws IOException
+     */
+    public static void writeHouse(DataOutputStream out, AuctionHouse house) throws IOException {
+        out.writeUTF(house.getName());
+        for (Auction auction : house.listAuctions(null)) {
+            writeAuctionAndBids(out, auction);
+        }
+        for (Iterator<Auction> it = house.streamArchivedAuctions().iterator(); it.hasNext();) {
+            writeAuctionAndBids(out, it.next());
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void writeAuctionAndBids(DataOutputStream out, Auction auction) throws IOException {
+        out.writeBoolean(true);
+        writeAuction(out, auction);
+        out.writeBoolean(auction.computeStatus() == AuctionLifeCycle.DELETED);
+        for (Bid bid : auction.listBids()) {
+            out.writeBoolean(true);
+            out.writeUTF(bid.getUsername());
+            out.writeLong(bid.getValue());
+        }
+        out.writeBoolean(false);
+        for (Map.Entry<String, Long> maxBid : auction.listMaxBids().entrySet()) {
+            out.writeBoolean(true);
+            out.writeUTF(maxBid.getKey());
+            out.writeLong(maxBid.getValue());
+        }
+        out.writeBoolean(false);
+    }
+
+    /**
+     * Reads a house written by {@link #writeHouse(DataOutputStream, AuctionHouse)}.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static AuctionHouse readHouse(DataInputStream in) throws IOException {
+        return readHouse(in, true);
+    }
+
+    private static AuctionHouse readHouse(DataInputStream in, boolean withMaxBids) throws IOException {
+        AuctionHouse house = new AuctionHouse(in.readUTF());
+        try {
+            while (in.readBoolean()) {
+                Auction auction = readAuction(in);
+                boolean deleted = in.readBoolean();
+                while (in.readBoolean()) {
+                    auction.restoreBid(in.readUTF(), in.readLong());
+                }
+                while (withMaxBids && in.readBoolean()) {
+                    auction.restoreMaxBid(in.readUTF(), in.readLong());
+                }
+                house.addAuction(auction);
+                if (deleted) {
+                    auction.setAsDeleted();
+                }
+            }
+        } catch (IOException e) {
+            house.close();
+            throw e;
+        }
+        return house;
+    }
+
+    private static void writeAuction(DataOutputStream out, Auction auction) throws IOException {
+        out.writeUTF(auction.getName());
+        out.writeBoolean(auction.getDescription() != null);
+        if (auction.getDescription() != null) {
+            out.writeUTF(auction.getDescription());
+        }
+        out.writeLong(auction.getStartTime());
+        out.writeLong(auction.getEndTime());
+        out.writeLong(auction.getStartPrice());
+    }
+
+    private static Auction readAuction(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        String description = in.readBoolean() ? in.readUTF() : null;
+        long startTime = in.readLong();
+        long endTime = in.readLong();
+        long startPrice = in.readLong();
+        return new Auction(name, description, startTime, endTime, startPrice);
+    }
+
+    /**
+     * Applies a record of the log. The bids, and the maximum bids after them,
+     * are collected to be restored once the log is read : a maximum bid is
+     * kept as a bid of its maximum.
+     */
+    private static void apply(byte[] payload, ConcurrentMap<String, AuctionHouse> houses,
+            Map<Auction, List<Bid>> replayedBids, Map<Auction, List<Bid>> replayedMaxBids) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == HOUSE_CREATED) {
+            String houseName = in.readUTF();
+            houses.putIfAbsent(houseName, new AuctionHouse(houseName));
+            return;
+        }
+        if (type == HOUSE_DELETED) {
+            AuctionHouse house = houses.remove(in.readUTF());
+            if (house != null) {
+                house.close();
+            }
+            return;
+        }
+        AuctionHouse house = houses.get(in.readUTF());
+        if (house == null) {
+            return;
+        }
+        if (type == AUCTION_CREATED) {
+            Auction auction = readAuction(in);
+            if (house.getAuction(auction.getName()) == null) {
+                house.addAuction(auction);
+            }
+            return;
+        }
+        if (type == AUCTION_DELETED) {
+            house.deleteAuction(in.readUTF());
+            return;
+        }
+        Auction auction = house.getAuction(in.readUTF());
+        if (auction == null) {
+            return;
+        }
+        if (type == BID_ACCEPTED) {
+            String username = in.readUTF();
+            long value = in.readLong();
+            replayedBids.computeIfAbsent(auction, a -> new ArrayList<>()).add(new Bid(username, value));
+        } else if (type == MAX_BID_SET) {
+            String username = in.readUTF();
+            long maxValue = in.readLong();
+            replayedMaxBids.computeIfAbsent(auction, a -> new ArrayList<>()).add(new Bid(username, maxValue));
+        } else if (type == AUCTION_EXTENDED) {
+            auction.restoreEndTime(in.readLong());
+        }
+    }
+
+    /**
+     * Loads the latest readable snapshot.
+     *
+     * @return the LSN to replay the log from
+     */
+    private static long loadSnapshot(File directory, ConcurrentMap<String, AuctionHouse> houses) {
+        List<Long> lsns = snapshotLsns(directory);
+        for (int i = lsns.size() - 1; i >= 0; i--) {
+            Map<String, AuctionHouse> loaded = new HashMap<>();
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(snapshotFile(directory, lsns.get(i))), 1 << 16))) {
+                int magic = in.readInt();
+                if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_WITHOUT_MAX_BIDS) {
+                    continue;
+                }
+                long lsn = in.readLong();
+                while (in.readBoolean()) {
+                    AuctionHouse house = readHouse(in, magic == SNAPSHOT_MAGIC);
+                    loaded.put(house.getName(), house);
+                }
+                houses.putAll(loaded);
+                return lsn;
+            } catch (IOException e) {
+                loaded.values().forEach(AuctionHouse::close);
+            }
+        }
+        return 0;
+    }
+
+    private static List<Long> snapshotLsns(File directory) {
+        List<Long> lsns = new ArrayList<>();
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    lsns.add(Long.parseLong(
+                            name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+                }
+            }
+        }
+        Long[] sorted = lsns.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
+    }
+
+    private static File snapshotFile(File directory, long lsn) {
+        return new File(directory, String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Settings of the journal.
+     */
+    public static class Settings {
+
+        private final int segmentSize;
+        private final long snapshotIntervalSeconds;
+
+        /**
+         * Creates settings.
+         *
+         * @param segmentSize
+         *            size of a log segment in bytes
+         * @param snapshotIntervalSeconds
+         *            delay between snapshots, 0 to disable them
+         */
+        public Settings(final int segmentSize, final long snapshotIntervalSeconds) {
+            this.segmentSize = segmentSize;
+            this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        }
+
+        /**
+         * Reads the settings from the system properties oedips.wal.segmentSize
+         * (defaults to 64MB) and oedips.snapshot.interval (seconds, defaults to
+         * 300).
+         *
+         * @return
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(Integer.getInteger("oedips.wal.segmentSize", 64 << 20),
+                    Long.getLong("oedips.snapshot.interval", 300));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package oedips.challenge.persistence;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentMap;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+
+/**
+ * Journal of the mutations of the auction houses.
+ *
+ * Each mutation is appended to the journal once applied to the model, and
+ * returns a log sequence number. A caller acknowledges the mutation to its
+ * client once {@link #awaitDurable(long)} returned for that number.
+ */
+public interface Journal {
+
+    /**
+     * System property holding the data directory. Persistence is disabled when
+     * not set.
+     */
+    String DATA_DIR_PROPERTY = "oedips.data.dir";
+
+    /**
+     * Journal which does not persist anything.
+     */
+    Journal NONE = new Journal() {
+
+        @Override
+        public long houseCreated(String houseName) {
+            return 0;
+        }
+
+        @Override
+        public long houseDeleted(String houseName) {
+            return 0;
+        }
+
+        @Override
+        public long auctionCreated(String houseName, Auction auction) {
+            return 0;
+        }
+
+        @Override
+        public long auctionDeleted(String houseName, String auctionName) {
+            return 0;
+        }
+
+        @Override
+        public long bidAccepted(String houseName, String auctionName, String username, long value) {
+            return 0;
+        }
+
+        @Override
+        public long maxBidSet(String houseName, String auctionName, String username, long maxValue) {
+            return 0;
+        }
+
+        @Override
+        public long auctionExtended(String houseName, String auctionName, long endTime) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long lsn) {
+        }
+    };
+
+    /**
+     * Opens the journal configured by the system properties, after recovering
+     * the houses it holds.
+     *
+     * @param houses
+     *            the houses to recover into
+     * @return the journal, {@link #NONE} if persistence is disabled
+     */
+    static Journal open(ConcurrentMap<String, AuctionHouse> houses) {
+        String dataDir = System.getProperty(DATA_DIR_PROPERTY);
+        if (dataDir == null || dataDir.isEmpty()) {
+            return NONE;
+        }
+        return FileJournal.open(new File(dataDir), houses, FileJournal.Settings.fromSystemProperties());
+    }
+
+    /**
+     * Logs the creation of a house.
+     *
+     * @param houseName
+     * @return the log sequence number
+     */
+    long houseCreated(String houseName);
+
+    /**
+     * Logs the deletion of a house.
+     *
+     * @param houseName
+     * @return the log sequence number
+     */
+    long houseDeleted(String houseName);
+
+    /**
+     * Logs the creation of an auction.
+     *
+     * @param houseName
+     * @param auction
+     * @return the log sequence number
+     */
+    long auctionCreated(String houseName, Auction auction);
+
+    /**
+     * Logs the deletion of an auction.
+     *
+     * @param houseName
+     * @param auctionName
+     * @return the log sequence number
+     */
+    long auctionDeleted(String houseName, String auctionName);
+
+    /**
+     * Logs an accepted bid.
+     *
+     * @param houseName
+     * @param auctionName
+     * @param username
+     * @param value
+     * @return the log sequence number
+     */
+    long bidAccepted(String houseName, String auctionName, String username, long value);
+
+    /**
+     * Logs the maximum bid of a user, see
+     * {@link oedips.challenge.model.ProxyBidder}.
+     *
+     * @param houseName
+     * @param auctionName
+     * @param username
+     * @param maxValue
+     * @return the log sequence number
+     */
+    long maxBidSet(String houseName, String auctionName, String username, long maxValue);
+
+    /**
+     * Logs the new end time of an auction pushed back by a late bid.
+     *
+     * @param houseName
+     * @param auctionName
+     * @param endTime
+     * @return the log sequence number
+     */
+    long auctionExtended(String houseName, String auctionName, long endTime);
+
+    /**
+     * Waits until every mutation up to the given log sequence number is on
+     * disk.
+     *
+     * @param lsn
+     */
+    void awaitDurable(long lsn);
+}
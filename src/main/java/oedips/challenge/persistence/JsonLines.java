@@ -0,0 +1,307 @@
+package oedips.challenge.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.Bid;
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Dump of the auctions of a house as JSON Lines : one json object per line,
+ * written and read with the streaming generator and parser of Jackson, so a
+ * dump of any size is moved with the memory of a single record.
+ * <ul>
+ * <li>{"type":"auction", "name":String, "description":String,
+ * "startTime":long, "endTime":long, "startPrice":long}</li>
+ * <li>{"type":"bid", "auction":String, "username":String, "value":long}, in
+ * acceptance order, after the record of its auction</li>
+ * <li>{"type":"maxBid", "auction":String, "username":String, "value":long},
+ * a maximum bid not reached yet, in the order they were set, after the bids
+ * of its auction</li>
+ * <li>{"type":"deleted", "auction":String}, after the bids of a deleted
+ * auction</li>
+ * </ul>
+ */
+public final class JsonLines {
+
+    /**
+     * Media type of JSON Lines.
+     */
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static final int PAGE_SIZE = 1000;
+
+    private JsonLines() {
+    }
+
+    /**
+     * Writes the auctions of a house, the archived ones included, with their
+     * bids. The auctions and the bids of each auction are read one page at a
+     * time.
+     *
+     * @param output
+     * @param house
+     * @throws IOException
+     */
+    public static void writeHouse(OutputStream output, AuctionHouse house) throws IOException {
+        JsonFactory factory = JsonUtils.mapper().getFactory();
+        try (JsonGenerator generator = factory.createGenerator(output)) {
+            generator.setRootValueSeparator(null);
+            String cursor = null;
+            List<Auction> page;
+            do {
+                page = house.listAuctions(null, cursor, PAGE_SIZE);
+                for (Auction auction : page) {
+                    writeAuction(generator, auction);
+                    cursor = auction.getName();
+                }
+            } while (page.size() == PAGE_SIZE);
+            Iterator<Auction> archived = house.streamArchivedAuctions().iterator();
+            while (archived.hasNext()) {
+                writeAuction(generator, archived.next());
+            }
+        }
+    }
+
+    /**
+     * Adds the auctions of a dump to a house as they are read, with their bids
+     * and maximum bids, and journals them. The auctions the house already has
+     * are skipped, with their bids; the bids not higher than the previous ones
+     * too. Once read, the auctions are durable, and the bids once the house is
+     * journaled, see
+     * {@link oedips.challenge.cluster.Node#awaitJournaled(AuctionHouse)}.
+     * The import stops at the first record read while the house is fenced,
+     * see {@link AuctionHouse#fence()}, and is then marked as such.
+     *
+     * @param input
+     * @param house
+     * @param journal
+     * @return the numbers of auctions, bids and skipped records
+     * @throws IOException
+     *             if the dump is not valid : the records before the invalid one
+     *             are added
+     */
+    public static Imported readInto(InputStream input, AuctionHouse house, Journal journal) throws IOException {
+        Imported imported = new Imported();
+        JsonFactory factory = JsonUtils.mapper().getFactory();
+        long lsn = 0;
+        try (JsonParser parser = factory.createParser(input)) {
+            String currentName = null;
+            Auction current = null;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "record not an object");
+                }
+                Record record = Record.read(parser);
+                if (house.isFenced()) {
+                    imported.fenced = true;
+                    break;
+                }
+                if ("auction".equals(record.type)) {
+                    if (record.name == null) {
+                        throw new JsonParseException(parser, "auction without a name");
+                    }
+                    currentName = record.name;
+                    current = new Auction(record.name, record.description, record.startTime, record.endTime,
+                            record.startPrice);
+                    if (house.addAuction(current)) {
+                        lsn = journal.auctionCreated(house.getName(), current);
+                        imported.auctions++;
+                    } else if (house.isFenced()) {
+                        imported.fenced = true;
+                        break;
+                    } else {
+                        current = null;
+                        imported.skipped++;
+                    }
+                    continue;
+                }
+                if (record.auction == null || !record.auction.equals(currentName)) {
+                    throw new JsonParseException(parser, "record not following its auction " + record.auction);
+                }
+                if ("bid".equals(record.type)) {
+                    if (current != null && record.username != null
+                            && current.restoreBid(record.username, record.value)) {
+                        imported.bids++;
+                    } else {
+                        imported.skipped++;
+                    }
+                } else if ("maxBid".equals(record.type)) {
+                    if (current != null && record.username != null
+                            && current.restoreMaxBid(record.username, record.value)) {
+                        imported.maxBids++;
+                    } else {
+                        imported.skipped++;
+                    }
+                } else if ("deleted".equals(record.type)) {
+                    if (current != null && house.deleteAuction(currentName)) {
+                        lsn = journal.auctionDeleted(house.getName(), currentName);
+                    } else if (current != null && house.isFenced()) {
+                        imported.fenced = true;
+                        break;
+                    }
+                } else {
+                    throw new JsonParseException(parser, "unknown record type " + record.type);
+                }
+            }
+        } finally {
+            journal.awaitDurable(lsn);
+        }
+        return imported;
+    }
+
+    private static void writeAuction(JsonGenerator generator, Auction auction) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "auction");
+        generator.writeStringField("name", auction.getName());
+        generator.writeStringField("description", auction.getDescription());
+        generator.writeNumberField("startTime", auction.getStartTime());
+        generator.writeNumberField("endTime", auction.getEndTime());
+        generator.writeNumberField("startPrice", auction.getStartPrice());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        int cursor = 0;
+        List<Bid> page;
+        do {
+            page = auction.listBids(null, cursor, PAGE_SIZE);
+            for (Bid bid : page) {
+                generator.writeStartObject();
+                generator.writeStringField("type", "bid");
+                generator.writeStringField("auction", auction.getName());
+                generator.writeStringField("username", bid.getUsername());
+                generator.writeNumberField("value", bid.getValue());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            }
+            cursor += page.size();
+        } while (page.size() == PAGE_SIZE);
+        for (Map.Entry<String, Long> maxBid : auction.listMaxBids().entrySet()) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "maxBid");
+            generator.writeStringField("auction", auction.getName());
+            generator.writeStringField("username", maxBid.getKey());
+            generator.writeNumberField("value", maxBid.getValue());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        if (auction.computeStatus() == AuctionLifeCycle.DELETED) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "deleted");
+            generator.writeStringField("auction", auction.getName());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    /**
+     * Counts of an import.
+     */
+    public static final class Imported {
+
+        private long auctions;
+        private long bids;
+        private long maxBids;
+        private long skipped;
+        private boolean fenced;
+
+        public long getAuctions() {
+            return this.auctions;
+        }
+
+        public long getBids() {
+            return this.bids;
+        }
+
+        public long getMaxBids() {
+            return this.maxBids;
+        }
+
+        public long getSkipped() {
+            return this.skipped;
+        }
+
+        /**
+         * Returns true if the import stopped because the house was fenced.
+         *
+         * @return
+         */
+        @JsonIgnore
+        public boolean isFenced() {
+            return this.fenced;
+        }
+    }
+
+    /**
+     * Fields of a record, of any type.
+     */
+    private static final class Record {
+
+        private String type;
+        private String name;
+        private String description;
+        private long startTime;
+        private long endTime;
+        private long startPrice;
+        private String auction;
+        private String username;
+        private long value;
+
+        private static Record read(JsonParser parser) throws IOException {
+            Record record = new Record();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                case "type":
+                    record.type = parser.getValueAsString();
+                    break;
+                case "name":
+                    record.name = parser.getValueAsString();
+                    break;
+                case "description":
+                    record.description = parser.getValueAsString();
+                    break;
+                case "startTime":
+                    record.startTime = parser.getValueAsLong();
+                    break;
+                case "endTime":
+                    record.endTime = parser.getValueAsLong();
+                    break;
+                case "startPrice":
+                    record.startPrice = parser.getValueAsLong();
+                    break;
+                case "auction":
+                    record.auction = parser.getValueAsString();
+                    break;
+                case "username":
+                    record.username = parser.getValueAsString();
+                    break;
+                case "value":
+                    record.value = parser.getValueAsLong();
+                    break;
+                default:
+                    if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    }
+                    break;
+                }
+            }
+            return record;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package oedips.challenge.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped write-ahead log.
+ *
+ * The log is a sequence of fixed-size segment files named after the log
+ * sequence number (LSN) of their first byte. A record is
+ * {@code [length][crc32][payload]}; a zero length marks the end of the written
+ * part of a segment, and a record whose checksum does not match marks a torn
+ * write, after which nothing is read.
+ *
+ * Appends only copy the record into the mapped segment. Durability is given by
+ * a flusher thread forcing the segment to disk : every append waiting in
+ * {@link #awaitDurable(long)} while a force is running is covered by the next
+ * one, so concurrent writers share their fsync ("group commit").
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    private final File directory;
+    private final int segmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    private volatile long writtenLsn;
+
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition flushNeeded = durableLock.newCondition();
+    private final Condition flushed = durableLock.newCondition();
+    private volatile long durableLsn;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens the log in the directory, positioned after its last valid record.
+     *
+     * @param directory
+     * @param segmentSize
+     * @throws IOException
+     */
+    public WriteAheadLog(final File directory, final int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        List<Long> bases = segmentBases();
+        if (bases.isEmpty()) {
+            openSegment(0, 0);
+        } else {
+            long base = bases.get(bases.size() - 1);
+            openSegment(base, scanEnd(base));
+            clearTail();
+        }
+        this.durableLsn = this.writtenLsn;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param payload
+     * @return the LSN following the record, to wait for with
+     *         {@link #awaitDurable(long)}
+     */
+    public long append(byte[] payload) {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > this.segmentSize) {
+            throw new IllegalArgumentException("Record larger than a segment : " + payload.length);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        this.appendLock.lock();
+        try {
+            if (this.segment.remaining() < recordSize) {
+                rollSegment();
+            }
+            int start = this.segment.position();
+            this.segment.position(start + 4);
+            this.segment.putInt((int) crc.getValue());
+            this.segment.put(payload);
+            this.segment.putInt(start, payload.length);
+            this.writtenLsn = this.segmentBase + this.segment.position();
+            return this.writtenLsn;
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record up to the LSN is on disk.
+     *
+     * @param lsn
+     */
+    public void awaitDurable(long lsn) {
+        if (this.durableLsn >= lsn) {
+            return;
+        }
+        this.durableLock.lock();
+        try {
+            this.flushNeeded.signal();
+            while (this.durableLsn < lsn) {
+                if (this.closed) {
+                    throw new IllegalStateException("Write-ahead log closed");
+                }
+                this.flushed.awaitUninterruptibly();
+            }
+        } finally {
+            this.durableLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the LSN following the last appended record.
+     *
+     * @return
+     */
+    public long currentLsn() {
+        return this.writtenLsn;
+    }
+
+    /**
+     * Reads every valid record starting at or after the LSN, in log order.
+     *
+     * @param fromLsn
+     * @param consumer
+     * @throws IOException
+     */
+    public void replay(long fromLsn, RecordConsumer consumer) throws IOException {
+        List<Long> bases = segmentBases();
+        for (int i = 0; i < bases.size(); i++) {
+            long base = bases.get(i);
+            if (i + 1 < bases.size() && bases.get(i + 1) <= fromLsn) {
+                continue;
+            }
+            if (!readSegment(base, fromLsn, consumer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments holding only records before the LSN.
+     *
+     * @param lsn
+     */
+    public void truncateBefore(long lsn) {
+        List<Long> bases = segmentBases();
+        for (int i = 0; i + 1 < bases.size(); i++) {
+            if (bases.get(i + 1) <= lsn && bases.get(i) != this.segmentBase) {
+                File file = segmentFile(bases.get(i));
+                if (!file.delete()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.durableLock.lock();
+        try {
+            this.closed = true;
+            this.flushNeeded.signal();
+            this.flushed.signalAll();
+        } finally {
+            this.durableLock.unlock();
+        }
+        try {
+            this.flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.appendLock.lock();
+        try {
+            this.segment.force();
+        } finally {
+            this.appendLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            this.durableLock.lock();
+            try {
+                while (!this.closed && this.durableLsn >= this.writtenLsn) {
+                    this.flushNeeded.awaitUninterruptibly();
+                }
+                if (this.closed) {
+                    return;
+                }
+            } finally {
+                this.durableLock.unlock();
+            }
+            MappedByteBuffer toForce;
+            long target;
+            this.appendLock.lock();
+            try {
+                toForce = this.segment;
+                target = this.writtenLsn;
+            } finally {
+                this.appendLock.unlock();
+            }
+            toForce.force();
+            this.durableLock.lock();
+            try {
+                if (target > this.durableLsn) {
+                    this.durableLsn = target;
+                }
+                this.flushed.signalAll();
+            } finally {
+                this.durableLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Forces the full segment and maps the next one. Records of the previous
+     * segment are durable once this returns.
+     */
+    private void rollSegment() {
+        this.segment.force();
+        long previousEnd = this.writtenLsn;
+        openSegment(this.segmentBase + this.segmentSize, 0);
+        this.durableLock.lock();
+        try {
+            if (previousEnd > this.durableLsn) {
+                this.durableLsn = previousEnd;
+            }
+            this.flushed.signalAll();
+        } finally {
+            this.durableLock.unlock();
+        }
+    }
+
+    private void openSegment(long base, int position) {
+        try (FileChannel channel = FileChannel.open(segmentFile(base).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.segment.position(position);
+        this.segmentBase = base;
+        this.writtenLsn = base + position;
+    }
+
+    /**
+     * Zeroes the segment after its last valid record, so the bytes of a torn
+     * record are not read back as a record once the segment is followed by
+     * another one.
+     */
+    private void clearTail() {
+        byte[] zeros = new byte[4096];
+        int position = this.segment.position();
+        while (this.segment.hasRemaining()) {
+            this.segment.put(zeros, 0, Math.min(zeros.length, this.segment.remaining()));
+        }
+        this.segment.force();
+        this.segment.position(position);
+    }
+
+    /**
+     * Returns the position after the last valid record of a segment.
+     */
+    private int scanEnd(long base) throws IOException {
+        final int[] end = new int[1];
+        readSegment(base, base, (lsn, payload) -> end[0] = (int) (lsn - base) + HEADER_SIZE + payload.length);
+        return end[0];
+    }
+
+    /**
+     * Reads the valid records of a segment.
+     *
+     * @return false if the segment ends with a torn record
+     */
+    private boolean readSegment(long base, long fromLsn, RecordConsumer consumer) throws IOException {
+        MappedByteBuffer buffer;
+        File file = segmentFile(base);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), this.segmentSize));
+        }
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length == 0) {
+                return true;
+            }
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return false;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                return false;
+            }
+            if (base + start >= fromLsn) {
+                consumer.accept(base + start, payload);
+            }
+        }
+        return true;
+    }
+
+    private List<Long> segmentBases() {
+        List<Long> bases = new ArrayList<>();
+        String[] names = this.directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    bases.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        Long[] sorted = bases.toArray(new Long[0]);
+        Arrays.sort(sorted);
+        return Arrays.asList(sorted);
+    }
+
+    private File segmentFile(long base) {
+        return new File(this.directory, String.format("%s%020d%s", PREFIX, base, SUFFIX));
+    }
+
+    /**
+     * Consumer of replayed records.
+     */
+    public interface RecordConsumer {
+
+        /**
+         * Called for each record.
+         *
+         * @param lsn
+         *            LSN of the start of the record
+         * @param payload
+         * @throws IOException
+         */
+        void accept(long lsn, byte[] payload) throws IOException;
+    }
+}
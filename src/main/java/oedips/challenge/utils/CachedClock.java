@@ -0,0 +1,65 @@
+package oedips.challenge.utils;
+
+/**
+ * Wall clock read from a volatile field, refreshed by a ticker thread.
+ *
+ * Reading it is a plain memory load, whatever the cost of the system clock on
+ * the platform, at the price of lagging up to one resolution behind it.
+ */
+public class CachedClock extends Clock {
+
+    private final long resolutionMillis;
+    private volatile long millis = System.currentTimeMillis();
+    private volatile Thread ticker;
+
+    /**
+     * Creates a cached clock.
+     *
+     * @param resolutionMillis
+     *            period of the refresh
+     */
+    public CachedClock(final long resolutionMillis) {
+        this.resolutionMillis = Math.max(1, resolutionMillis);
+    }
+
+    @Override
+    public long millis() {
+        return this.millis;
+    }
+
+    /**
+     * Starts a daemon thread refreshing the clock.
+     *
+     * @param name
+     *            name of the thread
+     * @return this clock
+     */
+    public synchronized CachedClock start(String name) {
+        if (this.ticker == null) {
+            Thread thread = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    this.millis = System.currentTimeMillis();
+                    try {
+                        Thread.sleep(this.resolutionMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            this.ticker = thread;
+        }
+        return this;
+    }
+
+    /**
+     * Stops the thread started by {@link #start(String)}.
+     */
+    public void stop() {
+        Thread thread = this.ticker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
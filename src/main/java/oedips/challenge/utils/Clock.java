@@ -0,0 +1,76 @@
+package oedips.challenge.utils;
+
+/**
+ * Source of the current time, in milliseconds since the epoch, of the auctions
+ * and their scheduler.
+ *
+ * The clock in use is process-wide, set by the oedips.clock system property :
+ * system (the default) reads {@link System#currentTimeMillis()}, cached reads
+ * a value refreshed by a ticker thread every oedips.clock.resolution
+ * milliseconds (defaults to 1). A {@link VirtualClock} replaces it to run the
+ * life cycle of the auctions faster than real time.
+ */
+public abstract class Clock {
+
+    /**
+     * Wall clock.
+     */
+    public static final Clock SYSTEM = new Clock() {
+
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private static volatile Clock current = fromSystemProperties();
+
+    /**
+     * Returns the current time of this clock.
+     *
+     * @return
+     */
+    public abstract long millis();
+
+    /**
+     * Returns the current time of the clock in use.
+     *
+     * @return
+     */
+    public static long now() {
+        return current.millis();
+    }
+
+    /**
+     * Returns the clock in use.
+     *
+     * @return
+     */
+    public static Clock current() {
+        return current;
+    }
+
+    /**
+     * Replaces the clock in use.
+     *
+     * @param clock
+     * @return the previous clock
+     */
+    public static Clock use(Clock clock) {
+        Clock previous = current;
+        current = clock;
+        return previous;
+    }
+
+    /**
+     * Returns the clock configured by the system properties.
+     *
+     * @return
+     */
+    public static Clock fromSystemProperties() {
+        if ("cached".equals(System.getProperty("oedips.clock", "system"))) {
+            return new CachedClock(Long.getLong("oedips.clock.resolution", 1)).start("cached-clock");
+        }
+        return SYSTEM;
+    }
+}
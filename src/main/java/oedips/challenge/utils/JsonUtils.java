@@ -1,31 +1,115 @@
 package oedips.challenge.utils;
 
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.core.JsonProcessingException;
+
+import oedips.challenge.metrics.Histogram;
+import oedips.challenge.metrics.Metrics;
 
 /**
  * Json Utilitary class
+ *
+ * The mapper and its writers are built once : they are thread-safe and
+ * expensive to create.
  */
 public class JsonUtils {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    private static final ObjectWriter WRITER = MAPPER.writer();
+    private static final ObjectWriter PRETTY_WRITER = WRITER.withDefaultPrettyPrinter();
+
+    private static final Histogram SERIALIZATION = Metrics.timer("oedips_json_serialization_seconds",
+            "Time spent serializing response bodies");
+
     private JsonUtils() {
     }
 
     /**
      * Prints the object as a json.
-     * 
+     *
      * @param object
      * @return json string
      */
     public static String asJsonString(Object object) {
+        return asJsonString(object, false);
+    }
+
+    /**
+     * Prints the object as a json, optionally pretty printed.
+     *
+     * @param object
+     * @param pretty
+     * @return json string
+     */
+    public static String asJsonString(Object object, boolean pretty) {
         try {
-            ObjectWriter ow = new ObjectMapper().writer().withDefaultPrettyPrinter();
-            return ow.writeValueAsString(object);
+            return writer(pretty).writeValueAsString(object);
         } catch (JsonProcessingException e) {
             return "{\"error\":{\"error processing json\"}}";
         }
     }
 
+    /**
+     * Serializes the object as json bytes, optionally pretty printed.
+     *
+     * @param object
+     * @param pretty
+     * @return json bytes
+     */
+    public static byte[] asJsonBytes(Object object, boolean pretty) {
+        long start = System.nanoTime();
+        try {
+            return writer(pretty).writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            return "{\"error\":{\"error processing json\"}}".getBytes(StandardCharsets.UTF_8);
+        } finally {
+            SERIALIZATION.recordSince(start);
+        }
+    }
+
+    /**
+     * Returns an output writing the object as a json straight to the response
+     * stream. Collections are written element by element, without building the
+     * whole document in memory.
+     *
+     * @param object
+     * @param pretty
+     * @return
+     */
+    public static StreamingOutput asJsonStream(final Object object, final boolean pretty) {
+        return output -> {
+            long start = System.nanoTime();
+            try {
+                writer(pretty).writeValue(output, object);
+            } finally {
+                SERIALIZATION.recordSince(start);
+            }
+        };
+    }
+
+    /**
+     * Returns the shared writer.
+     *
+     * @param pretty
+     * @return
+     */
+    public static ObjectWriter writer(boolean pretty) {
+        return pretty ? PRETTY_WRITER : WRITER;
+    }
+
+    /**
+     * Returns the shared mapper, for reading.
+     *
+     * @return
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
 }
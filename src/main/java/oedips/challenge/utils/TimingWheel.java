@@ -0,0 +1,308 @@
+package oedips.challenge.utils;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Hierarchical timing wheel.
+ *
+ * Five levels of slots (256, 64, 64, 64, 64) cover 2^32 ticks. A timeout is
+ * stored in the level matching the distance to its deadline, and moves down a
+ * level each time the slot it sits in comes up ("cascading"), so scheduling,
+ * cancelling and firing a timeout are O(1) whatever the number of pending
+ * timeouts. Deadlines further than 2^32 ticks are parked in the last slot of
+ * the top level and re-evaluated when it comes up.
+ *
+ * The wheel itself is only touched by the thread advancing it. Other threads
+ * hand their new and cancelled timeouts over through lock-free queues.
+ */
+public class TimingWheel {
+
+    private static final int ROOT_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int ROOT_SIZE = 1 << ROOT_BITS;
+    private static final int LEVEL_SIZE = 1 << LEVEL_BITS;
+    private static final int ROOT_MASK = ROOT_SIZE - 1;
+    private static final int LEVEL_MASK = LEVEL_SIZE - 1;
+    private static final int LEVELS = 5;
+    private static final long MAX_TICKS = 0xffffffffL;
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final Slot[][] levels = new Slot[LEVELS][];
+
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    private long currentTick;
+    private volatile Thread ticker;
+
+    /**
+     * Creates a timing wheel.
+     *
+     * @param tickMillis
+     *            resolution of the wheel
+     * @param originMillis
+     *            time of the first tick
+     */
+    public TimingWheel(final long tickMillis, final long originMillis) {
+        this.tickMillis = tickMillis;
+        this.originMillis = originMillis;
+        for (int level = 0; level < LEVELS; level++) {
+            int size = level == 0 ? ROOT_SIZE : LEVEL_SIZE;
+            this.levels[level] = new Slot[size];
+            for (int i = 0; i < size; i++) {
+                this.levels[level][i] = new Slot();
+            }
+        }
+    }
+
+    /**
+     * Schedules a task. The task runs on the thread advancing the wheel, in the
+     * first tick at or after the deadline.
+     *
+     * @param deadlineMillis
+     * @param task
+     * @return a handle to cancel the task
+     */
+    public Timeout schedule(long deadlineMillis, Runnable task) {
+        long delta = deadlineMillis - this.originMillis;
+        long deadlineTick = delta <= 0 ? 0 : (delta + this.tickMillis - 1) / this.tickMillis;
+        Timeout timeout = new Timeout(this, deadlineTick, task);
+        this.scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Runs every tick up to the given time.
+     *
+     * @param nowMillis
+     */
+    public synchronized void advanceTo(long nowMillis) {
+        long targetTick = (nowMillis - this.originMillis) / this.tickMillis;
+        transferScheduled();
+        removeCancelled();
+        while (this.currentTick <= targetTick) {
+            int index = (int) (this.currentTick & ROOT_MASK);
+            if (index == 0) {
+                int level = 1;
+                while (level < LEVELS && cascade(level, levelIndex(this.currentTick, level)) == 0) {
+                    level++;
+                }
+            }
+            this.currentTick++;
+            Timeout expired = this.levels[0][index].clear();
+            while (expired != null) {
+                Timeout next = expired.next;
+                expired.next = null;
+                expired.expire();
+                expired = next;
+            }
+            transferScheduled();
+        }
+    }
+
+    /**
+     * Starts a daemon thread advancing the wheel with the clock in use, see
+     * {@link Clock}.
+     *
+     * @param name
+     *            name of the thread
+     * @return this wheel
+     */
+    public synchronized TimingWheel start(String name) {
+        if (this.ticker == null) {
+            Thread thread = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    advanceTo(Clock.now());
+                    try {
+                        Thread.sleep(this.tickMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            this.ticker = thread;
+        }
+        return this;
+    }
+
+    /**
+     * Stops the thread started by {@link #start(String)}.
+     */
+    public void stop() {
+        Thread thread = this.ticker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private static int levelIndex(long tick, int level) {
+        return (int) ((tick >>> (ROOT_BITS + (level - 1) * LEVEL_BITS)) & LEVEL_MASK);
+    }
+
+    private int cascade(int level, int index) {
+        Timeout timeout = this.levels[level][index].clear();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            insert(timeout);
+            timeout = next;
+        }
+        return index;
+    }
+
+    private void transferScheduled() {
+        Timeout timeout;
+        while ((timeout = this.scheduled.poll()) != null) {
+            if (timeout.state == Timeout.PENDING) {
+                insert(timeout);
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = this.cancelled.poll()) != null) {
+            if (timeout.slot != null) {
+                timeout.slot.remove(timeout);
+            }
+        }
+    }
+
+    private void insert(Timeout timeout) {
+        long expires = timeout.deadlineTick;
+        long distance = expires - this.currentTick;
+        Slot slot;
+        if (distance < 0) {
+            slot = this.levels[0][(int) (this.currentTick & ROOT_MASK)];
+        } else if (distance < ROOT_SIZE) {
+            slot = this.levels[0][(int) (expires & ROOT_MASK)];
+        } else {
+            if (distance > MAX_TICKS) {
+                expires = this.currentTick + MAX_TICKS;
+                distance = MAX_TICKS;
+            }
+            int level = 1;
+            while (level < LEVELS - 1 && distance >= 1L << (ROOT_BITS + level * LEVEL_BITS)) {
+                level++;
+            }
+            slot = this.levels[level][levelIndex(expires, level)];
+        }
+        slot.add(timeout);
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater
+                .newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final long deadlineTick;
+        private final Runnable task;
+
+        private volatile int state = PENDING;
+
+        private Slot slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(final TimingWheel wheel, final long deadlineTick, final Runnable task) {
+            this.wheel = wheel;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the task if it did not run yet.
+         *
+         * @return true if cancelled
+         */
+        public boolean cancel() {
+            if (STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                this.wheel.cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if the task was cancelled.
+         *
+         * @return
+         */
+        public boolean isCancelled() {
+            return this.state == CANCELLED;
+        }
+
+        private void expire() {
+            this.slot = null;
+            this.prev = null;
+            if (STATE.compareAndSet(this, PENDING, EXPIRED)) {
+                try {
+                    this.task.run();
+                } catch (RuntimeException e) {
+                    // a failing task must not stop the wheel
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts.
+     */
+    private static final class Slot {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.prev = this.tail;
+            timeout.next = null;
+            if (this.tail == null) {
+                this.head = timeout;
+            } else {
+                this.tail.next = timeout;
+            }
+            this.tail = timeout;
+        }
+
+        private void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                this.head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                this.tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+
+        private Timeout clear() {
+            Timeout first = this.head;
+            for (Timeout timeout = first; timeout != null; timeout = timeout.next) {
+                timeout.slot = null;
+                timeout.prev = null;
+            }
+            this.head = null;
+            this.tail = null;
+            return first;
+        }
+    }
+}
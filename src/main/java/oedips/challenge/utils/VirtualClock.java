@@ -0,0 +1,57 @@
+package oedips.challenge.utils;
+
+/**
+ * Clock moved by hand, to replay the life cycle of auctions deterministically
+ * and faster than real time.
+ *
+ * Advancing the clock also advances the timing wheels attached to it, on the
+ * calling thread : every deadline up to the new time has fired when
+ * {@link #advanceTo(long)} returns.
+ */
+public class VirtualClock extends Clock {
+
+    private final TimingWheel[] wheels;
+    private volatile long millis;
+
+    /**
+     * Creates a virtual clock.
+     *
+     * @param startMillis
+     *            initial time
+     * @param wheels
+     *            wheels advanced with the clock, not started
+     */
+    public VirtualClock(final long startMillis, final TimingWheel... wheels) {
+        this.millis = startMillis;
+        this.wheels = wheels;
+    }
+
+    @Override
+    public long millis() {
+        return this.millis;
+    }
+
+    /**
+     * Moves the clock forward, and runs the deadlines of the wheels up to the
+     * new time. Time never goes back : an earlier time is ignored.
+     *
+     * @param nowMillis
+     */
+    public synchronized void advanceTo(long nowMillis) {
+        if (nowMillis > this.millis) {
+            this.millis = nowMillis;
+        }
+        for (TimingWheel wheel : this.wheels) {
+            wheel.advanceTo(this.millis);
+        }
+    }
+
+    /**
+     * Moves the clock forward by a duration.
+     *
+     * @param durationMillis
+     */
+    public void advance(long durationMillis) {
+        advanceTo(this.millis + durationMillis);
+    }
+}
@@ -0,0 +1,135 @@
+package oedips.challenge.wire;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Client of the binary protocol of the bidders, see {@link WireServer}.
+ *
+ * Requests are buffered and sent by {@link #flush()}, or when the buffer is
+ * full, so a bidder can pipeline many bids before reading their acks with
+ * {@link #readAck()}. A client is not thread-safe.
+ */
+public class WireClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(WireProtocol.MAX_FRAME_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocate(WireProtocol.ACK_SIZE * 1024);
+    private int nextId;
+
+    /**
+     * Connects to a server.
+     *
+     * @param address
+     * @throws IOException
+     */
+    public WireClient(final InetSocketAddress address) throws IOException {
+        this.channel = SocketChannel.open(address);
+        this.channel.socket().setTcpNoDelay(true);
+        this.in.flip();
+    }
+
+    /**
+     * Buffers a bid.
+     *
+     * @param house
+     * @param auction
+     * @param username
+     * @param value
+     * @return the id of the request, found in its ack
+     * @throws IOException
+     */
+    public int bid(String house, String auction, String username, long value) throws IOException {
+        return request(WireProtocol.BID, house, auction, username, value);
+    }
+
+    /**
+     * Buffers a maximum bid.
+     *
+     * @param house
+     * @param auction
+     * @param username
+     * @param maxValue
+     * @return the id of the request, found in its ack
+     * @throws IOException
+     */
+    public int maxBid(String house, String auction, String username, long maxValue) throws IOException {
+        return request(WireProtocol.MAX_BID, house, auction, username, maxValue);
+    }
+
+    /**
+     * Sends the buffered requests.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.out.flip();
+        while (this.out.hasRemaining()) {
+            this.channel.write(this.out);
+        }
+        this.out.clear();
+    }
+
+    /**
+     * Reads the next ack, in the order of the requests.
+     *
+     * @return the id of the request in the high 32 bits, its status, see
+     *         {@link WireProtocol}, in the low 8 bits
+     * @throws IOException
+     */
+    public long readAck() throws IOException {
+        while (this.in.remaining() < WireProtocol.ACK_SIZE) {
+            this.in.compact();
+            if (this.channel.read(this.in) < 0) {
+                throw new EOFException("connection closed by the server");
+            }
+            this.in.flip();
+        }
+        int length = this.in.getInt();
+        byte type = this.in.get();
+        if (length != WireProtocol.ACK_SIZE - 4 || type != WireProtocol.ACK) {
+            throw new IOException("unexpected frame of type " + type);
+        }
+        int id = this.in.getInt();
+        byte status = this.in.get();
+        return ((long) id << 32) | (status & 0xFF);
+    }
+
+    /**
+     * Returns the id of the request of an ack.
+     *
+     * @param ack
+     * @return
+     */
+    public static int id(long ack) {
+        return (int) (ack >>> 32);
+    }
+
+    /**
+     * Returns the status of an ack.
+     *
+     * @param ack
+     * @return
+     */
+    public static byte status(long ack) {
+        return (byte) ack;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private int request(byte type, String house, String auction, String username, long value) throws IOException {
+        if (this.out.remaining() < WireProtocol.requestSize(house, auction, username)) {
+            flush();
+        }
+        int id = this.nextId++;
+        WireProtocol.writeRequest(this.out, type, id, house, auction, username, value);
+        return id;
+    }
+}
@@ -0,0 +1,161 @@
+package oedips.challenge.wire;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import oedips.challenge.model.BidOutcome;
+
+/**
+ * Binary protocol of the bidders, see {@link WireServer}.
+ *
+ * Every frame starts with its length, as an int, not counting these 4 bytes.
+ * Numbers are big-endian, strings are an unsigned short length followed by
+ * that many bytes of UTF-8.
+ * <ul>
+ * <li>bid request : byte {@link #BID}, int id, string house, string auction,
+ * string username, long value</li>
+ * <li>maximum bid request : byte {@link #MAX_BID}, int id, string house,
+ * string auction, string username, long maximum, see
+ * {@link oedips.challenge.model.ProxyBidder}</li>
+ * <li>ack : byte {@link #ACK}, int id of the request, byte status</li>
+ * </ul>
+ * Requests may be pipelined : a connection sends requests without waiting for
+ * their acks, and receives the acks in the order of the requests.
+ */
+public final class WireProtocol {
+
+    /** type of a bid request */
+    public static final byte BID = 1;
+    /** type of a maximum bid request */
+    public static final byte MAX_BID = 2;
+    /** type of an ack */
+    public static final byte ACK = (byte) 0x81;
+
+    /** the bid was accepted */
+    public static final byte ACCEPTED = 0;
+    /** the bid is not higher than the current price */
+    public static final byte OUTBID = 1;
+    /** the auction is not running */
+    public static final byte NOT_RUNNING = 2;
+    /** the auction does not exist */
+    public static final byte AUCTION_NOT_FOUND = 3;
+    /** the house does not exist */
+    public static final byte HOUSE_NOT_FOUND = 4;
+    /** the house belongs, or is being moved, to another node of the cluster */
+    public static final byte NOT_OWNER = 5;
+    /** the request type is unknown */
+    public static final byte UNKNOWN_REQUEST = 6;
+
+    /** size of an ack, length included */
+    public static final int ACK_SIZE = 4 + 1 + 4 + 1;
+
+    /** largest frame, length included */
+    public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * Returns the status of a bid outcome.
+     *
+     * @param outcome
+     * @return
+     */
+    public static byte status(BidOutcome outcome) {
+        switch (outcome) {
+        case ACCEPTED:
+            return ACCEPTED;
+        case OUTBID:
+            return OUTBID;
+        case NOT_RUNNING:
+            return NOT_RUNNING;
+        case HOUSE_FENCED:
+            return NOT_OWNER;
+        default:
+            return AUCTION_NOT_FOUND;
+        }
+    }
+
+    /**
+     * Writes a bid or maximum bid request.
+     *
+     * @param buffer
+     * @param type
+     *            {@link #BID} or {@link #MAX_BID}
+     * @param id
+     * @param house
+     * @param auction
+     * @param username
+     * @param value
+     */
+    public static void writeRequest(ByteBuffer buffer, byte type, int id, String house, String auction,
+            String username, long value) {
+        byte[] houseBytes = house.getBytes(StandardCharsets.UTF_8);
+        byte[] auctionBytes = auction.getBytes(StandardCharsets.UTF_8);
+        byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(1 + 4 + 6 + houseBytes.length + auctionBytes.length + usernameBytes.length + 8);
+        buffer.put(type);
+        buffer.putInt(id);
+        writeString(buffer, houseBytes);
+        writeString(buffer, auctionBytes);
+        writeString(buffer, usernameBytes);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Returns the size of a request, length included.
+     *
+     * @param house
+     * @param auction
+     * @param username
+     * @return
+     */
+    public static int requestSize(String house, String auction, String username) {
+        return 4 + 1 + 4 + 6 + house.getBytes(StandardCharsets.UTF_8).length
+                + auction.getBytes(StandardCharsets.UTF_8).length + username.getBytes(StandardCharsets.UTF_8).length
+                + 8;
+    }
+
+    /**
+     * Writes an ack.
+     *
+     * @param buffer
+     * @param id
+     * @param status
+     */
+    public static void writeAck(ByteBuffer buffer, int id, byte status) {
+        buffer.putInt(ACK_SIZE - 4);
+        buffer.put(ACK);
+        buffer.putInt(id);
+        buffer.put(status);
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @param buffer
+     *            a heap buffer
+     * @return
+     * @throws BufferUnderflowException
+     *             if the string goes past the limit of the buffer
+     */
+    public static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("string too long : " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+}
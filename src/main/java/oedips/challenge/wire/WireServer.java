@@ -0,0 +1,303 @@
+package oedips.challenge.wire;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import oedips.challenge.cluster.Cluster;
+import oedips.challenge.cluster.Node;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.BidOutcome;
+
+/**
+ * Server of the binary protocol of the bidders, see {@link WireProtocol} : a
+ * cheaper way than the REST api to send bids at a high rate.
+ *
+ * A single thread runs a selector over every connection. In each round, it
+ * reads what the connections sent, applies their bids to the houses of the
+ * node in order, waits once until the accepted bids of the round are durable,
+ * then sends the acks. A connection is not read while its acks are not sent.
+ *
+ * The server of the node configured by the system properties is started with
+ * the application when the oedips.wire.port system property is set.
+ */
+public class WireServer implements Closeable {
+
+    private static final int MIN_FRAME_SIZE = 4 + 1 + 4;
+
+    private static volatile WireServer local;
+
+    private final Node node;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Set<AuctionHouse> journaled = new HashSet<>();
+    private final List<Connection> flushing = new ArrayList<>();
+    private volatile boolean closed;
+    private Thread loop;
+
+    /**
+     * Creates a server, listening on an address.
+     *
+     * @param node
+     *            node whose houses receive the bids
+     * @param address
+     *            port 0 for any free port
+     * @throws IOException
+     */
+    public WireServer(final Node node, final InetSocketAddress address) throws IOException {
+        this.node = node;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(address);
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Starts the server of the local node on the port of the oedips.wire.port
+     * system property, once. Does nothing if the property is not set.
+     *
+     * @return the server, null if not configured
+     */
+    public static WireServer startLocal() {
+        int port = Integer.getInteger("oedips.wire.port", 0);
+        if (port <= 0) {
+            return null;
+        }
+        WireServer server = local;
+        if (server == null) {
+            synchronized (WireServer.class) {
+                server = local;
+                if (server == null) {
+                    try {
+                        server = new WireServer(Node.local(), new InetSocketAddress(port)).start("wire-server");
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    local = server;
+                }
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Starts the thread serving the connections.
+     *
+     * @param name
+     *            name of the thread
+     * @return this server
+     */
+    public synchronized WireServer start(String name) {
+        if (this.loop == null) {
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+            this.loop = thread;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * Stops the server and closes its connections.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.selector.wakeup();
+        Thread thread;
+        synchronized (this) {
+            thread = this.loop;
+        }
+        if (thread == null) {
+            closeAll();
+            return;
+        }
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select();
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((Connection) key.attachment());
+                    } else if (key.isWritable()) {
+                        this.flushing.add((Connection) key.attachment());
+                    }
+                }
+                for (AuctionHouse house : this.journaled) {
+                    this.node.awaitJournaled(house);
+                }
+                this.journaled.clear();
+                for (Connection connection : this.flushing) {
+                    flush(connection);
+                }
+                this.flushing.clear();
+            }
+        } catch (IOException e) {
+            // the selector failed : the server stops
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = this.server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void read(Connection connection) {
+        ByteBuffer in = connection.in;
+        try {
+            if (connection.channel.read(in) < 0) {
+                connection.close();
+                return;
+            }
+            in.flip();
+            while (in.remaining() >= 4) {
+                int start = in.position();
+                int length = in.getInt(start);
+                if (length < 5 || length > WireProtocol.MAX_FRAME_SIZE - 4) {
+                    connection.close();
+                    return;
+                }
+                if (in.remaining() < 4 + length) {
+                    break;
+                }
+                int end = start + 4 + length;
+                int limit = in.limit();
+                in.position(start + 4).limit(end);
+                byte type = in.get();
+                int id = in.getInt();
+                WireProtocol.writeAck(connection.out, id, handle(type, in));
+                in.limit(limit).position(end);
+            }
+            in.compact();
+            this.flushing.add(connection);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            connection.close();
+        }
+    }
+
+    private byte handle(byte type, ByteBuffer frame) {
+        if (type != WireProtocol.BID && type != WireProtocol.MAX_BID) {
+            return WireProtocol.UNKNOWN_REQUEST;
+        }
+        String houseName = WireProtocol.readString(frame);
+        String auctionName = WireProtocol.readString(frame);
+        String username = WireProtocol.readString(frame);
+        long value = frame.getLong();
+        AuctionHouse house = this.node.getHouses().get(houseName);
+        if (house == null) {
+            Cluster cluster = this.node.getCluster();
+            if (cluster != null && (!cluster.isLocal(houseName) || cluster.previousOwner(houseName) != null)) {
+                return WireProtocol.NOT_OWNER;
+            }
+            return WireProtocol.HOUSE_NOT_FOUND;
+        }
+        BidOutcome outcome = type == WireProtocol.BID ? house.submitBid(auctionName, username, value)
+                : house.setMaxBid(auctionName, username, value);
+        if (outcome == BidOutcome.ACCEPTED) {
+            this.journaled.add(house);
+        }
+        return WireProtocol.status(outcome);
+    }
+
+    private void flush(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        ByteBuffer out = connection.out;
+        try {
+            out.flip();
+            connection.channel.write(out);
+            out.compact();
+            connection.key.interestOps(out.position() > 0 ? SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        } catch (IOException e) {
+            connection.close();
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            this.server.close();
+            this.selector.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    /**
+     * Buffers of a connection. The acks of a full input buffer fit in the
+     * output buffer, which is empty when the connection is read.
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(WireProtocol.MAX_FRAME_SIZE);
+        private final ByteBuffer out = ByteBuffer
+                .allocate((WireProtocol.MAX_FRAME_SIZE / MIN_FRAME_SIZE + 1) * WireProtocol.ACK_SIZE);
+        private SelectionKey key;
+
+        private Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void close() {
+            if (this.key != null) {
+                this.key.cancel();
+            }
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+}
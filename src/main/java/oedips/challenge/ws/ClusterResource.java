@@ -0,0 +1,287 @@
+package oedips.challenge.ws;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import oedips.challenge.cluster.Cluster;
+import oedips.challenge.cluster.Node;
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.Bid;
+import oedips.challenge.model.ErrorMessage;
+import oedips.challenge.persistence.FileJournal;
+import oedips.challenge.persistence.Journal;
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Ressource /cluster
+ *
+ * Manages the membership of the node in a cluster. Supported operations :
+ * <li>lists the nodes of the cluster
+ * <li>changes the nodes of the cluster, moving the houses to their new owners
+ * <li>receives a house moved from another node
+ * <li>forgets the former nodes once the houses have moved
+ */
+@Path("/cluster")
+public class ClusterResource {
+
+    private static final String NotInClusterError = (new ErrorMessage("Node not in a cluster")).toString();
+
+    private static final String NodesNotValidError = (new ErrorMessage("Nodes not valid")).toString();
+
+    private static final String HouseNotValidError = (new ErrorMessage("House not valid")).toString();
+
+    private static final String HouseAlreadyExistsError = (new ErrorMessage("House already exists")).toString();
+
+    private static final TypeReference<List<String>> NODES = new TypeReference<List<String>>() {
+    };
+
+    private static final Client client = ClientBuilder.newClient();
+
+    @Context
+    private Configuration configuration;
+
+    /**
+     * Lists the nodes of the cluster.
+     *
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful : {"self": String, "nodes":
+     *         [String]}
+     *         <li>HTTP 409 if the node is not in a cluster
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+
+    public Response getCluster() {
+        Cluster cluster = node().getCluster();
+        if (cluster == null) {
+            return Response.status(409).entity(NotInClusterError).build();
+        }
+        Map<String, Object> members = new LinkedHashMap<>();
+        members.put("self", cluster.getSelf());
+        members.put("nodes", cluster.getNodes());
+        return Response.ok(JsonUtils.asJsonBytes(members, false)).build();
+    }
+
+    /**
+     * Changes the nodes of the cluster, on this node and on the former and new
+     * nodes, then moves the houses of this node it no longer owns to their new
+     * owners. Each node moves its own houses before answering : once they all
+     * have, the former nodes are forgotten on every node. A house is served
+     * by the node holding it until its new owner has received it, see
+     * {@link ClusterRoutingFilter}.
+     *
+     * @QueryParam former base URIs of the nodes before the change, sent by the
+     *             node coordinating it (String, repeated) - defaults to the
+     *             nodes known to this node
+     * @param body
+     *            json array of the base URIs of the nodes
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 400 if the nodes are not a non empty json array of strings
+     *         <li>HTTP 409 if the node is not in a cluster
+     *         <li>HTTP 502 if a node could not be updated or a house not moved
+     */
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+
+    public Response putNodes(@HeaderParam(ClusterRoutingFilter.FORWARDED_HEADER) final String forwarded,
+            @QueryParam("former") final List<String> former, final InputStream body) {
+        Cluster cluster = node().getCluster();
+        if (cluster == null) {
+            return Response.status(409).entity(NotInClusterError).build();
+        }
+        List<String> nodes;
+        try {
+            nodes = JsonUtils.mapper().readValue(body, NODES);
+        } catch (IOException e) {
+            return Response.status(400).entity(NodesNotValidError).build();
+        }
+        if (nodes == null || nodes.isEmpty() || nodes.contains(null)) {
+            return Response.status(400).entity(NodesNotValidError).build();
+        }
+
+        List<String> formerNodes = former == null || former.isEmpty() ? cluster.getNodes() : former;
+        Set<String> members = new LinkedHashSet<>(formerNodes);
+        cluster.setNodes(nodes, formerNodes);
+        members.addAll(cluster.getNodes());
+        members.remove(cluster.getSelf());
+
+        boolean complete = true;
+        if (forwarded == null) {
+            byte[] nodesJson = JsonUtils.asJsonBytes(nodes, false);
+            for (String member : members) {
+                complete &= send(client.target(member).path("cluster").queryParam("former", formerNodes.toArray()),
+                        "PUT", Entity.entity(nodesJson, MediaType.APPLICATION_JSON));
+            }
+        }
+        int moved = 0;
+        for (AuctionHouse house : node().getHouses().values()) {
+            if (!cluster.isLocal(house.getName())) {
+                if (moveHouse(cluster, house)) {
+                    moved++;
+                } else {
+                    complete = false;
+                }
+            }
+        }
+        if (forwarded == null && complete) {
+            for (String member : members) {
+                complete &= send(client.target(member).path("cluster/settle"), "POST", Entity.json(new byte[0]));
+            }
+            cluster.settle();
+        }
+        String message = "{\"Message\": \"cluster updated, " + moved + " houses moved\"}";
+        return Response.status(complete ? 200 : 502).entity(message).build();
+    }
+
+    /**
+     * Receives a house moved from another node : its auctions, their bids and
+     * maximum bids, in the snapshot format of the journal.
+     *
+     * @PathParam houseName (String)
+     * @param body
+     *            the house
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 400 if the house is not valid
+     *         <li>HTTP 409 if house already exists
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/house/{houseName}")
+
+    public Response postHouse(@PathParam("houseName") final String houseName, final InputStream body) {
+        AuctionHouse house;
+        try {
+            house = FileJournal.readHouse(new DataInputStream(body));
+        } catch (IOException e) {
+            return Response.status(400).entity(HouseNotValidError).build();
+        }
+        if (!house.getName().equals(houseName)) {
+            house.close();
+            return Response.status(400).entity(HouseNotValidError).build();
+        }
+        if (node().getHouses().putIfAbsent(houseName, house) != null) {
+            house.close();
+            return Response.status(409).entity(HouseAlreadyExistsError).build();
+        }
+        Journal journal = node().getJournal();
+        long lsn = journal.houseCreated(houseName);
+        for (Auction auction : house.listAuctions(null)) {
+            lsn = journal.auctionCreated(houseName, auction);
+            for (Bid bid : auction.listBids()) {
+                lsn = journal.bidAccepted(houseName, auction.getName(), bid.getUsername(), bid.getValue());
+            }
+            for (Map.Entry<String, Long> maxBid : auction.listMaxBids().entrySet()) {
+                lsn = journal.maxBidSet(houseName, auction.getName(), maxBid.getKey(), maxBid.getValue());
+            }
+            if (auction.computeStatus() == AuctionLifeCycle.DELETED) {
+                lsn = journal.auctionDeleted(houseName, auction.getName());
+            }
+        }
+        node().startJournaling(house);
+        journal.awaitDurable(lsn);
+        return Response.ok("{\"Message\": \"house " + houseName + " received\"}").build();
+    }
+
+    /**
+     * Forgets the former nodes of the cluster, once every house has moved to
+     * its new owner.
+     *
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 409 if the node is not in a cluster
+     */
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/settle")
+
+    public Response settle() {
+        Cluster cluster = node().getCluster();
+        if (cluster == null) {
+            return Response.status(409).entity(NotInClusterError).build();
+        }
+        cluster.settle();
+        return Response.ok("{\"Message\": \"cluster settled\"}").build();
+    }
+
+    /**
+     * Sends a house to its owner, then removes it from this node. The house is
+     * fenced first, so no bid is accepted after the snapshot : the bids under
+     * way are in it, the later ones are refused with a 503 and retried on the
+     * new owner. The house is unfenced if the owner did not receive it.
+     *
+     * @return true if the house was moved
+     */
+    private boolean moveHouse(Cluster cluster, AuctionHouse house) {
+        house.fence();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            FileJournal.writeHouse(out, house);
+        } catch (IOException e) {
+            house.unfence();
+            return false;
+        }
+        Entity<byte[]> entity = Entity.entity(bytes.toByteArray(), MediaType.APPLICATION_OCTET_STREAM);
+        String owner = cluster.owner(house.getName());
+        if (!send(client.target(owner).path("cluster/house/" + house.getName()), "POST", entity)) {
+            house.unfence();
+            return false;
+        }
+        HouseResource.removeHouse(node(), house.getName());
+        return true;
+    }
+
+    /**
+     * Sends a request to another node.
+     *
+     * @return true if the node answered with a success
+     */
+    private static boolean send(WebTarget target, String method, Entity<byte[]> entity) {
+        try {
+            Response response = target.request(MediaType.APPLICATION_JSON)
+                    .header(ClusterRoutingFilter.FORWARDED_HEADER, "true").method(method, entity);
+            response.close();
+            return response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL;
+        } catch (ProcessingException e) {
+            return false;
+        }
+    }
+
+    private Node node() {
+        return Node.of(this.configuration.getProperty(Node.PROPERTY));
+    }
+}
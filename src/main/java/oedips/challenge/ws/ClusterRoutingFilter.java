@@ -0,0 +1,219 @@
+package oedips.challenge.ws;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import oedips.challenge.cluster.Cluster;
+import oedips.challenge.cluster.Node;
+import oedips.challenge.model.ErrorMessage;
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Routes the requests of /house to the node owning the house, when the node
+ * is in a cluster.
+ *
+ * A request for a house owned by another node is forwarded to it, or
+ * redirected to it with a 307 if the cluster is configured so. Event streams,
+ * imports and exports are always redirected, so their entities are never held
+ * in memory by the forwarding node. The list of all houses merges the houses of
+ * every node.
+ *
+ * A node serves the houses it holds, whoever owns them. While the nodes
+ * change, a house stays on its former owner until its new owner has received
+ * it : requests are forwarded to the former owner, which forwards them once
+ * more to the new owner if the house has left. A request forwarded twice, or
+ * by the owner of the house, is marked as rerouted : a node which neither
+ * holds nor owns its house answers it with a 421, and the owner then serves
+ * it.
+ */
+@Provider
+@PreMatching
+public class ClusterRoutingFilter implements ContainerRequestFilter {
+
+    /**
+     * Header marking the requests sent by another node.
+     */
+    public static final String FORWARDED_HEADER = "X-Oedips-Forwarded";
+
+    /**
+     * Value of {@link #FORWARDED_HEADER} for the requests which must not be
+     * forwarded again : forwarded a second time, or by the owner of the house.
+     */
+    public static final String REROUTED = "rerouted";
+
+    private static final int MISDIRECTED = 421;
+
+    private static final String NodeUnavailableError = (new ErrorMessage("Node unavailable")).toString();
+
+    private static final String[] FORWARDED_REQUEST_HEADERS = { HttpHeaders.ACCEPT, HttpHeaders.IF_NONE_MATCH,
+            HttpHeaders.IF_MATCH };
+
+    private static final String[] FORWARDED_RESPONSE_HEADERS = { HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG,
+            HttpHeaders.LINK, HttpHeaders.LOCATION };
+
+    private static final Client client = ClientBuilder.newClient();
+
+    @Context
+    private Configuration configuration;
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        Node node = Node.of(this.configuration.getProperty(Node.PROPERTY));
+        Cluster cluster = node.getCluster();
+        if (cluster == null) {
+            return;
+        }
+        String forwarded = request.getHeaderString(FORWARDED_HEADER);
+        UriInfo uriInfo = request.getUriInfo();
+        List<PathSegment> segments = uriInfo.getPathSegments();
+        if (segments.isEmpty() || !"house".equals(segments.get(0).getPath())) {
+            return;
+        }
+        if (segments.size() == 1 || segments.get(1).getPath().isEmpty()) {
+            if (forwarded == null && "GET".equals(request.getMethod())) {
+                request.abortWith(listAllHouses(cluster, uriInfo));
+            }
+            return;
+        }
+        String houseName = segments.get(1).getPath();
+        if (node.getHouses().containsKey(houseName)) {
+            return;
+        }
+        boolean local = cluster.isLocal(houseName);
+        if (REROUTED.equals(forwarded)) {
+            if (!local) {
+                request.abortWith(Response.status(MISDIRECTED).build());
+            }
+            return;
+        }
+        String previousOwner = cluster.previousOwner(houseName);
+        if (local && previousOwner == null) {
+            return;
+        }
+        String target = previousOwner != null ? previousOwner : cluster.owner(houseName);
+        if (forwarded == null && (cluster.isRedirect() || isStreamed(segments))) {
+            request.abortWith(Response.temporaryRedirect(target(target, uriInfo)).build());
+            return;
+        }
+        byte[] body = readEntity(request);
+        Response response = forward(request, target(target, uriInfo), body,
+                forwarded == null && !local ? "true" : REROUTED);
+        if (response.getStatus() != MISDIRECTED || !local) {
+            request.abortWith(response);
+        } else if (body != null) {
+            request.setEntityStream(new ByteArrayInputStream(body));
+        }
+    }
+
+    /**
+     * Returns true for the event streams, and for the imports and exports of a
+     * house, whose entities are streamed.
+     */
+    private static boolean isStreamed(List<PathSegment> segments) {
+        String last = segments.get(segments.size() - 1).getPath();
+        return "events".equals(last)
+                || segments.size() == 3 && ("import".equals(last) || "export".equals(last));
+    }
+
+    private static URI target(String node, UriInfo uriInfo) {
+        String query = uriInfo.getRequestUri().getRawQuery();
+        return URI.create(node + uriInfo.getPath(false) + (query == null ? "" : "?" + query));
+    }
+
+    private static byte[] readEntity(ContainerRequestContext request) throws IOException {
+        return request.hasEntity() ? readAll(request.getEntityStream()) : null;
+    }
+
+    /**
+     * Forwards a request to another node and returns its response.
+     */
+    private static Response forward(ContainerRequestContext request, URI target, byte[] body, String from) {
+        Invocation.Builder builder = client.target(target).request().header(FORWARDED_HEADER, from);
+        for (String header : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeaderString(header);
+            if (value != null) {
+                builder.header(header, value);
+            }
+        }
+        Entity<byte[]> entity = null;
+        if (body != null) {
+            MediaType type = request.getMediaType() != null ? request.getMediaType()
+                    : MediaType.APPLICATION_OCTET_STREAM_TYPE;
+            entity = Entity.entity(body, type);
+        }
+        try {
+            Response response = builder.method(request.getMethod(), entity);
+            ResponseBuilder forwarded = Response.status(response.getStatus());
+            for (String header : FORWARDED_RESPONSE_HEADERS) {
+                for (Object value : response.getHeaders().getOrDefault(header, Collections.emptyList())) {
+                    forwarded.header(header, value);
+                }
+            }
+            if (response.hasEntity()) {
+                forwarded.entity(response.readEntity(byte[].class));
+            } else {
+                response.close();
+            }
+            return forwarded.build();
+        } catch (ProcessingException e) {
+            return Response.status(502).entity(NodeUnavailableError).type(MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    /**
+     * Returns the houses of all the nodes.
+     */
+    private Response listAllHouses(Cluster cluster, UriInfo uriInfo) {
+        boolean pretty = Boolean.parseBoolean(uriInfo.getQueryParameters().getFirst("pretty"));
+        ArrayNode houses = JsonUtils.mapper()
+                .valueToTree(Node.of(this.configuration.getProperty(Node.PROPERTY)).getHouses().values());
+        for (String node : cluster.getNodes()) {
+            if (node.equals(cluster.getSelf())) {
+                continue;
+            }
+            try {
+                byte[] body = client.target(node).path("house").request(MediaType.APPLICATION_JSON)
+                        .header(FORWARDED_HEADER, "true").get(byte[].class);
+                houses.addAll((ArrayNode) JsonUtils.mapper().readTree(body));
+            } catch (ProcessingException | WebApplicationException | IOException e) {
+                return Response.status(502).entity(NodeUnavailableError).type(MediaType.APPLICATION_JSON).build();
+            }
+        }
+        return Response.ok(JsonUtils.asJsonBytes(houses, pretty), MediaType.APPLICATION_JSON).build();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
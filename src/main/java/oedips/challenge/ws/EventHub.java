@@ -0,0 +1,370 @@
+package oedips.challenge.ws;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionEvent;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.AuctionListener;
+import oedips.challenge.model.AuctionSummary;
+import oedips.challenge.model.Bid;
+import oedips.challenge.utils.JsonUtils;
+
+/**
+ * Fan-out of the events of a house to its Server-Sent Events subscribers.
+ *
+ * The threads changing the auctions only enqueue the event. One dispatcher at
+ * a time, run on the delivery executor, serializes each event once and offers
+ * it to the bounded buffer of every subscriber of the auction or of the whole
+ * house. Each subscriber has at most one event in flight : the next one is
+ * sent when the send of the previous one completes, so the buffer of the
+ * subscriber bounds what it holds. Sends run on the writer threads, virtual
+ * threads when the JDK has them, so a connection blocking its writer only
+ * delays itself. A subscriber whose buffer is full is dropped.
+ */
+public class EventHub implements AuctionListener {
+
+    /**
+     * Events buffered per subscriber before it is dropped.
+     */
+    private static final int BUFFER_SIZE = Integer.getInteger("oedips.events.buffer", 256);
+
+    /**
+     * Events waiting for the dispatcher before new ones are dropped.
+     */
+    private static final int PENDING_SIZE = Integer.getInteger("oedips.events.pending", 65536);
+
+    private static final ExecutorService DELIVERY = Executors.newFixedThreadPool(
+            Integer.getInteger("oedips.events.threads", Math.max(4, Runtime.getRuntime().availableProcessors())),
+            runnable -> {
+                Thread thread = new Thread(runnable, "sse-delivery");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final ExecutorService WRITERS = writers();
+
+    private final AuctionHouse house;
+    private final Sse sse;
+
+    private final Set<Subscriber> houseSubscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscriber>> auctionSubscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Queue<AuctionEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private volatile boolean closed;
+
+    /**
+     * Creates the hub of a house and starts listening to it.
+     *
+     * @param house
+     * @param sse
+     */
+    public EventHub(final AuctionHouse house, final Sse sse) {
+        this.house = house;
+        this.sse = sse;
+        house.addListener(this);
+    }
+
+    /**
+     * Gets the house of the hub.
+     *
+     * @return
+     */
+    public AuctionHouse getHouse() {
+        return this.house;
+    }
+
+    /**
+     * Subscribes to the events of every auction of the house.
+     *
+     * @param sink
+     */
+    public void subscribe(SseEventSink sink) {
+        Subscriber subscriber = new Subscriber(sink, null);
+        this.houseSubscribers.add(subscriber);
+        added(subscriber);
+    }
+
+    /**
+     * Subscribes to the events of an auction. The first event is the current
+     * status of the auction, with its best bid, read from its summary so an
+     * archived auction is not rebuilt.
+     *
+     * @param summary
+     *            the summary of the auction, see
+     *            {@link AuctionHouse#getSummary(String)}
+     * @param sink
+     */
+    public void subscribe(AuctionSummary summary, SseEventSink sink) {
+        Subscriber subscriber = new Subscriber(sink, summary.getName());
+        this.auctionSubscribers.compute(summary.getName(), (name, subscribers) -> {
+            Set<Subscriber> next = subscribers == null ? ConcurrentHashMap.newKeySet() : subscribers;
+            next.add(subscriber);
+            return next;
+        });
+        added(subscriber);
+        Bid best = summary.getLeader() == null ? null : new Bid(summary.getLeader(), summary.getPrice());
+        subscriber.offer(toOutbound(new AuctionEvent(AuctionEvent.Type.STATUS, summary.getName(),
+                summary.getStatus(), best)));
+    }
+
+    /**
+     * Stops listening to the house, and closes every subscription once the
+     * pending events are sent.
+     */
+    public void close() {
+        this.house.removeListener(this);
+        this.closed = true;
+        scheduleDispatch();
+    }
+
+    @Override
+    public void onStatusChange(Auction auction, AuctionLifeCycle previous, AuctionLifeCycle status) {
+        if (previous == null) {
+            return;
+        }
+        switch (status) {
+        case RUNNING:
+            publish(new AuctionEvent(AuctionEvent.Type.STARTED, auction.getName(), status, null));
+            break;
+        case TERMINATED:
+            publish(new AuctionEvent(AuctionEvent.Type.TERMINATED, auction.getName(), status,
+                    auction.computeBestBid()));
+            break;
+        case DELETED:
+            publish(new AuctionEvent(AuctionEvent.Type.DELETED, auction.getName(), status, null));
+            break;
+        default:
+            break;
+        }
+    }
+
+    @Override
+    public void onBid(Auction auction, Bid bid) {
+        publish(new AuctionEvent(AuctionEvent.Type.BID, auction.getName(), null, bid));
+    }
+
+    private void publish(AuctionEvent event) {
+        if (this.subscriberCount.get() == 0 || this.closed) {
+            return;
+        }
+        if (this.pendingCount.incrementAndGet() > PENDING_SIZE) {
+            this.pendingCount.decrementAndGet();
+            return;
+        }
+        this.pending.add(event);
+        scheduleDispatch();
+    }
+
+    private void scheduleDispatch() {
+        if (this.dispatching.compareAndSet(false, true)) {
+            DELIVERY.execute(this::dispatch);
+        }
+    }
+
+    private void dispatch() {
+        do {
+            AuctionEvent event;
+            while ((event = this.pending.poll()) != null) {
+                this.pendingCount.decrementAndGet();
+                fanOut(event);
+            }
+            if (this.closed) {
+                this.houseSubscribers.forEach(Subscriber::close);
+                this.auctionSubscribers.values().forEach(subscribers -> subscribers.forEach(Subscriber::close));
+            }
+            this.dispatching.set(false);
+        } while (!this.pending.isEmpty() && this.dispatching.compareAndSet(false, true));
+    }
+
+    private void fanOut(AuctionEvent event) {
+        Set<Subscriber> subscribers = this.auctionSubscribers.get(event.getAuction());
+        if (this.houseSubscribers.isEmpty() && (subscribers == null || subscribers.isEmpty())) {
+            return;
+        }
+        OutboundSseEvent outbound = toOutbound(event);
+        for (Subscriber subscriber : this.houseSubscribers) {
+            subscriber.offer(outbound);
+        }
+        if (subscribers != null) {
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(outbound);
+            }
+            if (event.getType() == AuctionEvent.Type.DELETED) {
+                subscribers.forEach(Subscriber::close);
+            }
+        }
+    }
+
+    private OutboundSseEvent toOutbound(AuctionEvent event) {
+        return this.sse.newEventBuilder().name(event.getName()).mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(String.class, JsonUtils.asJsonString(event)).build();
+    }
+
+    private void added(Subscriber subscriber) {
+        this.subscriberCount.incrementAndGet();
+        if (this.closed) {
+            subscriber.close();
+        }
+    }
+
+    /**
+     * Removes a subscriber, and the subscribers of its auction once empty.
+     */
+    private void removed(Subscriber subscriber) {
+        if (subscriber.auction == null) {
+            this.houseSubscribers.remove(subscriber);
+        } else {
+            this.auctionSubscribers.computeIfPresent(subscriber.auction, (name, subscribers) -> {
+                subscribers.remove(subscriber);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+        this.subscriberCount.decrementAndGet();
+    }
+
+    /**
+     * Returns the number of auctions having subscribers.
+     *
+     * @return
+     */
+    int countWatchedAuctions() {
+        return this.auctionSubscribers.size();
+    }
+
+    private static ExecutorService writers() {
+        ExecutorService virtualThreads = RequestExecutor.newVirtualThreadPerTaskExecutor();
+        if (virtualThreads != null) {
+            return virtualThreads;
+        }
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sse-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Connection of a subscriber, with its buffer of events to send.
+     */
+    private final class Subscriber {
+
+        private final SseEventSink sink;
+        private final String auction;
+        private final ArrayBlockingQueue<OutboundSseEvent> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+        private final AtomicBoolean writing = new AtomicBoolean();
+        private final AtomicBoolean closing = new AtomicBoolean();
+        private final AtomicBoolean removed = new AtomicBoolean();
+        private volatile boolean drop;
+
+        /**
+         * @param sink
+         * @param auction
+         *            null for a subscriber of the whole house
+         */
+        private Subscriber(final SseEventSink sink, final String auction) {
+            this.sink = sink;
+            this.auction = auction;
+        }
+
+        /**
+         * Buffers an event, or drops the subscriber if its buffer is full,
+         * without waiting for its pending send.
+         */
+        private void offer(OutboundSseEvent event) {
+            if (!this.buffer.offer(event)) {
+                this.drop = true;
+                remove();
+                WRITERS.execute(this::disconnect);
+                return;
+            }
+            scheduleWrite();
+        }
+
+        /**
+         * Closes the connection once the buffered events are sent.
+         */
+        private void close() {
+            this.closing.set(true);
+            scheduleWrite();
+        }
+
+        private void scheduleWrite() {
+            if (this.writing.compareAndSet(false, true)) {
+                WRITERS.execute(this::write);
+            }
+        }
+
+        /**
+         * Sends the buffered events one at a time. When a send does not
+         * complete at once, writing resumes from its completion.
+         */
+        private void write() {
+            do {
+                OutboundSseEvent event;
+                while (!this.drop && (event = this.buffer.poll()) != null) {
+                    if (this.sink.isClosed()) {
+                        this.drop = true;
+                        break;
+                    }
+                    CompletableFuture<?> sent;
+                    try {
+                        sent = this.sink.send(event).toCompletableFuture();
+                    } catch (RuntimeException e) {
+                        this.drop = true;
+                        break;
+                    }
+                    if (!sent.isDone()) {
+                        sent.whenComplete((result, error) -> {
+                            if (error != null) {
+                                this.drop = true;
+                            }
+                            WRITERS.execute(this::write);
+                        });
+                        return;
+                    }
+                    if (sent.isCompletedExceptionally()) {
+                        this.drop = true;
+                    }
+                }
+                if (this.drop || this.closing.get()) {
+                    remove();
+                    disconnect();
+                    return;
+                }
+                this.writing.set(false);
+            } while ((!this.buffer.isEmpty() || this.drop || this.closing.get())
+                    && this.writing.compareAndSet(false, true));
+        }
+
+        private void remove() {
+            if (this.removed.compareAndSet(false, true)) {
+                removed(this);
+            }
+        }
+
+        private void disconnect() {
+            this.buffer.clear();
+            this.sink.close();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package oedips.challenge.ws;
 
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 
 import javax.ws.rs.POST;
@@ -7,16 +8,45 @@ import javax.ws.rs.DELETE;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import oedips.challenge.cluster.Cluster;
+import oedips.challenge.cluster.Node;
 import oedips.challenge.model.Auction;
 import oedips.challenge.model.AuctionHouse;
 import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.AuctionSummary;
 import oedips.challenge.model.ErrorMessage;
 import oedips.challenge.model.Bid;
+import oedips.challenge.model.BidOutcome;
+import oedips.challenge.model.BidRequest;
+import oedips.challenge.model.BidResult;
+import oedips.challenge.model.UserDictionary;
+import oedips.challenge.metrics.Histogram;
+import oedips.challenge.metrics.Metrics;
+import oedips.challenge.persistence.Journal;
+import oedips.challenge.persistence.JsonLines;
+import oedips.challenge.utils.JsonUtils;
 
 /**
  * Ressource /house
@@ -24,14 +54,24 @@ import oedips.challenge.model.Bid;
  * Manages an auction house. Supported operations :
  * <li>creation/deletion of auction house
  * <li>creation/deletion of auction
- * <li>creation of bids
+ * <li>creation of bids, one by one or in batches
+ * <li>proxy bidding up to a maximum bid
  * <li>lists auction houses/auctions/bids
+ * <li>bulk export/import of the auctions of a house as JSON Lines
+ * <li>streams the events of a house or of an auction
  * 
+ * Requests run on the {@link RequestExecutor} : when it is overloaded, they
+ * are rejected with HTTP 503.
  */
 @Path("/house")
 public class HouseResource {
 
-    public static volatile ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+    /**
+     * Configuration of the application, holding the node whose houses are
+     * managed, see {@link Node#PROPERTY}.
+     */
+    @Context
+    private Configuration configuration;
 
     private static final String houseNotFoundError = (new ErrorMessage("House does not exist")).toString();
     private static final String auctionNotFoundError = (new ErrorMessage("Auction does not exist")).toString();
@@ -43,17 +83,73 @@ public class HouseResource {
 
     private static final String BidNotValidError = (new ErrorMessage("Bid not valid")).toString();
 
+    private static final String MaxBidNotValidError = (new ErrorMessage("Maximum bid not valid")).toString();
+
+    private static final String BatchNotValidError = (new ErrorMessage("Bid batch not valid")).toString();
+
+    private static final String ImportNotValidError = (new ErrorMessage("Import not valid")).toString();
+
+    private static final String PageNotValidError = (new ErrorMessage("cursor, limit or top not valid")).toString();
+
+    private static final String HouseFencedError = (new ErrorMessage("House moving to another node, retry"))
+            .toString();
+
+    /**
+     * Page size when only a cursor is given, and largest page size.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final TypeReference<List<BidRequest>> BID_REQUESTS = new TypeReference<List<BidRequest>>() {
+    };
+
+    /**
+     * Hubs of the houses having had event subscribers.
+     */
+    private static final ConcurrentHashMap<AuctionHouse, EventHub> hubs = new ConcurrentHashMap<>();
+
+    private static final ResponseCache responseCache = new ResponseCache(
+            Integer.getInteger("oedips.responseCache.entries", 10000),
+            Long.getLong("oedips.responseCache.bytes", 64L * 1024 * 1024));
+
+    /**
+     * Executor of the requests, see {@link RequestExecutor}.
+     */
+    private static final RequestExecutor executor = RequestExecutor.fromSystemProperties();
+
+    private static final Histogram bidListSizes = Metrics.sizes("oedips_bid_list_size",
+            "Number of bids in the serialized bid lists");
+
+    static {
+        Metrics.gauge("oedips_houses", "Auction houses", () -> Node.local().getHouses().size());
+        Metrics.gauge("oedips_usernames", "Usernames of the user dictionary", UserDictionary::size);
+        for (AuctionLifeCycle status : AuctionLifeCycle.values()) {
+            Metrics.gauge("oedips_auctions", "Auctions of all the houses, by status",
+                    () -> Node.local().getHouses().values().stream().mapToLong(house -> house.countAuctions(status))
+                            .sum(),
+                    "status", status.name());
+        }
+        Metrics.gauge("oedips_archived_auctions", "Settled auctions moved to the archives of the houses",
+                () -> Node.local().getHouses().values().stream().mapToLong(AuctionHouse::countArchivedAuctions).sum());
+        Metrics.gauge("oedips_requests_running", "Requests running", executor::countRunning);
+        Metrics.gauge("oedips_requests_queued", "Requests waiting to run", executor::countQueued);
+        Metrics.gauge("oedips_response_cache_bytes", "Bytes of the cached responses", responseCache::countBytes);
+    }
+
     /**
      * Lists all action houses
      * 
+     * @QueryParam pretty pretty prints the json (boolean) - defaults to false
      * @return This call returns :
      *         <li>HTTP 200 if call successful
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
 
-    public Response getAuctionHouse() {
-        return Response.ok(houses.values()).build();
+    public CompletionStage<Response> getAuctionHouse(@QueryParam("pretty") final boolean pretty) {
+        return executor.submit(() -> {
+            return Response.ok(JsonUtils.asJsonStream(houses().values(), pretty)).build();
+        });
     }
 
     /**
@@ -70,12 +166,36 @@ public class HouseResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}")
 
-    public Response deleteAuctionHouse(@PathParam("houseName") final String houseName) {
-        if (houses.get(houseName) == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
+    public CompletionStage<Response> deleteAuctionHouse(@PathParam("houseName") final String houseName) {
+        return executor.submit(() -> {
+            if (removeHouse(node(), houseName) == null) {
+                return Response.status(404).entity(houseNotFoundError).build();
+            }
+            return Response.ok("{\"Message\": \"house deleted\"}").build();
+        });
+    }
+
+    /**
+     * Removes a house from a node : closes it, its event streams and its cached
+     * responses, and journals its deletion.
+     *
+     * @param node
+     * @param houseName
+     * @return the removed house, null if it did not exist
+     */
+    public static AuctionHouse removeHouse(Node node, String houseName) {
+        AuctionHouse house = node.getHouses().remove(houseName);
+        if (house != null) {
+            house.close();
+            node.stopJournaling(house);
+            EventHub hub = hubs.remove(house);
+            if (hub != null) {
+                hub.close();
+            }
+            responseCache.removeAll(house.getEpoch() + "/");
+            node.getJournal().awaitDurable(node.getJournal().houseDeleted(houseName));
         }
-        houses.remove(houseName);
-        return Response.ok("{\"Message\": \"house deleted\"}").build();
+        return house;
     }
 
     /**
@@ -90,36 +210,92 @@ public class HouseResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}")
 
-    public Response postAuctionHouse(@PathParam("houseName") final String houseName) {
-
-        if (houses.get(houseName) != null) {
-            return Response.status(409).entity(HouseAlreadyExistsError).build();
-        }
-        houses.put(houseName, new AuctionHouse(houseName));
-        return Response.ok("{\"Message\": \"house "+houseName+" created\"}").build();
+    public CompletionStage<Response> postAuctionHouse(@PathParam("houseName") final String houseName) {
+        return executor.submit(() -> {
+            AuctionHouse house = new AuctionHouse(houseName);
+            node().startJournaling(house);
+            if (houses().putIfAbsent(houseName, house) != null) {
+                node().stopJournaling(house);
+                house.close();
+                return Response.status(409).entity(HouseAlreadyExistsError).build();
+            }
+            journal().awaitDurable(journal().houseCreated(houseName));
+            return Response.ok("{\"Message\": \"house "+houseName+" created\"}").build();
+        });
     }
 
     /**
      * Lists auctions for a specific house and optionally for a specific user. Can
      * optionally be filtered by status : NOT_STARTED, RUNNING, TERMINATED, DELETED;
+     * or restricted to the running auctions ending before a given time, the
+     * soonest first. Auctions are listed by name, and can be read one page at a
+     * time : each full page has a Link header to the next one.
      * 
      * @PathParam houseName (String)
      * @QueryParam username (String)
+     * @QueryParam endingBefore end time limit (long) - optional
+     * @QueryParam cursor name of the last auction of the previous page (String) -
+     *             optional, ignored with endingBefore
+     * @QueryParam limit page size (int) - optional, at most 1000, defaults to 100
+     *             with a cursor
+     * @QueryParam pretty pretty prints the json (boolean) - defaults to false
      * @return This call returns :
-     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 200 if call successful, with an ETag header
+     *         <li>HTTP 304 if the If-None-Match header matches the current ETag
+     *         <li>HTTP 400 if limit is not positive
      *         <li>HTTP 404 if house does not exist
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction")
 
-    public Response listAuctions(@PathParam("houseName") final String houseName,
-            @PathParam("auctionName") final String auctionName, @QueryParam("status") final String status) {
-        AuctionHouse house = houses.get(houseName);
-        if (house == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
-        }
-        return Response.ok(house.listAuctions(status)).build();
+    public CompletionStage<Response> listAuctions(@PathParam("houseName") final String houseName,
+            @PathParam("auctionName") final String auctionName, @QueryParam("status") final String status,
+            @QueryParam("endingBefore") final Long endingBefore, @QueryParam("cursor") final String cursor,
+            @QueryParam("limit") final Integer limit, @QueryParam("pretty") final boolean pretty,
+            @Context final Request request, @Context final UriInfo uriInfo) {
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            long version = house.getVersion();
+            EntityTag tag = entityTag(house, version);
+            ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+            if (cursor != null || limit != null) {
+                int pageSize = pageSize(limit);
+                if (pageSize <= 0) {
+                    return Response.status(400).entity(PageNotValidError).build();
+                }
+                if (endingBefore != null) {
+                    return Response.ok(JsonUtils.asJsonBytes(
+                            house.listAuctionsEndingBetween(Long.MIN_VALUE, endingBefore, pageSize), pretty)).tag(tag)
+                            .build();
+                }
+                List<Auction> page = house.listAuctions(status, cursor, pageSize);
+                ResponseBuilder ok = Response.ok(JsonUtils.asJsonBytes(page, pretty)).tag(tag);
+                if (page.size() == pageSize) {
+                    ok.link(uriInfo.getRequestUriBuilder()
+                            .replaceQueryParam("cursor", page.get(page.size() - 1).getName()).build(), "next");
+                }
+                return ok.build();
+            }
+            String key = house.getEpoch() + "/auction?status=" + status + "&endingBefore=" + endingBefore + "&pretty="
+                    + pretty;
+            byte[] body = responseCache.get(key, version);
+            if (body == null) {
+                if (endingBefore != null) {
+                    body = JsonUtils.asJsonBytes(house.listAuctionsEndingBetween(Long.MIN_VALUE, endingBefore), pretty);
+                } else {
+                    body = JsonUtils.asJsonBytes(house.listAuctions(status), pretty);
+                }
+                responseCache.put(key, version, body);
+            }
+            return Response.ok(body).tag(tag).build();
+        });
     }
 
     /**
@@ -130,23 +306,26 @@ public class HouseResource {
      * @return This call returns :
      *         <li>HTTP 200 if call successful
      *         <li>HTTP 404 if house does not exist
+     *         <li>HTTP 503 if the house is moving to another node
      */
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction/{auctionName}")
 
-    public Response deleteAuction(@PathParam("houseName") final String houseName,
+    public CompletionStage<Response> deleteAuction(@PathParam("houseName") final String houseName,
             @PathParam("auctionName") final String auctionName) {
-        AuctionHouse house = houses.get(houseName);
-        if (house == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
-        }
-        Auction auction = house.getAuction(auctionName);
-        if (auction == null) {
-            return Response.status(404).build();
-        }
-        auction.setAsDeleted();
-        return Response.ok("{\"Message\": \"auction deleted\"}").build();
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            if (!house.deleteAuction(auctionName)) {
+                return house.isFenced() ? Response.status(503).entity(HouseFencedError).build()
+                        : Response.status(404).build();
+            }
+            journal().awaitDurable(journal().auctionDeleted(houseName, auctionName));
+            return Response.ok("{\"Message\": \"auction deleted\"}").build();
+        });
     }
 
     /**
@@ -155,62 +334,152 @@ public class HouseResource {
      * @PathParam houseName (String)
      * @PathParam auctionName (String)
      * @QueryParam dsc description of the auction (String) - defaults to null
-     * @QueryParam startTime start time of the auction (long) - defaults to 0
+     * @QueryParam startTime start time of the auction (long) - defaults to 0, i.e.
+     *             the auction starts immediately
      * @QueryParam endTime end time of the auction (long) - defaults to 0
      * @QueryParam startPrice starting price of the auction (long) - defaults to 0
      * @return This call returns :
      *         <li>HTTP 200 if call successful
      *         <li>HTTP 404 if house does not exist
      *         <li>409 if auction already exists
+     *         <li>503 if the house is moving to another node
      */
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction/{auctionName}")
 
-    public Response postAuction(@PathParam("houseName") final String houseName,
+    public CompletionStage<Response> postAuction(@PathParam("houseName") final String houseName,
             @PathParam("auctionName") final String auctionName, @QueryParam("dsc") final String description,
             @QueryParam("startTime") final long startTime, @QueryParam("endTime") final long endTime,
             @QueryParam("startPrice") final long startPrice) {
-
-        AuctionHouse house = houses.get(houseName);
-        if (house == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
-        }
-        if (house.addAuction(new Auction(auctionName, description, endTime, startPrice)) == false) {
-            return Response.status(409).entity(AuctionAlreadyExistsError).build();
-        }
-
-        return Response.ok("{\"Message\": \"auction "+auctionName+" created\"}").build();
-
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            Auction auction = new Auction(auctionName, description, startTime, endTime, startPrice);
+            if (house.addAuction(auction) == false) {
+                return house.isFenced() ? Response.status(503).entity(HouseFencedError).build()
+                        : Response.status(409).entity(AuctionAlreadyExistsError).build();
+            }
+            journal().awaitDurable(journal().auctionCreated(houseName, auction));
+
+            return Response.ok("{\"Message\": \"auction "+auctionName+" created\"}").build();
+        });
     }
 
     /**
      * Lists all bids for a specific house and auction, and optionally for a user.
+     * Bids are listed in acceptance order, and can be read one page at a time :
+     * each full page has a Link header to the next one. Alternatively, lists
+     * the highest bids, which are also the latest, the highest first.
      * 
      * @PathParam houseName (String)
      * @PathParam auctionName (String)
      * @QueryParam username username (String)
+     * @QueryParam cursor position of the first bid (int) - optional, defaults to 0
+     * @QueryParam limit page size (int) - optional, at most 1000, defaults to 100
+     *             with a cursor
+     * @QueryParam top number of highest bids (int) - optional, at most 1000
+     * @QueryParam pretty pretty prints the json (boolean) - defaults to false
      * @return This call returns :
-     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 200 if call successful, with an ETag header
+     *         <li>HTTP 304 if the If-None-Match header matches the current ETag
+     *         <li>HTTP 400 if cursor is negative, or limit or top not positive
      *         <li>HTTP 404 if house or auction does not exist
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction/{auctionName}/bid")
 
-    public Response listBids(@PathParam("houseName") final String houseName,
-            @PathParam("auctionName") final String auctionName, @QueryParam("username") final String username) {
-
-        AuctionHouse house = houses.get(houseName);
-        if (house == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
-        }
-        Auction auction = house.getAuction(auctionName);
-        if (auction == null) {
-            return Response.status(404).entity(auctionNotFoundError).build();
-        }
+    public CompletionStage<Response> listBids(@PathParam("houseName") final String houseName,
+            @PathParam("auctionName") final String auctionName, @QueryParam("username") final String username,
+            @QueryParam("cursor") final Integer cursor, @QueryParam("limit") final Integer limit,
+            @QueryParam("top") final Integer top, @QueryParam("pretty") final boolean pretty,
+            @Context final Request request, @Context final UriInfo uriInfo) {
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            AuctionSummary summary = house.getSummary(auctionName);
+            if (summary == null) {
+                return Response.status(404).entity(auctionNotFoundError).build();
+            }
+
+            long version = summary.getVersion();
+            EntityTag tag = entityTag(house, version);
+            ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+            if (top != null) {
+                if (top <= 0) {
+                    return Response.status(400).entity(PageNotValidError).build();
+                }
+                List<Bid> highest = house.listTopBids(auctionName, username, Math.min(top, MAX_PAGE_SIZE));
+                if (highest == null) {
+                    return Response.status(404).entity(auctionNotFoundError).build();
+                }
+                return Response.ok(JsonUtils.asJsonBytes(highest, pretty)).tag(tag).build();
+            }
+            if (cursor != null || limit != null) {
+                int from = cursor == null ? 0 : cursor;
+                int pageSize = pageSize(limit);
+                if (from < 0 || pageSize <= 0) {
+                    return Response.status(400).entity(PageNotValidError).build();
+                }
+                List<Bid> page = house.listBids(auctionName, username, from, pageSize);
+                if (page == null) {
+                    return Response.status(404).entity(auctionNotFoundError).build();
+                }
+                ResponseBuilder ok = Response.ok(JsonUtils.asJsonBytes(page, pretty)).tag(tag);
+                if (page.size() == pageSize) {
+                    ok.link(uriInfo.getRequestUriBuilder().replaceQueryParam("cursor", from + page.size()).build(),
+                            "next");
+                }
+                return ok.build();
+            }
+            String key = house.getEpoch() + "/auction/" + auctionName + "/bid?username=" + username + "&pretty="
+                    + pretty;
+            byte[] body = responseCache.get(key, version);
+            if (body == null) {
+                Collection<Bid> bids = house.listBids(auctionName, username);
+                if (bids == null) {
+                    return Response.status(404).entity(auctionNotFoundError).build();
+                }
+                bidListSizes.record(bids.size());
+                body = JsonUtils.asJsonBytes(bids, pretty);
+                responseCache.put(key, version, body);
+            }
+            return Response.ok(body).tag(tag).build();
+        });
+    }
 
-        return Response.ok(auction.listBids(username)).build();
+    /**
+     * Lists the bids of a user in all the running auctions of a house, by
+     * auction name.
+     * 
+     * @PathParam houseName (String)
+     * @PathParam username (String)
+     * @QueryParam pretty pretty prints the json (boolean) - defaults to false
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful
+     *         <li>HTTP 404 if house does not exist
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{houseName}/user/{username}/bid")
+
+    public CompletionStage<Response> listActiveBids(@PathParam("houseName") final String houseName,
+            @PathParam("username") final String username, @QueryParam("pretty") final boolean pretty) {
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            return Response.ok(JsonUtils.asJsonStream(house.listActiveBids(username), pretty)).build();
+        });
     }
 
     /**
@@ -227,17 +496,60 @@ public class HouseResource {
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction/{auctionName}/winner")
 
-    public Response getWinner(@PathParam("houseName") final String houseName,
+    public CompletionStage<Response> getWinner(@PathParam("houseName") final String houseName,
             @PathParam("auctionName") final String auctionName) {
-        AuctionHouse house = houses.get(houseName);
-        if (house == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
-        }
-        Auction auction = house.getAuction(auctionName);
-        if (auction.computeStatus() != AuctionLifeCycle.TERMINATED) {
-            return Response.status(409).entity(AuctionNotTerminated).build();
-        }
-        return Response.ok(auction.computeBuyer()).build();
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            AuctionSummary summary = house.getSummary(auctionName);
+            if (summary == null) {
+                return Response.status(404).entity(auctionNotFoundError).build();
+            }
+            if (summary.getStatus() != AuctionLifeCycle.TERMINATED) {
+                return Response.status(409).entity(AuctionNotTerminated).build();
+            }
+            return Response.ok(summary.getLeader()).build();
+        });
+    }
+
+    /**
+     * Returns the summary of an auction : status, current price, leader,
+     * numbers of bids and bidders, time of the last bid and end time, without
+     * listing its bids.
+     * 
+     * @PathParam houseName (String)
+     * @PathParam auctionName (String)
+     * @QueryParam pretty pretty prints the json (boolean) - defaults to false
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful, with an ETag header
+     *         <li>HTTP 304 if the If-None-Match header matches the current ETag
+     *         <li>HTTP 404 if house or auction does not exist
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{houseName}/auction/{auctionName}/summary")
+
+    public CompletionStage<Response> getSummary(@PathParam("houseName") final String houseName,
+            @PathParam("auctionName") final String auctionName, @QueryParam("pretty") final boolean pretty,
+            @Context final Request request) {
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).build();
+            }
+            AuctionSummary summary = house.getSummary(auctionName);
+            if (summary == null) {
+                return Response.status(404).entity(auctionNotFoundError).build();
+            }
+            EntityTag tag = entityTag(house, summary.getVersion());
+            ResponseBuilder notModified = request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.build();
+            }
+            return Response.ok(JsonUtils.asJsonBytes(summary, pretty)).tag(tag).build();
+        });
     }
 
     /**
@@ -252,31 +564,317 @@ public class HouseResource {
      *         <li>HTTP 404 if house or auction does not exist
      *         <li>422 if bid not valid, i.e. bidding value has already been
      *         outbidded, or auction not running.
+     *         <li>503 if the house is moving to another node
      */
     @POST
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{houseName}/auction/{auctionName}/bid/{username}")
 
-    public Response postBid(@PathParam("houseName") final String houseName,
+    public CompletionStage<Response> postBid(@PathParam("houseName") final String houseName,
             @PathParam("auctionName") final String auctionName, @PathParam("username") final String username,
             @QueryParam("bid") final long biddingValue) {
+        return executor.submit(() -> {
+            final AuctionHouse auctionHouse = houses().get(houseName);
+            if (auctionHouse == null) {
+                return houseNotFound(houseName).build();
+            }
+
+            BidOutcome outcome = auctionHouse.submitBid(auctionName, username, biddingValue);
+            if (outcome == BidOutcome.AUCTION_NOT_FOUND) {
+                return Response.status(404).entity(auctionNotFoundError).build();
+            }
+            if (outcome == BidOutcome.HOUSE_FENCED) {
+                return Response.status(503).entity(HouseFencedError).build();
+            }
+            if (outcome != BidOutcome.ACCEPTED) {
+                return Response.status(422).entity(BidNotValidError).build();
+            }
+            node().awaitJournaled(auctionHouse);
+            return Response.ok("{\"Message\": \"bid created\"}").build();
+        });
+    }
+
+    /**
+     * Sets the maximum bid of a user on an auction : the auction bids on behalf
+     * of the user, just enough to outbid the other bidders, up to that maximum.
+     *
+     * @PathParam houseName (String)
+     * @PathParam auctionName (String)
+     * @PathParam username username (String)
+     * @QueryParam max maximum bidding value (long) - defaults to 0
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful, with the leading bid
+     *         <li>HTTP 404 if house or auction does not exist
+     *         <li>422 if maximum bid not valid, i.e. not higher than the current
+     *         price or than the previous maximum of the user, or auction not
+     *         running.
+     *         <li>503 if the house is moving to another node
+     */
+    @POST
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{houseName}/auction/{auctionName}/proxy/{username}")
+
+    public CompletionStage<Response> postMaxBid(@PathParam("houseName") final String houseName,
+            @PathParam("auctionName") final String auctionName, @PathParam("username") final String username,
+            @QueryParam("max") final long maxValue) {
+        return executor.submit(() -> {
+            final AuctionHouse auctionHouse = houses().get(houseName);
+            if (auctionHouse == null) {
+                return houseNotFound(houseName).build();
+            }
+
+            BidOutcome outcome = auctionHouse.setMaxBid(auctionName, username, maxValue);
+            if (outcome == BidOutcome.AUCTION_NOT_FOUND) {
+                return Response.status(404).entity(auctionNotFoundError).build();
+            }
+            if (outcome == BidOutcome.HOUSE_FENCED) {
+                return Response.status(503).entity(HouseFencedError).build();
+            }
+            if (outcome != BidOutcome.ACCEPTED) {
+                return Response.status(422).entity(MaxBidNotValidError).build();
+            }
+            node().awaitJournaled(auctionHouse);
+            Bid best = auctionHouse.getAuction(auctionName).computeBestBid();
+            return Response.ok(JsonUtils.asJsonString(best)).build();
+        });
+    }
+
+    /**
+     * Creates a batch of bids on the auctions of a house. The bids of each
+     * auction are applied in the order of the batch.
+     * 
+     * @PathParam houseName (String)
+     * @param body json array of bids : {"auction": String, "username": String,
+     *            "bid": long}
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful, with the outcome of each bid :
+     *         ACCEPTED, OUTBID, NOT_RUNNING, AUCTION_NOT_FOUND or HOUSE_FENCED if
+     *         the house is moving to another node
+     *         <li>HTTP 400 if the batch is not valid json, or a bid has no
+     *         auction or username : no bid of the batch is then applied
+     *         <li>HTTP 404 if house does not exist
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{houseName}/bid")
+
+    public CompletionStage<Response> postBids(@PathParam("houseName") final String houseName, final InputStream body) {
+        return executor.submit(() -> {
+            final AuctionHouse auctionHouse = houses().get(houseName);
+            if (auctionHouse == null) {
+                return houseNotFound(houseName).build();
+            }
+
+            List<BidRequest> bids;
+            try {
+                bids = JsonUtils.mapper().readValue(body, BID_REQUESTS);
+            } catch (IOException e) {
+                return Response.status(400).entity(BatchNotValidError).build();
+            }
+            if (bids == null) {
+                return Response.status(400).entity(BatchNotValidError).build();
+            }
+            for (BidRequest bid : bids) {
+                if (bid == null || bid.getAuction() == null || bid.getUsername() == null) {
+                    return Response.status(400).entity(BatchNotValidError).build();
+                }
+            }
+
+            List<BidResult> results = auctionHouse.addBids(bids);
+            node().awaitJournaled(auctionHouse);
+            return Response.ok(JsonUtils.asJsonStream(results, false)).build();
+        });
+    }
+
+    /**
+     * Exports the auctions of a house, the archived ones included, with their
+     * bids, as JSON Lines, see {@link JsonLines}. The records are streamed as
+     * they are read from the house.
+     * 
+     * @PathParam houseName (String)
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful, with a record per line
+     *         <li>HTTP 404 if house does not exist
+     */
+    @GET
+    @Produces({ JsonLines.MEDIA_TYPE, MediaType.APPLICATION_JSON })
+    @Path("/{houseName}/export")
+
+    public CompletionStage<Response> exportHouse(@PathParam("houseName") final String houseName) {
+        return executor.submit(() -> {
+            final AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                return houseNotFound(houseName).type(MediaType.APPLICATION_JSON).build();
+            }
+            StreamingOutput records = output -> JsonLines.writeHouse(output, house);
+            return Response.ok(records, JsonLines.MEDIA_TYPE).build();
+        });
+    }
+
+    /**
+     * Imports auctions and their bids, as exported by
+     * {@link #exportHouse(String)}, into a house, created if it does not exist.
+     * Records are added as they are read : the auctions the house already has
+     * are skipped, and the records read before an invalid one, or before the
+     * house started moving to another node, stay added.
+     * 
+     * @PathParam houseName (String)
+     * @param body JSON Lines of auctions, bids and deletions
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful : {"auctions": long, "bids": long,
+     *         "maxBids": long, "skipped": long}
+     *         <li>HTTP 400 if a record is not valid
+     *         <li>HTTP 503 if the house is moving to another node
+     */
+    @POST
+    @Consumes(JsonLines.MEDIA_TYPE)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{houseName}/import")
+
+    public CompletionStage<Response> importHouse(@PathParam("houseName") final String houseName,
+            final InputStream body) {
+        return executor.submit(() -> {
+            AuctionHouse house = houses().get(houseName);
+            if (house == null) {
+                AuctionHouse created = new AuctionHouse(houseName);
+                node().startJournaling(created);
+                house = houses().putIfAbsent(houseName, created);
+                if (house == null) {
+                    house = created;
+                    journal().awaitDurable(journal().houseCreated(houseName));
+                } else {
+                    node().stopJournaling(created);
+                    created.close();
+                }
+            }
+            if (house.isFenced()) {
+                return Response.status(503).entity(HouseFencedError).build();
+            }
+            JsonLines.Imported imported;
+            try {
+                imported = JsonLines.readInto(body, house, journal());
+            } catch (IOException e) {
+                node().awaitJournaled(house);
+                return Response.status(400).entity(ImportNotValidError).build();
+            }
+            node().awaitJournaled(house);
+            if (imported.isFenced()) {
+                return Response.status(503).entity(HouseFencedError).build();
+            }
+            return Response.ok(JsonUtils.asJsonBytes(imported, false)).build();
+        });
+    }
+
+    /**
+     * Streams the events of every auction of a house as Server-Sent Events :
+     * bid, started, terminated and deleted. A subscriber too slow to read
+     * its events is disconnected.
+     * 
+     * @PathParam houseName (String)
+     * @return This call returns :
+     *         <li>HTTP 200 with the event stream if call successful
+     *         <li>HTTP 404 if house does not exist
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Path("/{houseName}/events")
 
-        final AuctionHouse auctionHouse = houses.get(houseName);
+    public void getHouseEvents(@PathParam("houseName") final String houseName, @Context final SseEventSink sink,
+            @Context final Sse sse) {
+        AuctionHouse auctionHouse = houses().get(houseName);
         if (auctionHouse == null) {
-            return Response.status(404).entity(houseNotFoundError).build();
+            throw new WebApplicationException(houseNotFound(houseName).build());
         }
+        hub(houseName, auctionHouse, sse).subscribe(sink);
+    }
 
-        if (auctionHouse.getAuction(auctionName) == null) {
-            return Response.status(404).entity(auctionNotFoundError).build();
+    /**
+     * Streams the events of an auction as Server-Sent Events : status first,
+     * then bid, started, terminated and deleted. A subscriber too slow to read
+     * its events is disconnected.
+     * 
+     * @PathParam houseName (String)
+     * @PathParam auctionName (String)
+     * @return This call returns :
+     *         <li>HTTP 200 with the event stream if call successful
+     *         <li>HTTP 404 if house or auction does not exist
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @Path("/{houseName}/auction/{auctionName}/events")
 
+    public void getAuctionEvents(@PathParam("houseName") final String houseName,
+            @PathParam("auctionName") final String auctionName, @Context final SseEventSink sink,
+            @Context final Sse sse) {
+        AuctionHouse auctionHouse = houses().get(houseName);
+        if (auctionHouse == null) {
+            throw new WebApplicationException(houseNotFound(houseName).build());
         }
+        AuctionSummary summary = auctionHouse.getSummary(auctionName);
+        if (summary == null) {
+            throw new WebApplicationException(Response.status(404).entity(auctionNotFoundError).build());
+        }
+        hub(houseName, auctionHouse, sse).subscribe(summary, sink);
+    }
 
-        boolean added = houses.get(houseName).addBid(auctionName, username, biddingValue);
-        if (!added) {
-            return Response.status(422).entity(BidNotValidError).build();
+    /**
+     * Returns the page size for a requested limit, 0 if not valid.
+     */
+    private static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
         }
-        return Response.ok("{\"Message\": \"bid created\"}").build();
+        return limit <= 0 ? 0 : Math.min(limit, MAX_PAGE_SIZE);
+    }
 
+    /**
+     * Returns the event hub of a house, created on first use.
+     */
+    private EventHub hub(String houseName, AuctionHouse house, Sse sse) {
+        EventHub hub = hubs.computeIfAbsent(house, h -> new EventHub(h, sse));
+        if (houses().get(houseName) != house) {
+            hubs.remove(house, hub);
+            hub.close();
+        }
+        return hub;
+    }
+
+    /**
+     * Answers a request for a house this node does not hold : 404, or 503 if
+     * the house belongs to another node, to which it moved after the request
+     * was routed here.
+     */
+    private ResponseBuilder houseNotFound(String houseName) {
+        Cluster cluster = node().getCluster();
+        if (cluster != null && !cluster.isLocal(houseName)) {
+            return Response.status(503).entity(HouseFencedError);
+        }
+        return Response.status(404).entity(houseNotFoundError);
+    }
+
+    private Node node() {
+        return Node.of(this.configuration.getProperty(Node.PROPERTY));
+    }
+
+    private ConcurrentHashMap<String, AuctionHouse> houses() {
+        return node().getHouses();
+    }
+
+    private Journal journal() {
+        return node().getJournal();
+    }
+
+    /**
+     * Returns the entity tag of a response computed from a house or one of its
+     * auctions at the given version.
+     * 
+     * @param house
+     * @param version
+     * @return
+     */
+    private static EntityTag entityTag(AuctionHouse house, long version) {
+        return new EntityTag(Long.toHexString(house.getEpoch()) + "-" + Long.toHexString(version));
     }
 
 }
@@ -0,0 +1,69 @@
+package oedips.challenge.ws;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import oedips.challenge.metrics.Histogram;
+import oedips.challenge.metrics.Metrics;
+
+/**
+ * Records the latency of each resource method, from the matched request to
+ * the response, before a streamed body is written.
+ *
+ * The start time is kept in a request property : a response may be sent
+ * from another thread than the request, see {@link RequestExecutor}. It is
+ * held in a primitive field of a {@link Start} rather than boxed.
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Map<Method, Histogram> LATENCIES = new ConcurrentHashMap<>();
+
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, new Start(System.nanoTime()));
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Method method = this.resourceInfo.getResourceMethod();
+        if (method == null) {
+            return;
+        }
+        Histogram latency = LATENCIES.get(method);
+        if (latency == null) {
+            latency = LATENCIES.computeIfAbsent(method, m -> Metrics.timer("oedips_http_request_seconds",
+                    "Latency of the endpoints", "endpoint", m.getName()));
+        }
+        Object start = request.getProperty(START);
+        if (start instanceof Start) {
+            latency.recordSince(((Start) start).nanos);
+        }
+    }
+
+    /**
+     * Start time of a request.
+     */
+    private static final class Start {
+
+        private final long nanos;
+
+        private Start(final long nanos) {
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package oedips.challenge.ws;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import oedips.challenge.metrics.Metrics;
+
+/**
+ * Ressource /metrics
+ *
+ * Exports the metrics of the service in the Prometheus text format : bids by
+ * outcome, latency of the endpoints, auctions by status, sizes of the bid
+ * lists and serialization time.
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    /**
+     * Prometheus text format.
+     */
+    public static final String TEXT_FORMAT = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * Exports all metrics.
+     *
+     * @return This call returns :
+     *         <li>HTTP 200 if call successful
+     */
+    @GET
+    @Produces(TEXT_FORMAT)
+
+    public Response getMetrics() {
+        return Response.ok(Metrics.scrape()).build();
+    }
+}
@@ -0,0 +1,203 @@
+package oedips.challenge.ws;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.Response;
+
+import oedips.challenge.model.ErrorMessage;
+
+/**
+ * Executes the requests of the resources, off the threads of the container.
+ *
+ * Three modes, chosen by the oedips.executor system property :
+ * <li>virtual : one virtual thread per request, on JDK 21 and later
+ * <li>platform : a pool of platform threads, one per concurrent request
+ * <li>direct : on the thread of the container, as synchronous endpoints do
+ *
+ * The default is virtual when the JDK has virtual threads, direct otherwise.
+ *
+ * At most oedips.executor.concurrency requests run at once, and at most
+ * oedips.executor.queue more wait for their turn : requests beyond are
+ * rejected with a 503, rather than piling up.
+ */
+public class RequestExecutor {
+
+    private static final String OverloadedError = (new ErrorMessage("Service overloaded")).toString();
+
+    /**
+     * Execution modes.
+     */
+    public enum Mode {
+        VIRTUAL, PLATFORM, DIRECT
+    }
+
+    private final Mode mode;
+    private final ExecutorService threads;
+    private final int concurrency;
+    private final Semaphore running;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxAdmitted;
+
+    /**
+     * Creates an executor.
+     *
+     * @param mode
+     *            VIRTUAL falls back to PLATFORM when the JDK has no virtual
+     *            threads
+     * @param concurrency
+     *            maximum number of requests running at once, also the number
+     *            of platform threads
+     * @param maxQueued
+     *            maximum number of requests waiting to run
+     */
+    public RequestExecutor(final Mode mode, final int concurrency, final int maxQueued) {
+        ExecutorService virtualThreads = mode == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtualThreads == null) {
+            this.mode = Mode.PLATFORM;
+        } else {
+            this.mode = mode;
+        }
+        if (this.mode == Mode.VIRTUAL) {
+            this.threads = virtualThreads;
+        } else if (this.mode == Mode.PLATFORM) {
+            this.threads = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.threads = null;
+        }
+        this.concurrency = concurrency;
+        this.running = new Semaphore(concurrency);
+        this.maxAdmitted = concurrency + maxQueued;
+    }
+
+    /**
+     * Returns the executor configured by the system properties.
+     *
+     * @return
+     */
+    public static RequestExecutor fromSystemProperties() {
+        String mode = System.getProperty("oedips.executor");
+        int concurrency = Integer.getInteger("oedips.executor.concurrency",
+                4 * Runtime.getRuntime().availableProcessors());
+        int queue = Integer.getInteger("oedips.executor.queue", 10000);
+        if (mode == null || mode.isEmpty()) {
+            return new RequestExecutor(isVirtualThreadsAvailable() ? Mode.VIRTUAL : Mode.DIRECT, concurrency, queue);
+        }
+        return new RequestExecutor(Mode.valueOf(mode.toUpperCase()), concurrency, queue);
+    }
+
+    /**
+     * Runs a request, in the calling thread if the mode is DIRECT.
+     *
+     * @param request
+     * @return the response of the request, a 503 if the executor is overloaded
+     */
+    public CompletionStage<Response> submit(Supplier<Response> request) {
+        if (this.admitted.incrementAndGet() > this.maxAdmitted) {
+            this.admitted.decrementAndGet();
+            return CompletableFuture.completedFuture(overloaded());
+        }
+        if (this.mode == Mode.DIRECT) {
+            return CompletableFuture.completedFuture(run(request));
+        }
+        CompletableFuture<Response> response = new CompletableFuture<>();
+        try {
+            this.threads.execute(() -> {
+                try {
+                    response.complete(run(request));
+                } catch (Throwable e) {
+                    response.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.admitted.decrementAndGet();
+            response.complete(overloaded());
+        }
+        return response;
+    }
+
+    /**
+     * Gets the effective mode.
+     *
+     * @return
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Returns the number of requests waiting to run.
+     *
+     * @return
+     */
+    public int countQueued() {
+        return Math.max(0, this.admitted.get() - countRunning());
+    }
+
+    /**
+     * Returns the number of requests running.
+     *
+     * @return
+     */
+    public int countRunning() {
+        return this.concurrency - this.running.availablePermits();
+    }
+
+    /**
+     * Returns true if the JDK has virtual threads.
+     *
+     * @return
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return virtualThreadFactory() != null;
+    }
+
+    private Response run(Supplier<Response> request) {
+        this.running.acquireUninterruptibly();
+        try {
+            return request.get();
+        } finally {
+            this.running.release();
+            this.admitted.decrementAndGet();
+        }
+    }
+
+    private static Response overloaded() {
+        return Response.status(503).entity(OverloadedError).build();
+    }
+
+    private static Method virtualThreadFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an executor of virtual threads, looked up reflectively so the
+     * code still runs on Java 8.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = virtualThreadFactory();
+        if (factory == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package oedips.challenge.ws;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of serialized responses.
+ *
+ * Each entry is stamped with the version of the model it was serialized from,
+ * and is only served while the model has that version. Versions only grow, so
+ * an entry never has to be invalidated : it is replaced by the next
+ * serialization. The entries of a removed model are dropped by key prefix, see
+ * {@link #removeAll(String)}.
+ *
+ * The cache is bounded both by its number of entries and by the bytes of their
+ * bodies. A body larger than a quarter of the byte budget is not cached.
+ */
+public class ResponseCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries
+     *            number of entries above which entries are evicted
+     * @param maxBytes
+     *            bytes of bodies above which entries are evicted
+     */
+    public ResponseCache(final int maxEntries, final long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the serialized response, null if absent or stale.
+     *
+     * @param key
+     * @param version
+     * @return
+     */
+    public byte[] get(String key, long version) {
+        Entry entry = this.entries.get(key);
+        if (entry == null || entry.version != version) {
+            return null;
+        }
+        return entry.body;
+    }
+
+    /**
+     * Keeps a serialized response, unless a newer version is already cached.
+     *
+     * @param key
+     * @param version
+     * @param body
+     */
+    public void put(String key, long version, byte[] body) {
+        if (body.length > this.maxBytes / 4) {
+            return;
+        }
+        if (this.entries.size() >= this.maxEntries || this.bytes.get() + body.length > this.maxBytes) {
+            evict(body.length);
+        }
+        Entry entry = new Entry(version, body);
+        this.entries.compute(key, (k, previous) -> {
+            if (previous != null && previous.version > version) {
+                return previous;
+            }
+            this.bytes.addAndGet(body.length - (previous == null ? 0 : previous.body.length));
+            return entry;
+        });
+    }
+
+    /**
+     * Removes the entries whose key starts with the given prefix.
+     *
+     * @param prefix
+     */
+    public void removeAll(String prefix) {
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes of the cached bodies.
+     *
+     * @return
+     */
+    public long countBytes() {
+        return this.bytes.get();
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Removes a quarter of the entries, in no particular order, and more
+     * entries until the incoming body fits in three quarters of the byte
+     * budget.
+     */
+    private void evict(int incoming) {
+        int toRemove = Math.max(1, this.maxEntries / 4);
+        long targetBytes = this.maxBytes - this.maxBytes / 4 - incoming;
+        Iterator<Map.Entry<String, Entry>> iterator = this.entries.entrySet().iterator();
+        while ((toRemove-- > 0 || this.bytes.get() > targetBytes) && iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (this.entries.remove(key, entry)) {
+            this.bytes.addAndGet(-entry.body.length);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long version;
+        private final byte[] body;
+
+        private Entry(final long version, final byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+}
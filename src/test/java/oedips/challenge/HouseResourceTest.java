@@ -8,11 +8,22 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.core.Application;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.InboundSseEvent;
+import javax.ws.rs.sse.SseEventSource;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -29,13 +40,15 @@ import oedips.challenge.model.AuctionHouse;
 import oedips.challenge.model.Bid;
 import oedips.challenge.model.Auction;
 import oedips.challenge.ws.HouseResource;
+import oedips.challenge.ws.MetricsFilter;
+import oedips.challenge.ws.MetricsResource;
 
 public class HouseResourceTest extends JerseyTest {
 
     @Override
     protected Application configure() {
         forceSet(TestProperties.CONTAINER_PORT, "0");
-        return new ResourceConfig(HouseResource.class);
+        return new ResourceConfig(HouseResource.class, MetricsResource.class, MetricsFilter.class);
     }
 
     @After
@@ -44,6 +57,16 @@ public class HouseResourceTest extends JerseyTest {
         deleteAuctionHouse("h2");
         deleteAuctionHouse("h3");
         deleteAuctionHouse("h4");
+        deleteAuctionHouse("h5");
+        deleteAuctionHouse("h6");
+        deleteAuctionHouse("h7");
+        deleteAuctionHouse("h8");
+        deleteAuctionHouse("h9");
+        deleteAuctionHouse("h10");
+        deleteAuctionHouse("h11");
+        deleteAuctionHouse("h13");
+        deleteAuctionHouse("h14");
+        deleteAuctionHouse("h16");
     }
 
     public Response createAuctionHouse(String houseName) {
@@ -66,6 +89,18 @@ public class HouseResourceTest extends JerseyTest {
         return target(target).queryParam("bid", biddingValue).request().post(null);
     }
 
+    private Response createMaxBid(String houseName, String auctionName, String username, long maxValue) {
+        String target = String.format("house/%s/auction/%s/proxy/%s", houseName, auctionName, username);
+        System.out.println("POST " + target);
+        return target(target).queryParam("max", maxValue).request().post(null);
+    }
+
+    private Response createBids(String houseName, String bids) {
+        String target = String.format("house/%s/bid", houseName);
+        System.out.println("POST " + target);
+        return target(target).request().post(Entity.json(bids));
+    }
+
     private Builder getAuctionHouses() {
         String target = String.format("house");
         System.out.println("GET " + target);
@@ -84,12 +119,24 @@ public class HouseResourceTest extends JerseyTest {
         return target(target).queryParam("username", username).request();
     }
 
+    private Builder getActiveBids(String houseName, String username) {
+        String target = String.format("house/%s/user/%s/bid", houseName, username);
+        System.out.println("GET " + target);
+        return target(target).request();
+    }
+
     private Builder getWinner(String houseName, String auctionName) {
         String target = String.format("house/%s/auction/%s/winner", houseName, auctionName);
         System.out.println("GET " + target);
         return target(target).request();
     }
 
+    private Builder getSummary(String houseName, String auctionName) {
+        String target = String.format("house/%s/auction/%s/summary", houseName, auctionName);
+        System.out.println("GET " + target);
+        return target(target).request();
+    }
+
     private Response deleteAuctionHouse(String houseName) {
         String target = String.format("house/%s", houseName);
         System.out.println("DELETE " + target);
@@ -223,6 +270,362 @@ public class HouseResourceTest extends JerseyTest {
 
         String buyer = getWinner(houseName, auctionName).get(String.class);
         assertEquals("u2", buyer);
+        Assert.assertEquals(404, getWinner(houseName, "a9").get().getStatus());
+
+    }
+
+    @Test
+    public void testGetActiveBids() throws InterruptedException, JsonMappingException, JsonProcessingException {
+
+        String houseName = "h5";
+        String description = "d5";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, "a5", description, endTime, 1);
+        createAuction(houseName, "a6", description, endTime, 1);
+        createAuction(houseName, "a7", description, endTime, 1);
+
+        createBid(houseName, "a5", "u1", 10);
+        createBid(houseName, "a5", "u2", 20);
+        createBid(houseName, "a5", "u1", 30);
+        createBid(houseName, "a6", "u1", 10);
+        createBid(houseName, "a7", "u2", 10);
+        deleteAuction(houseName, "a6");
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        Map<String, List<Bid>> bids = mapper.readValue(getActiveBids(houseName, "u1").get(String.class), Map.class);
+        assertEquals(1, bids.size());
+        assertEquals(2, bids.get("a5").size());
+
+        Map<String, List<Bid>> noBids = mapper.readValue(getActiveBids(houseName, "u3").get(String.class), Map.class);
+        assertEquals(0, noBids.size());
+    }
+
+    @Test
+    public void testConditionalGet() {
+
+        String houseName = "h6";
+        String auctionName = "a6";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, auctionName, "d6", endTime, 1);
+        createBid(houseName, auctionName, "u1", 10);
+
+        Response bids = getBids(houseName, auctionName, null).get();
+        Assert.assertEquals(200, bids.getStatus());
+        String etag = bids.getHeaderString("ETag");
+        Assert.assertNotNull(etag);
+
+        Response notModified = getBids(houseName, auctionName, null).header("If-None-Match", etag).get();
+        Assert.assertEquals(304, notModified.getStatus());
+
+        createBid(houseName, auctionName, "u2", 20);
+        Response modified = getBids(houseName, auctionName, null).header("If-None-Match", etag).get();
+        Assert.assertEquals(200, modified.getStatus());
+        Assert.assertNotEquals(etag, modified.getHeaderString("ETag"));
+
+        String auctionsEtag = getAuctions(houseName).get().getHeaderString("ETag");
+        Assert.assertEquals(304, getAuctions(houseName).header("If-None-Match", auctionsEtag).get().getStatus());
+        deleteAuction(houseName, auctionName);
+        Assert.assertEquals(200, getAuctions(houseName).header("If-None-Match", auctionsEtag).get().getStatus());
+    }
+
+    @Test
+    public void testPostBids() throws JsonMappingException, JsonProcessingException {
+
+        String houseName = "h7";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, "a7", "d7", endTime, 1);
+        createAuction(houseName, "a8", "d8", endTime, 1);
+
+        String batch = "[{\"auction\":\"a7\",\"username\":\"u1\",\"bid\":10},"
+                + "{\"auction\":\"a8\",\"username\":\"u1\",\"bid\":10},"
+                + "{\"auction\":\"a7\",\"username\":\"u2\",\"bid\":5},"
+                + "{\"auction\":\"a7\",\"username\":\"u2\",\"bid\":20},"
+                + "{\"auction\":\"a9\",\"username\":\"u2\",\"bid\":20}]";
+        Response response = createBids(houseName, batch);
+        Assert.assertEquals(200, response.getStatus());
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<Map<String, Object>> results = mapper.readValue(response.readEntity(String.class), List.class);
+        assertEquals(5, results.size());
+        assertEquals("ACCEPTED", results.get(0).get("outcome"));
+        assertEquals("ACCEPTED", results.get(1).get("outcome"));
+        assertEquals("OUTBID", results.get(2).get("outcome"));
+        assertEquals("ACCEPTED", results.get(3).get("outcome"));
+        assertEquals("AUCTION_NOT_FOUND", results.get(4).get("outcome"));
+
+        List<Bid> bids = mapper.readValue(getBids(houseName, "a7", null).get(String.class), List.class);
+        assertEquals(2, bids.size());
+
+        Assert.assertEquals(400, createBids(houseName, "not json").getStatus());
+        Assert.assertEquals(404, createBids("h8", "[]").getStatus());
+
+        Assert.assertEquals(400, createBids(houseName, "[{\"auction\":\"a7\",\"username\":\"u3\",\"bid\":30},"
+                + "{\"auction\":\"a7\",\"bid\":40}]").getStatus());
+        Assert.assertEquals(400,
+                createBids(houseName, "[{\"username\":\"u3\",\"bid\":50}]").getStatus());
+        Assert.assertEquals(400, createBids(houseName, "[null]").getStatus());
+        bids = mapper.readValue(getBids(houseName, "a7", null).get(String.class), List.class);
+        assertEquals(2, bids.size());
+    }
+
+    @Test
+    public void testMaxBids() throws JsonMappingException, JsonProcessingException {
+
+        String houseName = "h11";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, "a11", "d11", endTime, 10);
+
+        Response response = createMaxBid(houseName, "a11", "u1", 100);
+        Assert.assertEquals(200, response.getStatus());
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> best = mapper.readValue(response.readEntity(String.class), Map.class);
+        assertEquals("u1", best.get("username"));
+        assertEquals(11, best.get("value"));
+
+        Assert.assertEquals(200, createBid(houseName, "a11", "u2", 50).getStatus());
+        List<Map<String, Object>> bids = mapper.readValue(getBids(houseName, "a11", null).get(String.class),
+                List.class);
+        assertEquals(3, bids.size());
+        assertEquals("u1", bids.get(2).get("username"));
+        assertEquals(51, bids.get(2).get("value"));
+
+        Assert.assertEquals(422, createMaxBid(houseName, "a11", "u2", 51).getStatus());
+        Assert.assertEquals(404, createMaxBid(houseName, "a12", "u2", 200).getStatus());
+        Assert.assertEquals(404, createMaxBid("h12", "a11", "u2", 200).getStatus());
+    }
+
+    @Test
+    public void testEvents() throws InterruptedException {
+
+        String houseName = "h8";
+        String auctionName = "a8";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, auctionName, "d8", endTime, 1);
+        createBid(houseName, auctionName, "u1", 10);
+
+        BlockingQueue<InboundSseEvent> auctionEvents = new LinkedBlockingQueue<>();
+        BlockingQueue<InboundSseEvent> houseEvents = new LinkedBlockingQueue<>();
+        String target = String.format("house/%s/auction/%s/events", houseName, auctionName);
+        try (SseEventSource auctionSource = SseEventSource.target(target(target)).build();
+                SseEventSource houseSource = SseEventSource.target(target("house/" + houseName + "/events")).build()) {
+            auctionSource.register(auctionEvents::add);
+            auctionSource.open();
+            houseSource.register(houseEvents::add);
+            houseSource.open();
+
+            InboundSseEvent status = auctionEvents.poll(10, TimeUnit.SECONDS);
+            Assert.assertEquals("status", status.getName());
+            Assert.assertTrue(status.readData().contains("\"value\":10"));
+
+            // the house stream has no first event : wait for its subscription
+            Thread.sleep(500);
+            createBid(houseName, auctionName, "u2", 20);
+            InboundSseEvent bid = auctionEvents.poll(10, TimeUnit.SECONDS);
+            Assert.assertEquals("bid", bid.getName());
+            Assert.assertTrue(bid.readData().contains("\"value\":20"));
+            Assert.assertEquals("bid", houseEvents.poll(10, TimeUnit.SECONDS).getName());
+
+            deleteAuction(houseName, auctionName);
+            Assert.assertEquals("deleted", auctionEvents.poll(10, TimeUnit.SECONDS).getName());
+            Assert.assertEquals("deleted", houseEvents.poll(10, TimeUnit.SECONDS).getName());
+        }
+
+        Assert.assertEquals(404, target("house/h9/events").request().get().getStatus());
+    }
+
+    @Test
+    public void testMetrics() {
+
+        String houseName = "h9";
+        String auctionName = "a9";
 
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        createAuction(houseName, auctionName, "d9", endTime, 1);
+        createBid(houseName, auctionName, "u1", 10);
+        createBid(houseName, auctionName, "u2", 5);
+        getBids(houseName, auctionName, null).get();
+
+        Response response = target("metrics").request().get();
+        Assert.assertEquals(200, response.getStatus());
+        String metrics = response.readEntity(String.class);
+        Assert.assertTrue(metrics.contains("# TYPE oedips_bids_total counter"));
+        Assert.assertTrue(metrics.contains("oedips_bids_total{outcome=\"outbid\"}"));
+        Assert.assertTrue(metrics.contains("oedips_http_request_seconds_count{endpoint=\"postBid\"}"));
+        Assert.assertTrue(metrics.contains("oedips_auctions{status=\"RUNNING\"}"));
+        Assert.assertTrue(metrics.contains("oedips_bid_list_size_bucket{le=\"+Inf\"}"));
+    }
+
+    @Test
+    public void testPages() throws JsonMappingException, JsonProcessingException {
+
+        String houseName = "h10";
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+
+        createAuctionHouse(houseName);
+        for (int i = 0; i < 3; i++) {
+            createAuction(houseName, "a" + i, "d" + i, endTime, 1);
+        }
+        for (int i = 0; i < 5; i++) {
+            createBid(houseName, "a0", "u" + (i % 2), 10 + i);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+
+        Response first = target("house/" + houseName + "/auction").queryParam("limit", 2).request().get();
+        List<Map<String, Object>> auctions = mapper.readValue(first.readEntity(String.class), List.class);
+        assertEquals(2, auctions.size());
+        assertEquals("a1", auctions.get(1).get("name"));
+        Assert.assertNotNull(first.getLink("next"));
+        Response second = client().target(first.getLink("next")).request().get();
+        auctions = mapper.readValue(second.readEntity(String.class), List.class);
+        assertEquals(1, auctions.size());
+        assertEquals("a2", auctions.get(0).get("name"));
+        Assert.assertNull(second.getLink("next"));
+
+        String bidsTarget = String.format("house/%s/auction/a0/bid", houseName);
+        List<Map<String, Object>> bids = mapper.readValue(
+                target(bidsTarget).queryParam("cursor", 3).queryParam("limit", 10).request().get(String.class),
+                List.class);
+        assertEquals(2, bids.size());
+        assertEquals(13, bids.get(0).get("value"));
+
+        List<Map<String, Object>> top = mapper.readValue(
+                target(bidsTarget).queryParam("top", 2).request().get(String.class), List.class);
+        assertEquals(2, top.size());
+        assertEquals(14, top.get(0).get("value"));
+
+        Assert.assertEquals(400, target(bidsTarget).queryParam("limit", 0).request().get().getStatus());
+    }
+
+    @Test
+    public void testExportImport() throws JsonMappingException, JsonProcessingException {
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+        createAuctionHouse("h13");
+        createAuction("h13", "a1", "d1", endTime, 10);
+        createAuction("h13", "a2", "d2", endTime, 0);
+        createBid("h13", "a1", "u1", 20);
+        createBid("h13", "a1", "u2", 30);
+        target("house/h13/auction/a2").request().delete();
+
+        Response export = target("house/h13/export").request("application/x-ndjson").get();
+        Assert.assertEquals(200, export.getStatus());
+        String records = export.readEntity(String.class);
+        Assert.assertEquals(5, records.split("\n").length);
+
+        Response imported = target("house/h14/import").request()
+                .post(Entity.entity(records, "application/x-ndjson"));
+        Assert.assertEquals(200, imported.getStatus());
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> counts = mapper.readValue(imported.readEntity(String.class), Map.class);
+        assertEquals(2, counts.get("auctions"));
+        assertEquals(2, counts.get("bids"));
+        assertEquals(0, counts.get("skipped"));
+
+        List<Map<String, Object>> bids = mapper.readValue(getBids("h14", "a1", null).get(String.class),
+                List.class);
+        assertEquals(2, bids.size());
+        assertEquals("u2", bids.get(1).get("username"));
+        List<Map<String, Object>> deleted = mapper.readValue(
+                target("house/h14/auction").queryParam("status", "DELETED").request().get(String.class), List.class);
+        assertEquals(1, deleted.size());
+        assertEquals("a2", deleted.get(0).get("name"));
+
+        imported = target("house/h14/import").request().post(Entity.entity(records, "application/x-ndjson"));
+        counts = mapper.readValue(imported.readEntity(String.class), Map.class);
+        assertEquals(0, counts.get("auctions"));
+        assertEquals(4, counts.get("skipped"));
+
+        Assert.assertEquals(400, target("house/h14/import").request()
+                .post(Entity.entity("{\"type\":\"bid\",\"auction\":\"a9\"}", "application/x-ndjson"))
+                .getStatus());
+        Assert.assertEquals(404, target("house/h15/export").request().get().getStatus());
+    }
+
+    @Test
+    public void testSummary() throws JsonMappingException, JsonProcessingException {
+        String houseName = "h16";
+        String auctionName = "a1";
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+        createAuctionHouse(houseName);
+        createAuction(houseName, auctionName, "d1", endTime, 5);
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, Object> summary = mapper.readValue(getSummary(houseName, auctionName).get(String.class),
+                Map.class);
+        assertEquals("RUNNING", summary.get("status"));
+        assertEquals(5, summary.get("price"));
+        assertEquals(null, summary.get("leader"));
+        assertEquals(0, summary.get("bids"));
+        assertEquals(0L, ((Number) summary.get("lastBidTime")).longValue());
+
+        long before = System.currentTimeMillis();
+        createBid(houseName, auctionName, "u1", 10);
+        createBid(houseName, auctionName, "u2", 20);
+        createBid(houseName, auctionName, "u1", 30);
+        createBid(houseName, auctionName, "u2", 30);
+        Response response = getSummary(houseName, auctionName).get();
+        Assert.assertEquals(200, response.getStatus());
+        String etag = response.getHeaderString("ETag");
+        summary = mapper.readValue(response.readEntity(String.class), Map.class);
+        assertEquals(auctionName, summary.get("name"));
+        assertEquals(30, summary.get("price"));
+        assertEquals("u1", summary.get("leader"));
+        assertEquals(3, summary.get("bids"));
+        assertEquals(2, summary.get("bidders"));
+        assertEquals(endTime, ((Number) summary.get("endTime")).longValue());
+        Assert.assertTrue(((Number) summary.get("lastBidTime")).longValue() >= before);
+
+        Assert.assertEquals(304, getSummary(houseName, auctionName).header("If-None-Match", etag).get().getStatus());
+        createBid(houseName, auctionName, "u3", 40);
+        Assert.assertEquals(200, getSummary(houseName, auctionName).header("If-None-Match", etag).get().getStatus());
+
+        Assert.assertEquals(404, getSummary(houseName, "a9").get().getStatus());
+        Assert.assertEquals(404, getSummary("h15", auctionName).get().getStatus());
+    }
+
+    @Test
+    public void testConcurrentHouseCreation() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 8 * 20; i++) {
+                final String houseName = "c" + i % 20;
+                statuses.add(threads.submit(() -> createAuctionHouse(houseName).getStatus()));
+            }
+            int created = 0;
+            for (Future<Integer> status : statuses) {
+                if (status.get() == 200) {
+                    created++;
+                } else {
+                    assertEquals(409, (int) status.get());
+                }
+            }
+            assertEquals(20, created);
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals(200, deleteAuctionHouse("c" + i).getStatus());
+                Assert.assertEquals(404, deleteAuctionHouse("c" + i).getStatus());
+            }
+        } finally {
+            threads.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,250 @@
+package oedips.challenge.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.Bid;
+import oedips.challenge.ws.ClusterResource;
+import oedips.challenge.ws.ClusterRoutingFilter;
+import oedips.challenge.ws.HouseResource;
+
+/**
+ * Runs several nodes on localhost, each with its own houses.
+ */
+public class ClusterTest {
+
+    private static final int HOUSES = 20;
+
+    private static final int WORKERS = 32;
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private final Client client = ClientBuilder.newClient();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @After
+    public void tearDown() {
+        this.client.close();
+        for (HttpServer server : this.servers) {
+            server.shutdownNow();
+        }
+        for (Node node : this.nodes) {
+            node.getHouses().values().forEach(AuctionHouse::close);
+        }
+    }
+
+    private Node start(boolean redirect, String... members) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String self = "http://localhost:" + port + "/api/";
+        List<String> all = new ArrayList<>(Arrays.asList(members));
+        Node node = new Node(new Cluster(self, all, redirect));
+        ResourceConfig config = new ResourceConfig(HouseResource.class, ClusterResource.class,
+                ClusterRoutingFilter.class).property(Node.PROPERTY, node);
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(self), config, false);
+        for (NetworkListener listener : server.getListeners()) {
+            // requests forwarded between nodes hold a worker on each node, as many as a servlet container has
+            listener.getTransport().setWorkerThreadPoolConfig(
+                    ThreadPoolConfig.defaultConfig().setCorePoolSize(WORKERS).setMaxPoolSize(WORKERS));
+        }
+        server.start();
+        this.servers.add(server);
+        this.nodes.add(node);
+        return node;
+    }
+
+    private String self(Node node) {
+        return node.getCluster().getSelf();
+    }
+
+    private Response setNodes(Node node, Node... members) {
+        List<String> uris = new ArrayList<>();
+        for (Node member : members) {
+            uris.add(self(member));
+        }
+        return this.client.target(self(node)).path("cluster").request().put(Entity.json(uris));
+    }
+
+    private void assertPlaced(Node... members) throws IOException {
+        for (int i = 0; i < HOUSES; i++) {
+            String houseName = "ch" + i;
+            int copies = 0;
+            for (Node node : members) {
+                if (node.getHouses().containsKey(houseName)) {
+                    assertTrue(node.getCluster().isLocal(houseName));
+                    copies++;
+                }
+            }
+            assertEquals(1, copies);
+            for (Node node : members) {
+                String bids = this.client.target(self(node)).path("house/" + houseName + "/auction/a1/bid")
+                        .request().get(String.class);
+                List<?> list = this.mapper.readValue(bids, List.class);
+                assertEquals(2, list.size());
+            }
+        }
+    }
+
+    @Test
+    public void testRoutingAndRebalancing() throws IOException {
+        Node first = start(false);
+        Node second = start(true, self(first));
+        assertEquals(200, setNodes(first, first, second).getStatus());
+        assertEquals(2, second.getCluster().getNodes().size());
+
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+        for (int i = 0; i < HOUSES; i++) {
+            String house = "house/ch" + i;
+            assertEquals(200, this.client.target(self(first)).path(house).request().post(null).getStatus());
+            assertEquals(200, this.client.target(self(first)).path(house + "/auction/a1")
+                    .queryParam("endTime", endTime).request().post(null).getStatus());
+            assertEquals(200, this.client.target(self(first)).path(house + "/auction/a1/bid/u1")
+                    .queryParam("bid", 2).request().post(null).getStatus());
+            assertEquals(200, this.client.target(self(first)).path(house + "/auction/a1/bid/u2")
+                    .queryParam("bid", 3).request().post(null).getStatus());
+        }
+        assertTrue(first.getHouses().size() > 0 && second.getHouses().size() > 0);
+        assertPlaced(first, second);
+
+        List<?> houses = this.mapper.readValue(
+                this.client.target(self(second)).path("house").request().get(String.class), List.class);
+        assertEquals(HOUSES, houses.size());
+
+        String remote = first.getHouses().keys().nextElement();
+        Response redirect = this.client.target(self(second)).path("house/" + remote + "/auction").request()
+                .property(ClientProperties.FOLLOW_REDIRECTS, false).get();
+        assertEquals(307, redirect.getStatus());
+        assertEquals(self(first) + "house/" + remote + "/auction", redirect.getLocation().toString());
+
+        String owned = second.getHouses().keys().nextElement();
+        Response export = this.client.target(self(first)).path("house/" + owned + "/export").request()
+                .property(ClientProperties.FOLLOW_REDIRECTS, false).get();
+        assertEquals(307, export.getStatus());
+        assertEquals(self(second) + "house/" + owned + "/export", export.getLocation().toString());
+        Response imported = this.client.target(self(first)).path("house/" + owned + "/import").request()
+                .property(ClientProperties.FOLLOW_REDIRECTS, false)
+                .post(Entity.entity("", "application/x-ndjson"));
+        assertEquals(307, imported.getStatus());
+        assertEquals(self(second) + "house/" + owned + "/import", imported.getLocation().toString());
+
+        Node third = start(false, self(first), self(second));
+        assertEquals(200, setNodes(first, first, second, third).getStatus());
+        assertTrue(third.getHouses().size() > 0);
+        assertPlaced(first, second, third);
+
+        Map<?, ?> cluster = this.mapper.readValue(
+                this.client.target(self(second)).path("cluster").request().get(String.class), Map.class);
+        assertEquals(3, ((List<?>) cluster.get("nodes")).size());
+
+        assertEquals(200, setNodes(second, first, second).getStatus());
+        assertEquals(0, third.getHouses().size());
+        assertPlaced(first, second);
+    }
+
+    @Test
+    public void testBidsDuringRebalancing() throws Exception {
+        Node first = start(false);
+        Node second = start(false, self(first));
+        assertEquals(200, setNodes(first, first, second).getStatus());
+        long endTime = ZonedDateTime.now().plusYears(30).toInstant().toEpochMilli();
+        for (int i = 0; i < HOUSES; i++) {
+            String house = "house/ch" + i;
+            assertEquals(200, this.client.target(self(first)).path(house).request().post(null).getStatus());
+            assertEquals(200, this.client.target(self(first)).path(house + "/auction/a1")
+                    .queryParam("endTime", endTime).request().post(null).getStatus());
+        }
+        Node third = start(false, self(first), self(second));
+
+        int bidders = 4;
+        Map<String, List<Long>> accepted = new ConcurrentHashMap<>();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(bidders);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int b = 0; b < bidders; b++) {
+            int bidder = b;
+            futures.add(executor.submit(() -> {
+                long value = 0;
+                for (int round = 0; !stop.get(); round++) {
+                    for (int i = bidder; i < HOUSES; i += bidders) {
+                        String houseName = "ch" + i;
+                        Node node = (round + i) % 2 == 0 ? first : second;
+                        value++;
+                        int status = this.client.target(self(node)).path("house/" + houseName + "/auction/a1/bid/u1")
+                                .queryParam("bid", value).request().post(null).getStatus();
+                        if (status == 200) {
+                            accepted.computeIfAbsent(houseName, h -> new ArrayList<>()).add(value);
+                        } else if (status == 503) {
+                            rejected.incrementAndGet();
+                        } else {
+                            throw new AssertionError(houseName + " answered " + status);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        while (accepted.size() < HOUSES && futures.stream().noneMatch(Future::isDone)) {
+            Thread.sleep(10);
+        }
+        assertEquals(200, setNodes(first, first, second, third).getStatus());
+        Thread.sleep(200);
+        stop.set(true);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertTrue(third.getHouses().size() > 0);
+        for (int i = 0; i < HOUSES; i++) {
+            String houseName = "ch" + i;
+            AuctionHouse house = null;
+            for (Node node : Arrays.asList(first, second, third)) {
+                if (node.getHouses().containsKey(houseName)) {
+                    assertEquals(null, house);
+                    house = node.getHouses().get(houseName);
+                    assertTrue(node.getCluster().isLocal(houseName));
+                }
+            }
+            List<Long> values = new ArrayList<>();
+            for (Bid bid : house.getAuction("a1").listBids()) {
+                values.add(bid.getValue());
+            }
+            assertEquals(houseName, accepted.get(houseName), values);
+        }
+    }
+}
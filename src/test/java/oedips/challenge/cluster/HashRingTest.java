@@ -0,0 +1,50 @@
+package oedips.challenge.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class HashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void testBalance() {
+        HashRing ring = new HashRing(Arrays.asList("n1", "n2", "n3", "n4"));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("house" + i), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / 4 / 2 && count < KEYS / 4 * 2);
+        }
+    }
+
+    @Test
+    public void testJoinMovesOnlyToNewNode() {
+        HashRing before = new HashRing(Arrays.asList("n1", "n2", "n3"));
+        HashRing after = new HashRing(Arrays.asList("n3", "n1", "n2", "n4"));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "house" + i;
+            if (!before.owner(key).equals(after.owner(key))) {
+                assertEquals("n4", after.owner(key));
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 4 / 2 && moved < KEYS / 4 * 2);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertNull(new HashRing(Collections.emptyList()).owner("house"));
+    }
+}
@@ -0,0 +1,45 @@
+package oedips.challenge.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        Histogram histogram = new Histogram(1, 3, 1);
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(8);
+        histogram.record(9);
+        histogram.record(-5);
+
+        StringBuilder out = new StringBuilder();
+        histogram.write(out, "size", "{house=\"h1\"}");
+        String samples = out.toString();
+
+        assertTrue(samples.contains("size_bucket{house=\"h1\",le=\"2.0\"} 4\n"));
+        assertTrue(samples.contains("size_bucket{house=\"h1\",le=\"4.0\"} 5\n"));
+        assertTrue(samples.contains("size_bucket{house=\"h1\",le=\"8.0\"} 7\n"));
+        assertTrue(samples.contains("size_bucket{house=\"h1\",le=\"+Inf\"} 8\n"));
+        assertTrue(samples.contains("size_sum{house=\"h1\"} 30.0\n"));
+        assertEquals(8, histogram.count());
+    }
+
+    @Test
+    public void testScrape() {
+        Counter counter = Metrics.counter("test_total", "Test counter", "kind", "a\"b");
+        counter.add(3);
+        Metrics.gauge("test_gauge", "Test gauge", () -> 42);
+
+        String scrape = Metrics.scrape();
+        assertTrue(scrape.contains("# TYPE test_total counter\n"));
+        assertTrue(scrape.contains("test_total{kind=\"a\\\"b\"} 3\n"));
+        assertTrue(scrape.contains("test_gauge 42\n"));
+    }
+}
@@ -0,0 +1,138 @@
+package oedips.challenge.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oedips.challenge.utils.TimingWheel;
+
+public class AuctionHouseConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int AUCTIONS = 2_000;
+
+    private long now;
+    private AuctionHouse house;
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() {
+        this.now = System.currentTimeMillis();
+        this.house = new AuctionHouse("h1", new LifecycleScheduler(new TimingWheel(10, this.now)), 3_600_000);
+        this.threads = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        this.threads.shutdownNow();
+        this.house.close();
+    }
+
+    @Test
+    public void testConcurrentAddAuction() throws Exception {
+        AtomicReferenceArray<Auction> added = new AtomicReferenceArray<>(AUCTIONS);
+        AtomicInteger duplicates = new AtomicInteger();
+        runTogether(thread -> {
+            for (int i = 0; i < AUCTIONS; i++) {
+                int a = (i + thread * 61) % AUCTIONS;
+                Auction auction = new Auction("a" + a, "t" + thread, this.now + 3_600_000, 1);
+                if (this.house.addAuction(auction) && !added.compareAndSet(a, null, auction)) {
+                    duplicates.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(0, duplicates.get());
+        assertEquals(AUCTIONS, this.house.countAuctions(AuctionLifeCycle.RUNNING));
+        assertEquals(AUCTIONS, this.house.listAuctions(null).size());
+        for (int a = 0; a < AUCTIONS; a++) {
+            assertSame(added.get(a), this.house.getAuction("a" + a));
+        }
+        List<Auction> indexed = this.house.listAuctionsEndingBetween(this.now, this.now + 3_600_001, AUCTIONS * 2);
+        assertEquals(AUCTIONS, indexed.size());
+        for (Auction auction : indexed) {
+            assertSame(auction, this.house.getAuction(auction.getName()));
+        }
+    }
+
+    @Test
+    public void testAddAuctionRacingArchive() throws Exception {
+        for (int a = 0; a < AUCTIONS; a++) {
+            this.house.addAuction(new Auction("a" + a, "d", this.now - 2_000, this.now - 1_000, 1));
+        }
+        AtomicInteger added = new AtomicInteger();
+        runTogether(thread -> {
+            for (int i = 0; i < AUCTIONS; i++) {
+                String name = "a" + (i + thread * 61) % AUCTIONS;
+                if (thread % 2 == 0) {
+                    this.house.archive(name);
+                } else if (this.house.addAuction(new Auction(name, "d", this.now - 2_000, this.now - 1_000, 1))) {
+                    added.incrementAndGet();
+                }
+            }
+        });
+        assertEquals(0, added.get());
+        assertEquals(AUCTIONS, this.house.countArchivedAuctions());
+        assertEquals(0, this.house.listAuctions(null).size());
+        assertEquals(AUCTIONS, this.house.countAuctions(AuctionLifeCycle.TERMINATED));
+        for (int a = 0; a < AUCTIONS; a++) {
+            assertEquals(AuctionLifeCycle.TERMINATED, this.house.getAuction("a" + a).computeStatus());
+        }
+    }
+
+    @Test
+    public void testConcurrentBidsAreNotLost() throws Exception {
+        this.house.addAuction(new Auction("a1", "d", this.now + 3_600_000, 0));
+        AtomicInteger accepted = new AtomicInteger();
+        runTogether(thread -> {
+            for (int value = 1; value <= 1_000; value++) {
+                if (this.house.addBid("a1", "u" + thread, value * THREADS + thread)) {
+                    accepted.incrementAndGet();
+                }
+            }
+        });
+        List<Bid> bids = new ArrayList<>(this.house.getAuction("a1").listBids());
+        assertEquals(accepted.get(), bids.size());
+        for (int i = 1; i < bids.size(); i++) {
+            assertTrue(bids.get(i).getValue() > bids.get(i - 1).getValue());
+        }
+        assertEquals(1_000 * THREADS + THREADS - 1, bids.get(bids.size() - 1).getValue());
+    }
+
+    /**
+     * Runs a task on every thread, started at once.
+     */
+    private void runTogether(ThreadTask task) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            Callable<Void> call = () -> {
+                start.await();
+                task.run(thread);
+                return null;
+            };
+            futures.add(this.threads.submit(call));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread) throws Exception;
+    }
+}
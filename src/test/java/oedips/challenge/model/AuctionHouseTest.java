@@ -0,0 +1,204 @@
+package oedips.challenge.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import oedips.challenge.utils.TimingWheel;
+
+public class AuctionHouseTest {
+
+    private long now;
+    private TimingWheel wheel;
+    private AuctionHouse house;
+
+    @Before
+    public void setUp() {
+        this.now = System.currentTimeMillis();
+        this.wheel = new TimingWheel(10, now);
+        this.house = new AuctionHouse("h1", new LifecycleScheduler(wheel));
+    }
+
+    @Test
+    public void testListAuctionsByStatus() {
+        house.addAuction(new Auction("a1", "d1", now + 60_000, now + 120_000, 1));
+        house.addAuction(new Auction("a2", "d2", now + 30_000, 1));
+        house.addAuction(new Auction("a3", "d3", now + 90_000, 1));
+
+        assertEquals(1, house.listAuctions("NOT_STARTED").size());
+        assertEquals(2, house.listAuctions("RUNNING").size());
+        assertEquals(3, house.listAuctions(null).size());
+        assertEquals(3, house.listAuctions("unknown").size());
+
+        wheel.advanceTo(now + 60_000);
+        assertEquals(0, house.listAuctions("NOT_STARTED").size());
+        assertEquals(2, house.listAuctions("RUNNING").size());
+        assertEquals(1, house.listAuctions("TERMINATED").size());
+        assertEquals("a2", house.listAuctions("TERMINATED").get(0).getName());
+
+        house.getAuction("a3").setAsDeleted();
+        assertEquals(1, house.listAuctions("RUNNING").size());
+        assertEquals("a3", house.listAuctions("DELETED").get(0).getName());
+    }
+
+    @Test
+    public void testListAuctionsEndingBetween() {
+        house.addAuction(new Auction("a1", "d1", now + 30_000, 10));
+        house.addAuction(new Auction("a2", "d2", now + 10_000, 30));
+        house.addAuction(new Auction("a3", "d3", now + 20_000, 20));
+        house.getAuction("a3").setAsDeleted();
+
+        List<Auction> endingSoon = house.listAuctionsEndingBetween(now, now + 60_000);
+        assertEquals(2, endingSoon.size());
+        assertEquals("a2", endingSoon.get(0).getName());
+        assertEquals("a1", endingSoon.get(1).getName());
+        assertEquals(1, house.listAuctionsEndingBetween(now, now + 20_000).size());
+
+        List<Auction> cheap = house.listAuctionsByStartPrice(0, 30);
+        assertEquals(2, cheap.size());
+        assertEquals("a1", cheap.get(0).getName());
+        assertEquals("a3", cheap.get(1).getName());
+    }
+
+    @Test
+    public void testListAuctionsPage() {
+        for (int i = 0; i < 5; i++) {
+            house.addAuction(new Auction("a" + i, "d" + i, now + 30_000, 1));
+        }
+        house.getAuction("a2").setAsDeleted();
+
+        List<Auction> first = house.listAuctions(null, null, 2);
+        assertEquals(2, first.size());
+        assertEquals("a0", first.get(0).getName());
+        assertEquals("a1", first.get(1).getName());
+        List<Auction> second = house.listAuctions(null, "a1", 2);
+        assertEquals("a2", second.get(0).getName());
+        assertEquals("a3", second.get(1).getName());
+        assertEquals(1, house.listAuctions(null, "a3", 2).size());
+
+        List<Auction> running = house.listAuctions("RUNNING", "a1", 10);
+        assertEquals(2, running.size());
+        assertEquals("a3", running.get(0).getName());
+        assertEquals(4, house.countAuctions(AuctionLifeCycle.RUNNING));
+        assertEquals(1, house.countAuctions(AuctionLifeCycle.DELETED));
+    }
+
+    @Test
+    public void testArchive() {
+        AuctionHouse archiving = new AuctionHouse("h2", new LifecycleScheduler(wheel), 1_000, Runnable::run);
+        archiving.addAuction(new Auction("a1", "d1", now - 1_000, now + 30_000, 1));
+        archiving.addAuction(new Auction("a2", "d2", now - 1_000, now + 90_000, 1));
+        for (int i = 1; i <= 1000; i++) {
+            archiving.addBid("a1", "u" + (i % 10), 10 * i);
+        }
+
+        wheel.advanceTo(now + 30_000);
+        assertEquals(AuctionLifeCycle.TERMINATED, archiving.getAuction("a1").computeStatus());
+        assertEquals(0, archiving.countArchivedAuctions());
+        wheel.advanceTo(now + 40_000);
+        assertEquals(1, archiving.countArchivedAuctions());
+        assertEquals(1, archiving.listAuctions(null).size());
+        assertEquals(1, archiving.countAuctions(AuctionLifeCycle.TERMINATED));
+
+        Auction archived = archiving.getAuction("a1");
+        assertEquals(AuctionLifeCycle.TERMINATED, archived.computeStatus());
+        assertEquals("u0", archived.computeBuyer());
+        assertEquals(1000, archived.listBids().size());
+        assertEquals(10_000, archived.computeBestBid().getValue());
+        assertEquals(100, archived.listBids("u3").size());
+        assertEquals(100, archiving.listBids("a1", "u3").size());
+        assertEquals(1000, archiving.listBids("a1", null).size());
+        List<Bid> page = archiving.listBids("a1", null, 250, 100);
+        assertEquals(100, page.size());
+        assertEquals(2510, page.get(0).getValue());
+        assertEquals("u1", page.get(0).getUsername());
+        assertEquals(0, archiving.listBids("a1", null, 1000, 100).size());
+        List<Bid> ofUser = archiving.listBids("a1", "u3", 10, 5);
+        assertEquals(5, ofUser.size());
+        assertEquals(1030, ofUser.get(0).getValue());
+        List<Bid> top = archiving.listTopBids("a1", null, 3);
+        assertEquals(3, top.size());
+        assertEquals(10_000, top.get(0).getValue());
+        assertEquals(9_980, top.get(2).getValue());
+        List<Bid> topOfUser = archiving.listTopBids("a1", "u3", 2);
+        assertEquals(9_930, topOfUser.get(0).getValue());
+        assertEquals(9_830, topOfUser.get(1).getValue());
+        assertEquals(0, archiving.listTopBids("a1", "unknown", 2).size());
+        assertEquals(null, archiving.listBids("a3", null, 0, 10));
+        assertEquals(false, archiving.addBid("a1", "u1", 20_000));
+        assertEquals(false, archiving.addAuction(new Auction("a1", "d1", now + 60_000, 1)));
+        assertEquals(0, archiving.listActiveBids("u3").size());
+
+        AuctionSummary summary = archiving.getSummary("a1");
+        assertEquals(AuctionLifeCycle.TERMINATED, summary.getStatus());
+        assertEquals("u0", summary.getLeader());
+        assertEquals(10_000, summary.getPrice());
+        assertEquals(1000, summary.getBids());
+        assertEquals(10, summary.getBidders());
+        assertEquals(true, summary.getLastBidTime() > 0);
+        assertEquals(summary.getLastBidTime(), archived.computeSummary().getLastBidTime());
+        long version = archived.getVersion();
+        assertEquals(version, summary.getVersion());
+        assertEquals(version, archiving.getAuction("a1").getVersion());
+        assertEquals(true, archiving.deleteAuction("a1"));
+        assertEquals(AuctionLifeCycle.DELETED, archiving.getAuction("a1").computeStatus());
+        assertEquals(version + 1, archiving.getAuction("a1").getVersion());
+        assertEquals(AuctionLifeCycle.DELETED, archiving.getSummary("a1").getStatus());
+        assertEquals(version + 1, archiving.getSummary("a1").getVersion());
+        assertEquals(true, archiving.deleteAuction("a1"));
+        assertEquals(version + 1, archiving.getAuction("a1").getVersion());
+        assertEquals(0, archiving.countAuctions(AuctionLifeCycle.TERMINATED));
+        assertEquals(1, archiving.countAuctions(AuctionLifeCycle.DELETED));
+        assertEquals(false, archiving.deleteAuction("a3"));
+        assertEquals(null, archiving.getSummary("a3"));
+    }
+
+    @Test
+    public void testArchivedBidsAreCompact() {
+        Auction auction = new Auction("a1", "d1", now - 1_000, now + 60_000, 1);
+        for (int i = 1; i <= 1000; i++) {
+            auction.addBid("u" + (i % 10), 10 * i);
+        }
+        auction.setAsDeleted();
+        long version = auction.getVersion();
+        ArchivedAuction archived = new ArchivedAuction(auction);
+        assertEquals(version, archived.toAuction().getVersion());
+        assertEquals(1000, archived.countBids());
+        assertEquals(true, archived.sizeOfBids() <= 3 * 1000);
+        assertEquals(AuctionLifeCycle.DELETED, archived.toAuction().computeStatus());
+        assertEquals(auction.listBids().size(), archived.toAuction().listBids().size());
+    }
+
+    @Test
+    public void testArchiveOffTheWheel() {
+        List<Runnable> tasks = new ArrayList<>();
+        AuctionHouse archiving = new AuctionHouse("h2", new LifecycleScheduler(wheel), 1_000, tasks::add);
+        archiving.addAuction(new Auction("a1", "d1", now - 1_000, now + 30_000, 1));
+        archiving.addBid("a1", "u1", 10);
+
+        wheel.advanceTo(now + 40_000);
+        assertEquals(0, archiving.countArchivedAuctions());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(1, archiving.countArchivedAuctions());
+        assertEquals("u1", archiving.getSummary("a1").getLeader());
+    }
+
+    @Test
+    public void testArchiveAfterUnfence() {
+        AuctionHouse archiving = new AuctionHouse("h2", new LifecycleScheduler(wheel), 1_000, Runnable::run);
+        archiving.addAuction(new Auction("a1", "d1", now - 1_000, now + 30_000, 1));
+        archiving.addBid("a1", "u1", 10);
+
+        archiving.fence();
+        wheel.advanceTo(now + 40_000);
+        assertEquals(0, archiving.countArchivedAuctions());
+        archiving.unfence();
+        assertEquals(1, archiving.countArchivedAuctions());
+        assertEquals("u1", archiving.getSummary("a1").getLeader());
+    }
+}
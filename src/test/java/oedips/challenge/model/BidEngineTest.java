@@ -0,0 +1,167 @@
+package oedips.challenge.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BidEngineTest {
+
+    @Test
+    public void testOffer() {
+        BidEngine engine = new BidEngine(10);
+        assertNull(engine.bestBid());
+        assertFalse(engine.offer("u1", 10));
+        assertTrue(engine.offer("u1", 11));
+        assertFalse(engine.offer("u2", 11));
+        assertTrue(engine.offer("u2", 20));
+        assertEquals(20, engine.currentPrice());
+        assertEquals("u2", engine.bestBid().getUsername());
+        assertEquals(2, engine.log().size());
+    }
+
+    @Test
+    public void testLogGrowsAcrossChunks() {
+        BidEngine engine = new BidEngine(0);
+        for (int i = 1; i <= 10000; i++) {
+            assertTrue(engine.offer("u", i));
+        }
+        assertEquals(10000, engine.log().size());
+        long expected = 1;
+        for (Bid bid : engine.log()) {
+            assertEquals(expected++, bid.getValue());
+        }
+    }
+
+    @Test
+    public void testConcurrentOffersKeepAcceptanceOrder() throws InterruptedException {
+        final BidEngine engine = new BidEngine(0);
+        final int threads = 8;
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> bidders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String username = "u" + t;
+            Thread bidder = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 20000; i++) {
+                    if (engine.offer(username, engine.currentPrice() + ThreadLocalRandom.current().nextInt(1, 3))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            bidder.start();
+            bidders.add(bidder);
+        }
+        start.countDown();
+        for (Thread bidder : bidders) {
+            bidder.join();
+        }
+
+        assertEquals(accepted.get(), engine.log().size());
+        long previous = 0;
+        Bid last = null;
+        for (Bid bid : engine.log()) {
+            assertTrue(bid.getValue() > previous);
+            previous = bid.getValue();
+            last = bid;
+        }
+        assertTrue(last == engine.bestBid());
+    }
+
+    @Test
+    public void testPageAndTop() {
+        BidEngine engine = new BidEngine(0);
+        for (int i = 1; i <= 100; i++) {
+            assertTrue(engine.offer(i % 2 == 0 ? "even" : "odd", i));
+        }
+
+        List<Bid> page = engine.page(null, 40, 5);
+        assertEquals(5, page.size());
+        assertEquals(41, page.get(0).getValue());
+        assertEquals(0, engine.page(null, 100, 5).size());
+        assertEquals(2, engine.page("even", 48, 5).size());
+        assertEquals(12, engine.page("even", 5, 1).get(0).getValue());
+
+        List<Bid> top = engine.top(null, 3);
+        assertEquals(3, top.size());
+        assertEquals(100, top.get(0).getValue());
+        assertEquals(98, top.get(2).getValue());
+        assertEquals(99, engine.top("odd", 1).get(0).getValue());
+        assertEquals(50, engine.top("odd", 1000).size());
+        assertEquals(0, engine.top("nobody", 3).size());
+    }
+
+    @Test
+    public void testCompact() {
+        BidEngine engine = new BidEngine(0, true);
+        for (int i = 1; i <= 10000; i++) {
+            assertTrue(engine.offer(i % 3 == 0 ? "u3" : "u", i));
+        }
+        assertTrue(engine.log() instanceof CompactBidLog);
+        assertEquals(10000, engine.log().size());
+        long expected = 1;
+        for (Bid bid : engine.log()) {
+            assertEquals(expected, bid.getValue());
+            assertEquals(expected % 3 == 0 ? "u3" : "u", bid.getUsername());
+            expected++;
+        }
+        assertEquals(3333, engine.bidsOf("u3").size());
+        assertEquals(9999, engine.top("u3", 1).get(0).getValue());
+        assertEquals(6, engine.page("u3", 1, 1).get(0).getValue());
+        assertEquals("u", engine.page(null, 9997, 5).get(0).getUsername());
+        assertEquals(2, engine.page(null, 9998, 5).size());
+        assertEquals(10000, engine.bestBid().getValue());
+    }
+
+    @Test
+    public void testSummary() {
+        BidEngine engine = new BidEngine(5);
+        AuctionSummary summary = engine.summarize("a1", AuctionLifeCycle.RUNNING, 1000, 0);
+        assertEquals(5, summary.getPrice());
+        assertNull(summary.getLeader());
+        assertEquals(0, summary.getBids());
+        assertEquals(0, summary.getLastBidTime());
+
+        assertTrue(engine.accept("u1", 10, 100) != null);
+        assertTrue(engine.accept("u2", 20, 200) != null);
+        assertTrue(engine.accept("u1", 30, 300) != null);
+        assertNull(engine.accept("u3", 30, 400));
+        assertTrue(engine.restore("u3", 40) != null);
+        engine.close();
+        summary = engine.summarize("a1", AuctionLifeCycle.TERMINATED, 1000, 6);
+        assertEquals("a1", summary.getName());
+        assertEquals(AuctionLifeCycle.TERMINATED, summary.getStatus());
+        assertEquals(40, summary.getPrice());
+        assertEquals("u3", summary.getLeader());
+        assertEquals(4, summary.getBids());
+        assertEquals(3, summary.getBidders());
+        assertEquals(300, summary.getLastBidTime());
+        assertEquals(1000, summary.getEndTime());
+    }
+
+    @Test
+    public void testUserIds() {
+        BidEngine engine = new BidEngine(0);
+        assertTrue(engine.offer("dictionary-user", 1));
+        int id = UserDictionary.find("dictionary-user");
+        assertEquals(id, engine.bestBid().getUserId());
+        assertEquals("dictionary-user", UserDictionary.username(id));
+        assertEquals(id, UserDictionary.id("dictionary-user"));
+        assertEquals(UserDictionary.NONE, UserDictionary.find("dictionary-nobody"));
+        assertEquals(0, engine.bidsOf("dictionary-nobody").size());
+        assertEquals(UserDictionary.NONE, UserDictionary.find("dictionary-nobody"));
+    }
+}
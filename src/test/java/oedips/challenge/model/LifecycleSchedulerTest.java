@@ -0,0 +1,169 @@
+package oedips.challenge.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import oedips.challenge.utils.Clock;
+import oedips.challenge.utils.TimingWheel;
+import oedips.challenge.utils.VirtualClock;
+
+public class LifecycleSchedulerTest {
+
+    private static final long ORIGIN = 1_000_000L;
+
+    @Test
+    public void testWheelFiresEachDeadlineOnce() {
+        TimingWheel wheel = new TimingWheel(100, ORIGIN);
+        Random random = new Random(42);
+        final long[] firedAt = new long[2000];
+        final long[] now = new long[1];
+        long[] deadlines = new long[firedAt.length];
+        for (int i = 0; i < deadlines.length; i++) {
+            final int index = i;
+            long week = 7L * 24 * 3600 * 1000;
+            deadlines[i] = ORIGIN + (i % 2 == 0 ? random.nextInt(10_000) : (long) (random.nextDouble() * 3 * week));
+            wheel.schedule(deadlines[i], () -> {
+                assertEquals(0, firedAt[index]);
+                firedAt[index] = now[0];
+            });
+        }
+        for (now[0] = ORIGIN; now[0] <= ORIGIN + 4L * 7 * 24 * 3600 * 1000; now[0] += 7919) {
+            wheel.advanceTo(now[0]);
+        }
+        for (int i = 0; i < deadlines.length; i++) {
+            assertTrue(firedAt[i] >= deadlines[i]);
+            assertTrue(firedAt[i] < deadlines[i] + 7919 + 100);
+        }
+    }
+
+    @Test
+    public void testWheelCancel() {
+        TimingWheel wheel = new TimingWheel(10, ORIGIN);
+        final List<String> fired = new ArrayList<>();
+        TimingWheel.Timeout first = wheel.schedule(ORIGIN + 100_000, () -> fired.add("first"));
+        wheel.schedule(ORIGIN + 100_000, () -> fired.add("second"));
+        wheel.advanceTo(ORIGIN + 50_000);
+        assertTrue(first.cancel());
+        wheel.advanceTo(ORIGIN + 200_000);
+        assertEquals(1, fired.size());
+        assertEquals("second", fired.get(0));
+        assertFalse(first.cancel());
+    }
+
+    @Test
+    public void testAuctionLifeCycle() {
+        long now = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(10, now);
+        LifecycleScheduler scheduler = new LifecycleScheduler(wheel);
+
+        Auction auction = new Auction("a1", "d1", now + 60_000, now + 120_000, 1);
+        scheduler.register(auction);
+        assertEquals(AuctionLifeCycle.NOT_STARTED, auction.computeStatus());
+
+        wheel.advanceTo(now + 60_000);
+        assertEquals(AuctionLifeCycle.RUNNING, auction.computeStatus());
+        assertNull(auction.computeBuyer());
+
+        wheel.advanceTo(now + 120_000);
+        assertEquals(AuctionLifeCycle.TERMINATED, auction.computeStatus());
+    }
+
+    @Test
+    public void testDeletedAuctionIsNotSettled() {
+        long now = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(10, now);
+        LifecycleScheduler scheduler = new LifecycleScheduler(wheel);
+
+        Auction auction = new Auction("a1", "d1", now + 60_000, 1);
+        scheduler.register(auction);
+        assertEquals(AuctionLifeCycle.RUNNING, auction.computeStatus());
+        assertTrue(auction.addBid("u1", 10));
+
+        auction.setAsDeleted();
+        assertFalse(auction.addBid("u2", 20));
+        wheel.advanceTo(now + 60_000);
+        assertEquals(AuctionLifeCycle.DELETED, auction.computeStatus());
+        assertNull(auction.computeBuyer());
+    }
+
+    @Test
+    public void testSoftClose() {
+        long now = System.currentTimeMillis();
+        TimingWheel wheel = new TimingWheel(10, now);
+        AuctionHouse house = new AuctionHouse("h1", new LifecycleScheduler(wheel));
+        long endTime = now + 2_000;
+        Auction auction = new Auction("a1", "d1", now - 1_000, endTime, 1, false, new SoftClose(5_000, 10_000));
+        house.addAuction(auction);
+        assertEquals(1, house.listAuctionsEndingBetween(now, endTime + 1, 10).size());
+
+        assertTrue(auction.addBid("u1", 10));
+        long extended = auction.getEndTime();
+        assertTrue(extended >= now + 10_000);
+        assertTrue(house.listAuctionsEndingBetween(now, endTime + 1, 10).isEmpty());
+        assertEquals(1, house.listAuctionsEndingBetween(extended, extended + 1, 10).size());
+
+        wheel.advanceTo(endTime);
+        assertEquals(AuctionLifeCycle.RUNNING, auction.computeStatus());
+        wheel.advanceTo(extended + 10);
+        assertEquals(AuctionLifeCycle.TERMINATED, auction.computeStatus());
+        assertEquals("u1", auction.computeBuyer());
+    }
+
+    @Test
+    public void testNoExtensionBeforeWindow() {
+        long now = System.currentTimeMillis();
+        Auction auction = new Auction("a1", "d1", now - 1_000, now + 60_000, 1, false, new SoftClose(5_000, 10_000));
+        assertTrue(auction.addBid("u1", 10));
+        assertEquals(now + 60_000, auction.getEndTime());
+        auction.restoreEndTime(now + 30_000);
+        assertEquals(now + 60_000, auction.getEndTime());
+        auction.restoreEndTime(now + 90_000);
+        assertEquals(now + 90_000, auction.getEndTime());
+    }
+
+    @Test
+    public void testVirtualClock() {
+        long day = 24L * 3600 * 1000;
+        TimingWheel wheel = new TimingWheel(10, ORIGIN);
+        VirtualClock clock = new VirtualClock(ORIGIN, wheel);
+        Clock previous = Clock.use(clock);
+        try {
+            AuctionHouse house = new AuctionHouse("h1", new LifecycleScheduler(wheel), 3_600_000, Runnable::run);
+            long endTime = ORIGIN + day;
+            Auction auction = new Auction("a1", "d1", ORIGIN + 1_000, endTime, 1, true, new SoftClose(300_000, 300_000));
+            house.addAuction(auction);
+            assertEquals(AuctionLifeCycle.NOT_STARTED, auction.computeStatus());
+            assertFalse(auction.addBid("u1", 10));
+
+            clock.advanceTo(endTime - 60_000);
+            assertEquals(AuctionLifeCycle.RUNNING, auction.computeStatus());
+            assertTrue(auction.addBid("u1", 10));
+            assertEquals(endTime + 240_000, auction.getEndTime());
+
+            clock.advanceTo(endTime);
+            assertEquals(AuctionLifeCycle.RUNNING, auction.computeStatus());
+            assertTrue(auction.addBid("u2", 20));
+            assertEquals(endTime + 300_000, auction.getEndTime());
+
+            clock.advanceTo(endTime + 300_000);
+            assertEquals(AuctionLifeCycle.TERMINATED, auction.computeStatus());
+            assertFalse(auction.addBid("u1", 30));
+            assertEquals("u2", auction.computeBuyer());
+            assertEquals(0, house.countArchivedAuctions());
+
+            clock.advance(3_600_000);
+            assertEquals(1, house.countArchivedAuctions());
+            assertEquals("u2", house.getAuction("a1").computeBuyer());
+        } finally {
+            Clock.use(previous);
+        }
+    }
+}
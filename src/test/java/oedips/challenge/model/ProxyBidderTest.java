@@ -0,0 +1,111 @@
+package oedips.challenge.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ProxyBidderTest {
+
+    private static Auction newAuction() {
+        long now = System.currentTimeMillis();
+        return new Auction("a", "d", now - 1000, now + 3600000, 10);
+    }
+
+    @Test
+    public void testSecondPrice() {
+        Auction auction = newAuction();
+        assertEquals(BidOutcome.ACCEPTED, auction.submitMaxBid("p1", 100));
+        assertEquals(11, auction.computeBestBid().getValue());
+
+        assertEquals(BidOutcome.ACCEPTED, auction.submitMaxBid("p2", 60));
+        assertEquals("p1", auction.computeBestBid().getUsername());
+        assertEquals(61, auction.computeBestBid().getValue());
+        assertEquals(0, auction.computeMaxBid("p2"));
+
+        assertEquals(BidOutcome.ACCEPTED, auction.submitMaxBid("p3", 150));
+        assertEquals("p3", auction.computeBestBid().getUsername());
+        assertEquals(101, auction.computeBestBid().getValue());
+        assertEquals(3, auction.listBids().size());
+    }
+
+    @Test
+    public void testManualBids() {
+        Auction auction = newAuction();
+        auction.submitMaxBid("p1", 100);
+        assertEquals(BidOutcome.ACCEPTED, auction.submitBid("u1", 40));
+        assertEquals("p1", auction.computeBestBid().getUsername());
+        assertEquals(41, auction.computeBestBid().getValue());
+
+        assertEquals(BidOutcome.OUTBID, auction.submitBid("u1", 41));
+        assertEquals(BidOutcome.ACCEPTED, auction.submitBid("u1", 99));
+        assertEquals("p1", auction.computeBestBid().getUsername());
+        assertEquals(100, auction.computeBestBid().getValue());
+        assertEquals(0, auction.computeMaxBid("p1"));
+
+        assertEquals(BidOutcome.ACCEPTED, auction.submitBid("u1", 120));
+        assertEquals("u1", auction.computeBestBid().getUsername());
+    }
+
+    @Test
+    public void testTies() {
+        Auction auction = newAuction();
+        auction.submitMaxBid("p1", 50);
+        auction.submitMaxBid("p2", 50);
+        assertEquals("p1", auction.computeBestBid().getUsername());
+        assertEquals(50, auction.computeBestBid().getValue());
+
+        Auction other = newAuction();
+        other.submitBid("u1", 30);
+        assertEquals(BidOutcome.OUTBID, other.submitMaxBid("p1", 30));
+        assertEquals("u1", other.computeBestBid().getUsername());
+    }
+
+    @Test
+    public void testMaxBidsOnlyRise() {
+        Auction auction = newAuction();
+        auction.submitMaxBid("p1", 100);
+        auction.submitMaxBid("p2", 40);
+        assertEquals(BidOutcome.OUTBID, auction.submitMaxBid("p1", 90));
+        assertEquals(100, auction.computeMaxBid("p1"));
+        assertEquals(BidOutcome.ACCEPTED, auction.submitMaxBid("p1", 200));
+        assertEquals(200, auction.computeMaxBid("p1"));
+        assertEquals(41, auction.computeBestBid().getValue());
+    }
+
+    @Test
+    public void testNotRunning() {
+        long now = System.currentTimeMillis();
+        Auction auction = new Auction("a", "d", now + 3600000, now + 7200000, 10);
+        assertEquals(BidOutcome.NOT_RUNNING, auction.submitMaxBid("p1", 100));
+    }
+
+    @Test
+    public void testConcurrentBidsAgainstProxy() throws InterruptedException {
+        final Auction auction = newAuction();
+        auction.submitMaxBid("p1", 1000000);
+        List<Thread> bidders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final String username = "u" + t;
+            Thread bidder = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    Bid best = auction.computeBestBid();
+                    auction.submitBid(username, best.getValue() + 1 + i % 3);
+                }
+            });
+            bidders.add(bidder);
+            bidder.start();
+        }
+        for (Thread bidder : bidders) {
+            bidder.join();
+        }
+        assertEquals("p1", auction.computeBestBid().getUsername());
+        long previous = 0;
+        for (Bid bid : auction.listBids()) {
+            assertEquals(true, bid.getValue() > previous);
+            previous = bid.getValue();
+        }
+    }
+}
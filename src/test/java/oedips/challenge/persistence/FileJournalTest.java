@@ -0,0 +1,241 @@
+package oedips.challenge.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+import oedips.challenge.model.AuctionLifeCycle;
+import oedips.challenge.model.SoftClose;
+
+public class FileJournalTest {
+
+    private static final FileJournal.Settings SETTINGS = new FileJournal.Settings(1 << 20, 0);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverFromLog() throws IOException {
+        File directory = folder.newFolder();
+        long endTime = System.currentTimeMillis() + 3_600_000;
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, houses, SETTINGS)) {
+            populate(houses, journal, endTime);
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, SETTINGS)) {
+            assertRecovered(recovered);
+        }
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws IOException {
+        File directory = folder.newFolder();
+        long endTime = System.currentTimeMillis() + 3_600_000;
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, houses, SETTINGS)) {
+            populate(houses, journal, endTime);
+            journal.snapshot();
+            AuctionHouse house = houses.get("h1");
+            house.addBid("a1", "u3", 40);
+            journal.awaitDurable(journal.bidAccepted("h1", "a1", "u3", 40));
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, SETTINGS)) {
+            assertRecovered(recovered);
+            Auction a1 = recovered.get("h1").getAuction("a1");
+            assertEquals(4, a1.listBids().size());
+        }
+    }
+
+    @Test
+    public void testRecoverBidsAndExtensionsOfListener() throws IOException {
+        File directory = folder.newFolder();
+        long now = System.currentTimeMillis();
+        long extendedEndTime;
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, houses, SETTINGS)) {
+            AuctionHouse house = new AuctionHouse("h1");
+            BidJournaler journaler = new BidJournaler(journal, "h1");
+            house.addListener(journaler);
+            houses.put("h1", house);
+            journal.houseCreated("h1");
+            Auction auction = new Auction("a1", "d1", now - 1_000, now + 60_000, 1, false,
+                    new SoftClose(120_000, 300_000));
+            house.addAuction(auction);
+            journal.auctionCreated("h1", auction);
+            house.addBid("a1", "u1", 10);
+            extendedEndTime = auction.getEndTime();
+            journaler.awaitDurable();
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, SETTINGS)) {
+            Auction a1 = recovered.get("h1").getAuction("a1");
+            assertEquals(1, a1.listBids().size());
+            assertEquals(extendedEndTime, a1.getEndTime());
+        }
+    }
+
+    @Test
+    public void testRecoverMaxBidsFromSnapshotAndLog() throws IOException {
+        File directory = folder.newFolder();
+        long endTime = System.currentTimeMillis() + 3_600_000;
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, houses, SETTINGS)) {
+            AuctionHouse house = new AuctionHouse("h1");
+            BidJournaler journaler = new BidJournaler(journal, "h1");
+            house.addListener(journaler);
+            houses.put("h1", house);
+            journal.houseCreated("h1");
+            Auction auction = new Auction("a1", "d1", endTime, 1);
+            house.addAuction(auction);
+            journal.auctionCreated("h1", auction);
+            house.setMaxBid("a1", "u1", 100);
+            house.setMaxBid("a1", "u2", 40);
+            journaler.awaitDurable();
+            journal.snapshot();
+            house.setMaxBid("a1", "u3", 60);
+            journaler.awaitDurable();
+            assertEquals(61, auction.computeBestBid().getValue());
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, SETTINGS)) {
+            Auction a1 = recovered.get("h1").getAuction("a1");
+            assertEquals(61, a1.computeBestBid().getValue());
+            assertEquals(100, a1.computeMaxBid("u1"));
+            assertEquals(0, a1.computeMaxBid("u2"));
+            assertEquals(0, a1.computeMaxBid("u3"));
+            a1.addBid("u4", 80);
+            assertEquals("u1", a1.computeBestBid().getUsername());
+            assertEquals(81, a1.computeBestBid().getValue());
+        }
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        File directory = folder.newFolder();
+        long endTime = System.currentTimeMillis() + 3_600_000;
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        long lsn;
+        try (FileJournal journal = FileJournal.open(directory, houses, SETTINGS)) {
+            populate(houses, journal, endTime);
+            lsn = journal.bidAccepted("h1", "a1", "u4", 50);
+        }
+        File segment = new File(new File(directory, "wal"), String.format("wal-%020d.log", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(lsn - 1);
+            file.writeByte(0x7f);
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, SETTINGS)) {
+            assertRecovered(recovered);
+        }
+    }
+
+    @Test
+    public void testTornTailThenRollIsRecovered() throws IOException {
+        File directory = folder.newFolder();
+        long endTime = System.currentTimeMillis() + 3_600_000;
+        FileJournal.Settings settings = new FileJournal.Settings(2048, 0);
+        String tornName = name('t', 300);
+        String rollingName = name('r', 1900);
+
+        ConcurrentHashMap<String, AuctionHouse> houses = new ConcurrentHashMap<>();
+        long lsn;
+        try (FileJournal journal = FileJournal.open(directory, houses, settings)) {
+            populate(houses, journal, endTime);
+            lsn = journal.bidAccepted("h1", "a1", tornName, 35);
+        }
+        File segment = new File(new File(directory, "wal"), String.format("wal-%020d.log", 0));
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(lsn - 1);
+            file.writeByte(0x7f);
+        }
+
+        try (FileJournal journal = FileJournal.open(directory, new ConcurrentHashMap<>(), settings)) {
+            journal.bidAccepted("h1", "a1", rollingName, 40);
+            journal.awaitDurable(journal.bidAccepted("h1", "a1", "u5", 50));
+        }
+
+        ConcurrentHashMap<String, AuctionHouse> recovered = new ConcurrentHashMap<>();
+        try (FileJournal journal = FileJournal.open(directory, recovered, settings)) {
+            assertRecovered(recovered);
+            Auction a1 = recovered.get("h1").getAuction("a1");
+            assertEquals(0, a1.listBids(tornName).size());
+            assertEquals(1, a1.listBids(rollingName).size());
+            assertEquals(50, a1.computeBestBid().getValue());
+        }
+    }
+
+    private static String name(char c, int length) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            name.append(c);
+        }
+        return name.toString();
+    }
+
+    private static void populate(ConcurrentHashMap<String, AuctionHouse> houses, Journal journal, long endTime) {
+        houses.put("h1", new AuctionHouse("h1"));
+        journal.houseCreated("h1");
+        houses.put("h2", new AuctionHouse("h2"));
+        journal.houseCreated("h2");
+        houses.remove("h2").close();
+        journal.houseDeleted("h2");
+
+        AuctionHouse house = houses.get("h1");
+        Auction a1 = new Auction("a1", "d1", endTime, 1);
+        house.addAuction(a1);
+        journal.auctionCreated("h1", a1);
+        Auction a2 = new Auction("a2", null, endTime, 1);
+        house.addAuction(a2);
+        journal.auctionCreated("h1", a2);
+        a2.setAsDeleted();
+        journal.auctionDeleted("h1", "a2");
+
+        house.addBid("a1", "u1", 10);
+        journal.bidAccepted("h1", "a1", "u1", 10);
+        house.addBid("a1", "u2", 20);
+        house.addBid("a1", "u1", 30);
+        journal.bidAccepted("h1", "a1", "u1", 30);
+        journal.bidAccepted("h1", "a1", "u2", 20);
+        journal.awaitDurable(journal.bidAccepted("h1", "a1", "u1", 30));
+    }
+
+    private static void assertRecovered(ConcurrentHashMap<String, AuctionHouse> houses) {
+        assertEquals(1, houses.size());
+        AuctionHouse house = houses.get("h1");
+        assertEquals(2, house.listAuctions(null).size());
+        assertEquals(AuctionLifeCycle.DELETED, house.getAuction("a2").computeStatus());
+        assertNull(house.getAuction("a2").getDescription());
+
+        Auction a1 = house.getAuction("a1");
+        assertEquals(AuctionLifeCycle.RUNNING, a1.computeStatus());
+        assertEquals("d1", a1.getDescription());
+        long[] values = a1.listBids().stream().mapToLong(b -> b.getValue()).limit(3).toArray();
+        assertEquals(10, values[0]);
+        assertEquals(20, values[1]);
+        assertEquals(30, values[2]);
+        assertEquals(2, a1.listBids("u1").size());
+    }
+}
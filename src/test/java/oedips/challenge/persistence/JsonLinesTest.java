@@ -0,0 +1,97 @@
+package oedips.challenge.persistence;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+
+public class JsonLinesTest {
+
+    @Test
+    public void testBidsAcrossPages() throws IOException {
+        long endTime = System.currentTimeMillis() + 3_600_000;
+        AuctionHouse house = new AuctionHouse("h1");
+        AuctionHouse copy = new AuctionHouse("h2");
+        try {
+            house.addAuction(new Auction("a1", "d1", endTime, 0));
+            house.addAuction(new Auction("a2", "d2", endTime, 0));
+            for (int i = 1; i <= 2_500; i++) {
+                house.addBid("a1", "u" + i % 7, i);
+            }
+            for (int i = 1; i <= 1_000; i++) {
+                house.addBid("a2", "u" + i % 7, i);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonLines.writeHouse(out, house);
+
+            JsonLines.Imported imported = JsonLines.readInto(new ByteArrayInputStream(out.toByteArray()), copy,
+                    Journal.NONE);
+            assertEquals(2, imported.getAuctions());
+            assertEquals(3_500, imported.getBids());
+            assertEquals(0, imported.getSkipped());
+            assertEquals(2_500, copy.getAuction("a1").listBids().size());
+            assertEquals(2_500, copy.getAuction("a1").computeBestBid().getValue());
+            assertEquals(1_000, copy.getAuction("a2").listBids().size());
+        } finally {
+            house.close();
+            copy.close();
+        }
+    }
+
+    @Test
+    public void testMaxBids() throws IOException {
+        long endTime = System.currentTimeMillis() + 3_600_000;
+        AuctionHouse house = new AuctionHouse("h1");
+        AuctionHouse copy = new AuctionHouse("h2");
+        try {
+            house.addAuction(new Auction("a1", "d1", endTime, 0));
+            house.setMaxBid("a1", "u1", 100);
+            house.setMaxBid("a1", "u2", 200);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonLines.writeHouse(out, house);
+
+            JsonLines.Imported imported = JsonLines.readInto(new ByteArrayInputStream(out.toByteArray()), copy,
+                    Journal.NONE);
+            assertEquals(1, imported.getMaxBids());
+            Auction a1 = copy.getAuction("a1");
+            assertEquals(101, a1.computeBestBid().getValue());
+            assertEquals(200, a1.computeMaxBid("u2"));
+            a1.addBid("u3", 150);
+            assertEquals("u2", a1.computeBestBid().getUsername());
+            assertEquals(151, a1.computeBestBid().getValue());
+        } finally {
+            house.close();
+            copy.close();
+        }
+    }
+
+    @Test
+    public void testFencedHouse() throws IOException {
+        long endTime = System.currentTimeMillis() + 3_600_000;
+        AuctionHouse house = new AuctionHouse("h1");
+        AuctionHouse copy = new AuctionHouse("h2");
+        try {
+            house.addAuction(new Auction("a1", "d1", endTime, 0));
+            house.addBid("a1", "u1", 10);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonLines.writeHouse(out, house);
+
+            copy.fence();
+            JsonLines.Imported imported = JsonLines.readInto(new ByteArrayInputStream(out.toByteArray()), copy,
+                    Journal.NONE);
+            assertEquals(true, imported.isFenced());
+            assertEquals(0, imported.getAuctions());
+            assertEquals(0, imported.getSkipped());
+            assertEquals(null, copy.getAuction("a1"));
+        } finally {
+            house.close();
+            copy.close();
+        }
+    }
+}
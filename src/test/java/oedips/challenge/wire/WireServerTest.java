@@ -0,0 +1,103 @@
+package oedips.challenge.wire;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oedips.challenge.cluster.Node;
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+
+public class WireServerTest {
+
+    private Node node;
+    private AuctionHouse house;
+    private WireServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.node = new Node(null);
+        this.house = new AuctionHouse("h1");
+        this.node.getHouses().put("h1", this.house);
+        this.house.addAuction(new Auction("a1", "d1", System.currentTimeMillis() + 3_600_000, 0));
+        this.server = new WireServer(this.node, new InetSocketAddress("localhost", 0)).start("wire-test");
+    }
+
+    @After
+    public void tearDown() {
+        this.server.close();
+        this.house.close();
+    }
+
+    @Test
+    public void testPipelinedBids() throws IOException {
+        try (WireClient client = new WireClient(new InetSocketAddress("localhost", this.server.getPort()))) {
+            int count = 10_000;
+            for (int i = 1; i <= count; i++) {
+                client.bid("h1", "a1", "u" + i % 10, i);
+            }
+            client.bid("h1", "a1", "u1", 5);
+            client.bid("h1", "a2", "u1", 5);
+            client.bid("h2", "a1", "u1", 5);
+            client.maxBid("h1", "a1", "u1", count + 100);
+            client.flush();
+            for (int i = 0; i < count; i++) {
+                long ack = client.readAck();
+                assertEquals(i, WireClient.id(ack));
+                assertEquals(WireProtocol.ACCEPTED, WireClient.status(ack));
+            }
+            assertEquals(WireProtocol.OUTBID, WireClient.status(client.readAck()));
+            assertEquals(WireProtocol.AUCTION_NOT_FOUND, WireClient.status(client.readAck()));
+            assertEquals(WireProtocol.HOUSE_NOT_FOUND, WireClient.status(client.readAck()));
+            long ack = client.readAck();
+            assertEquals(count + 3, WireClient.id(ack));
+            assertEquals(WireProtocol.ACCEPTED, WireClient.status(ack));
+        }
+        assertEquals(10_001, this.house.getAuction("a1").listBids().size());
+        assertEquals(10_100, this.house.getAuction("a1").computeMaxBid("u1"));
+    }
+
+    @Test
+    public void testMalformedFrameClosesConnection() throws IOException {
+        try (Socket socket = new Socket("localhost", this.server.getPort());
+                WireClient client = new WireClient(new InetSocketAddress("localhost", this.server.getPort()))) {
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[] { 0, 0, 0, 2, 1, 0 });
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+
+            client.bid("h1", "a1", "u1", 1);
+            client.flush();
+            assertEquals(WireProtocol.ACCEPTED, WireClient.status(client.readAck()));
+        }
+    }
+
+    @Test
+    public void testUnknownRequest() throws IOException {
+        try (Socket socket = new Socket("localhost", this.server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[] { 0, 0, 0, 5, 9, 0, 0, 0, 7 });
+            out.flush();
+            byte[] ack = new byte[WireProtocol.ACK_SIZE];
+            int read = 0;
+            while (read < ack.length) {
+                int n = socket.getInputStream().read(ack, read, ack.length - read);
+                if (n < 0) {
+                    fail("connection closed");
+                }
+                read += n;
+            }
+            assertEquals(WireProtocol.ACK, ack[4]);
+            assertEquals(7, ack[8]);
+            assertEquals(WireProtocol.UNKNOWN_REQUEST, ack[9]);
+        }
+    }
+}
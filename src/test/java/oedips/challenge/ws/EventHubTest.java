@@ -0,0 +1,148 @@
+package oedips.challenge.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oedips.challenge.model.Auction;
+import oedips.challenge.model.AuctionHouse;
+
+public class EventHubTest {
+
+    private static final Sse SSE = new Sse() {
+
+        @Override
+        public OutboundSseEvent.Builder newEventBuilder() {
+            return new OutboundEvent.Builder();
+        }
+
+        @Override
+        public SseBroadcaster newBroadcaster() {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private AuctionHouse house;
+    private EventHub hub;
+
+    @Before
+    public void setUp() {
+        this.house = new AuctionHouse("h1");
+        this.house.addAuction(new Auction("a1", "d1", System.currentTimeMillis() + 3_600_000, 0));
+        this.house.addAuction(new Auction("a2", "d2", System.currentTimeMillis() + 3_600_000, 0));
+        this.hub = new EventHub(this.house, SSE);
+    }
+
+    @After
+    public void tearDown() {
+        this.hub.close();
+        this.house.close();
+    }
+
+    @Test
+    public void testSlowSubscriberIsDroppedAlone() throws InterruptedException {
+        int bids = 1_000;
+        StalledSink slow = new StalledSink();
+        CountingSink fast = new CountingSink(bids + 1);
+        this.hub.subscribe(this.house.getSummary("a1"), slow);
+        this.hub.subscribe(this.house.getSummary("a1"), fast);
+        for (int i = 1; i <= bids; i++) {
+            assertTrue(this.house.addBid("a1", "u1", i));
+            // a fast subscriber keeps up with the bids
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (fast.all.getCount() > bids - i && System.currentTimeMillis() < deadline) {
+                Thread.yield();
+            }
+        }
+        assertTrue(fast.all.await(10, TimeUnit.SECONDS));
+        assertFalse(fast.isClosed());
+        assertTrue(slow.closed.await(10, TimeUnit.SECONDS));
+        assertEquals(1, slow.sent.get());
+    }
+
+    @Test
+    public void testLastSubscriberLeavingForgetsTheAuction() throws InterruptedException {
+        CountingSink sink = new CountingSink(1);
+        this.hub.subscribe(this.house.getSummary("a2"), sink);
+        assertEquals(1, this.hub.countWatchedAuctions());
+        assertTrue(sink.all.await(10, TimeUnit.SECONDS));
+        this.house.deleteAuction("a2");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (this.hub.countWatchedAuctions() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, this.hub.countWatchedAuctions());
+        assertTrue(sink.isClosed());
+    }
+
+    /**
+     * Sink whose sends never complete, as a connection whose peer stopped
+     * reading.
+     */
+    private static final class StalledSink implements SseEventSink {
+
+        private final AtomicInteger sent = new AtomicInteger();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public boolean isClosed() {
+            return this.closed.getCount() == 0;
+        }
+
+        @Override
+        public CompletionStage<?> send(OutboundSseEvent event) {
+            this.sent.incrementAndGet();
+            return new CompletableFuture<Void>();
+        }
+
+        @Override
+        public void close() {
+            this.closed.countDown();
+        }
+    }
+
+    /**
+     * Sink completing every send at once.
+     */
+    private static final class CountingSink implements SseEventSink {
+
+        private final CountDownLatch all;
+        private volatile boolean closed;
+
+        private CountingSink(final int expected) {
+            this.all = new CountDownLatch(expected);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return this.closed;
+        }
+
+        @Override
+        public CompletionStage<?> send(OutboundSseEvent event) {
+            this.all.countDown();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package oedips.challenge.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+public class RequestExecutorTest {
+
+    @Test
+    public void testDirect() {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.DIRECT, 1, 0);
+        Thread caller = Thread.currentThread();
+        Response response = executor.submit(() -> Response.ok(Thread.currentThread() == caller).build())
+                .toCompletableFuture().join();
+        assertEquals(true, response.getEntity());
+    }
+
+    @Test
+    public void testLimits() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.VIRTUAL, 2, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(2);
+        CompletableFuture<?>[] admitted = new CompletableFuture<?>[3];
+        for (int i = 0; i < 3; i++) {
+            admitted[i] = executor.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Response.ok().build();
+            }).toCompletableFuture();
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.countRunning());
+        assertEquals(1, executor.countQueued());
+
+        Response rejected = executor.submit(() -> Response.ok().build()).toCompletableFuture().join();
+        assertEquals(503, rejected.getStatus());
+
+        release.countDown();
+        for (CompletableFuture<?> response : admitted) {
+            assertEquals(200, ((Response) response.join()).getStatus());
+        }
+        assertEquals(0, executor.countRunning());
+        assertEquals(0, executor.countQueued());
+    }
+}
@@ -0,0 +1,46 @@
+package oedips.challenge.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testVersions() {
+        ResponseCache cache = new ResponseCache(10, 1000);
+        cache.put("1/a", 2, new byte[10]);
+        cache.put("1/a", 1, new byte[20]);
+        assertEquals(10, cache.get("1/a", 2).length);
+        assertNull(cache.get("1/a", 1));
+        cache.put("1/a", 3, new byte[30]);
+        assertEquals(30, cache.countBytes());
+    }
+
+    @Test
+    public void testByteBudget() {
+        ResponseCache cache = new ResponseCache(1000, 1000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("1/" + i, 1, new byte[100]);
+            assertTrue(cache.countBytes() <= 1000);
+        }
+        assertEquals(cache.size() * 100L, cache.countBytes());
+        cache.put("1/large", 1, new byte[300]);
+        assertNull(cache.get("1/large", 1));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        ResponseCache cache = new ResponseCache(10, 1000);
+        cache.put("1/a", 1, new byte[10]);
+        cache.put("1/b", 1, new byte[10]);
+        cache.put("12/a", 1, new byte[10]);
+        cache.removeAll("1/");
+        assertNull(cache.get("1/a", 1));
+        assertNull(cache.get("1/b", 1));
+        assertEquals(10, cache.get("12/a", 1).length);
+        assertEquals(10, cache.countBytes());
+    }
+}